@@ -0,0 +1,162 @@
+package de.ck35.monitoring.request.tagging;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+import de.ck35.monitoring.request.tagging.RequestTagging.Status;
+
+/**
+ * Measures calls to other (remote) resources which are made while processing
+ * the current request. Every call is measured with a timer named
+ * <code>downstream_&lt;host&gt;</code>, so the duration of a request can be
+ * broken down into the durations of the resources it depends on. The status
+ * class of the response (<code>2xx</code>, <code>3xx</code>, <code>4xx</code>,
+ * <code>5xx</code>) or <code>failed</code> if the call did not return a
+ * response is added as meta data <code>downstream_&lt;host&gt;_status</code>.
+ * Characters of the host name other than letters, digits and underscores are
+ * replaced by underscores.
+ * <p>
+ * If a host is called several times while processing one request, the timer
+ * reports the sum of all calls and the number of calls is added as meta data
+ * <code>downstream_&lt;host&gt;_calls</code>. The status class is the one of
+ * the last call.
+ * <p>
+ * Example usage:
+ * <pre>
+ *  java.net.HttpURLConnection connection = createHttpConnection();
+ *  int responseCode = OutboundRequestTagging.exchange(connection, HttpURLConnection::getResponseCode);
+ * </pre>
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class OutboundRequestTagging {
+
+    public static final String TIMER_PREFIX = "downstream_";
+    public static final String STATUS_SUFFIX = "_status";
+    public static final String CALLS_SUFFIX = "_calls";
+    public static final String FAILED = "failed";
+
+    private OutboundRequestTagging() {
+    }
+
+    /**
+     * Attach the request id to the given connection and measure the given
+     * exchange with the current status. If the exchange fails because the
+     * server responded with an error, e.g. while reading the input stream,
+     * the response code of the connection is recorded instead of
+     * <code>failed</code>.
+     *
+     * @param connection The connection which has not been connected yet.
+     * @param exchange Sends the request and reads the response.
+     * @return The result of the exchange.
+     * @throws IOException If the exchange failed.
+     */
+    public static <T> T exchange(HttpURLConnection connection, Exchange<HttpURLConnection, T, IOException> exchange) throws IOException {
+        Status status = RequestTagging.get();
+        status.attachRequestId(connection::addRequestProperty);
+        return call(status, connection.getURL()
+                                      .getHost(),
+                    () -> {
+                        T result = exchange.apply(connection);
+                        return new Response<>(result, connection.getResponseCode());
+                    }, () -> responseCode(connection));
+    }
+
+    /**
+     * Measure a call to the given host with the current status. Use this
+     * method for HTTP clients which do not use {@link HttpURLConnection}.
+     *
+     * @param host The host which is called.
+     * @param call Executes the call.
+     * @param statusCode Extracts the HTTP status code from the result of the
+     *        call.
+     * @return The result of the call.
+     * @throws E If the call failed.
+     */
+    public static <T, E extends Exception> T call(String host, Call<T, E> call, ToIntFunction<T> statusCode) throws E {
+        return call(RequestTagging.get(), host, () -> {
+            T result = call.call();
+            return new Response<>(result, statusCode.applyAsInt(result));
+        }, () -> -1);
+    }
+
+    /**
+     * @param failedStatusCode Supplies the status code if the call threw an
+     *        exception.
+     */
+    private static <T, E extends Exception> T call(Status status, String host, Call<Response<T>, E> call, IntSupplier failedStatusCode) throws E {
+        String name = TIMER_PREFIX + name(host);
+        status.startTimer(name);
+        Response<T> response = null;
+        try {
+            response = call.call();
+            return response.result;
+        } finally {
+            int calls = status.accumulateTimer(name);
+            int statusCode = response == null ? failedStatusCode.getAsInt() : response.statusCode;
+            status.withMetaData(name + STATUS_SUFFIX, statusClass(statusCode));
+            status.withMetaData(name + CALLS_SUFFIX, Integer.toString(calls));
+        }
+    }
+
+    /**
+     * An error response has been cached by the connection, so reading the
+     * response code after a failed exchange does not connect again.
+     */
+    private static int responseCode(HttpURLConnection connection) {
+        try {
+            return connection.getResponseCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    static String name(String host) {
+        Objects.requireNonNull(host, "Can not measure call without host!");
+        StringBuilder result = new StringBuilder(host.length());
+        for (int index = 0; index < host.length(); index++) {
+            char character = host.charAt(index);
+            boolean valid = (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z') || (character >= '0' && character <= '9');
+            result.append(valid ? character : '_');
+        }
+        return result.toString();
+    }
+
+    static String statusClass(int statusCode) {
+        if (statusCode < 100 || statusCode > 599) {
+            return FAILED;
+        }
+        return (statusCode / 100) + "xx";
+    }
+
+    /**
+     * A call to another resource.
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * An exchange over a prepared connection.
+     */
+    @FunctionalInterface
+    public interface Exchange<C, T, E extends Exception> {
+        T apply(C connection) throws E;
+    }
+
+    private static class Response<T> {
+
+        private final T result;
+        private final int statusCode;
+
+        private Response(T result, int statusCode) {
+            this.result = result;
+            this.statusCode = statusCode;
+        }
+    }
+}
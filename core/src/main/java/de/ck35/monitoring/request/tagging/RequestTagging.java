@@ -106,6 +106,7 @@ public class RequestTagging {
          * @param target The consumer which will be invoked with the request id parameter name and the actual id if present.
          * @return This instance for further updates.
          * @since 2.0.0
+         * @see OutboundRequestTagging#exchange(java.net.HttpURLConnection, OutboundRequestTagging.Exchange)
          */
         Status attachRequestId(BiConsumer<String, String> target);
         
@@ -125,6 +126,21 @@ public class RequestTagging {
          */
         Status stopTimer(String id);
 
+        /**
+         * Stop a timer with the given id and add the measured duration to the
+         * durations measured with this id before. A timer which is started and
+         * stopped several times this way reports the sum of all measurements.
+         * The default implementation only stops the timer.
+         * 
+         * @param id The id of the timer.
+         * @return The number of measurements which have been added up so far.
+         * @since 2.1.0
+         */
+        default int accumulateTimer(String id) {
+            stopTimer(id);
+            return 1;
+        }
+
         /**
          * Allow another runnable to report the status of this request. This is
          * useful when you have asynchronous request processing inside your
@@ -245,6 +261,11 @@ public class RequestTagging {
         public Status stopTimer(String id) {
             return this;
         }
+
+        @Override
+        public int accumulateTimer(String id) {
+            return 0;
+        }
         
         public Runnable handover(Runnable runnable) {
             return runnable;
@@ -0,0 +1,113 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.RequestTagging.Status;
+import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus.StatusCode;
+
+/**
+ * Provides the request tagging mechanism for requests which are not processed
+ * by a single thread. On a non blocking server one thread interleaves many
+ * requests, so the status of a request is stored with the request and only
+ * made available through {@link RequestTagging#get()} while code for this
+ * request is running. This is the asynchronous counterpart of
+ * {@link RequestTaggingRunnable}:
+ * <ol>
+ * <li>{@link #start(DefaultRequestTaggingStatus)} when the request arrives.</li>
+ * <li>{@link #runWithin(DefaultRequestTaggingStatus, Runnable)} around every
+ * invocation of request processing code.</li>
+ * <li>{@link #failed(DefaultRequestTaggingStatus, Throwable)} if processing
+ * failed.</li>
+ * <li>{@link #finish(DefaultRequestTaggingStatus)} when the response has been
+ * written.</li>
+ * </ol>
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class AsyncRequestTagging {
+
+    public static final String EXCEPTION_CAUSE_KEY = "serverErrorCause";
+    public static final String DEFAULT_TIMER_KEY = "total_request_duration";
+
+    private AsyncRequestTagging() {
+    }
+
+    public static void start(DefaultRequestTaggingStatus status) {
+        status.startTimer(DEFAULT_TIMER_KEY);
+    }
+
+    /**
+     * Tag the request as server error with the class of the given cause unless
+     * another error has been tagged before.
+     */
+    public static void failed(DefaultRequestTaggingStatus status, Throwable cause) {
+        if (status.getStatusCode() == StatusCode.SUCCESS) {
+            status.serverError()
+                  .withMetaData(EXCEPTION_CAUSE_KEY, cause.getClass()
+                                                          .getName());
+        }
+    }
+
+    /**
+     * Tag the request by the status code of the response, if it has not been
+     * tagged as error already.
+     */
+    public static void responded(DefaultRequestTaggingStatus status, int httpStatusCode) {
+        if (status.getStatusCode() != StatusCode.SUCCESS) {
+            return;
+        }
+        if (httpStatusCode >= 500) {
+            status.serverError();
+        } else if (httpStatusCode >= 400) {
+            status.clientError();
+        }
+    }
+
+    public static void finish(DefaultRequestTaggingStatus status) {
+        status.stopTimer(DEFAULT_TIMER_KEY);
+        status.consume();
+    }
+
+    /**
+     * Run the given runnable with the given status available through
+     * {@link RequestTagging#get()}. A status which has been set for the current
+     * thread before is restored afterwards.
+     */
+    public static void runWithin(DefaultRequestTaggingStatus status, Runnable runnable) {
+        Optional<Status> previous = RequestTagging.getOptional();
+        if (previous.isPresent() && previous.get() == status) {
+            runnable.run();
+            return;
+        }
+        RequestTagging.init(status);
+        try {
+            runnable.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static <T> T callWithin(DefaultRequestTaggingStatus status, Supplier<T> supplier) {
+        Optional<Status> previous = RequestTagging.getOptional();
+        if (previous.isPresent() && previous.get() == status) {
+            return supplier.get();
+        }
+        RequestTagging.init(status);
+        try {
+            return supplier.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private static void restore(Optional<Status> previous) {
+        if (previous.isPresent()) {
+            RequestTagging.init(previous.get());
+        } else {
+            RequestTagging.remove();
+        }
+    }
+}
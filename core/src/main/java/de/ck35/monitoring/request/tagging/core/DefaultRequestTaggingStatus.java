@@ -196,6 +196,14 @@ public class DefaultRequestTaggingStatus implements RequestTagging.Status {
         return this;
     }
 
+    @Override
+    public int accumulateTimer(String id) {
+        return Optional.ofNullable(stopWatches)
+                       .map(x -> x.get(id))
+                       .map(measurement -> measurement.accumulate(stopWatchClock.instant()))
+                       .orElse(0);
+    }
+
     private Map<String, StopWatch> copyMeasurements() {
         if (stopWatches == null) {
             return null;
@@ -235,6 +243,8 @@ public class DefaultRequestTaggingStatus implements RequestTagging.Status {
 
         private Instant start;
         private Instant end;
+        private Duration accumulated;
+        private int count;
 
         StopWatch() {
             this(null, null);
@@ -242,11 +252,14 @@ public class DefaultRequestTaggingStatus implements RequestTagging.Status {
 
         StopWatch(StopWatch stopWatch) {
             this(stopWatch.start, stopWatch.end);
+            this.accumulated = stopWatch.accumulated;
+            this.count = stopWatch.count;
         }
 
         StopWatch(Instant start, Instant end) {
             this.start = start;
             this.end = end;
+            this.accumulated = Duration.ZERO;
         }
 
         public Optional<Instant> getStart() {
@@ -265,7 +278,27 @@ public class DefaultRequestTaggingStatus implements RequestTagging.Status {
             this.end = Objects.requireNonNull(end);
         }
 
+        /**
+         * Add the time since the last start to the accumulated duration. The
+         * stop watch has to be started again for the next measurement.
+         * 
+         * @return The number of accumulated measurements.
+         */
+        public int accumulate(Instant end) {
+            setEnd(end);
+            getStart().ifPresent(start -> {
+                accumulated = accumulated.plus(Duration.between(start, end));
+                count++;
+            });
+            this.start = null;
+            this.end = null;
+            return count;
+        }
+
         public Optional<Duration> toDuration() {
+            if (count > 0) {
+                return Optional.of(accumulated);
+            }
             return getStart().flatMap(start -> getEnd().map(end -> Duration.between(start, end)));
         }
     }
@@ -14,6 +14,8 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -22,6 +24,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus.StatusCode;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
@@ -38,15 +41,54 @@ import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
  */
 public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequestTaggingStatus> {
 
+    /**
+     * Rough estimates of the retained heap in bytes on a 64 bit JVM with
+     * compressed oops. Strings are added with their length.
+     */
+    static final int NODE_SIZE = 256;
+    static final int STRING_SIZE = 48;
+    static final int MEASUREMENT_SIZE = 160;
+    static final int DURATION_LIST_SIZE = 128;
+    static final int DURATION_SIZE = 32;
+
+    /**
+     * The meta data key which contains the effective sample rate of a resource
+     * if not all requests have been sampled.
+     */
+    public static final String SAMPLE_RATE_KEY = "sampleRate";
+
     private ReadWriteLock swapLock;
     private ConcurrentMap<String, ResourceNode> tree;
+    private final LongAdder treeSize;
+    private final AtomicBoolean memoryBudgetExceeded;
 
     private volatile int maxDurationsPerNode;
+    private volatile long memoryBudget;
+    private volatile Runnable memoryBudgetExceededHandler;
+    private volatile double sampleRate;
+    private volatile Map<String, Double> resourceSampleRates;
+    private volatile double intervalSampleRate;
+    private volatile Map<String, Double> intervalResourceSampleRates;
+    private volatile Duration slowRequestThreshold;
+    private volatile Map<String, Duration> resourceSlowRequestThresholds;
+    private volatile double fastDurationSampleRate;
+    private volatile InternalMetrics internalMetrics;
 
     public DefaultRequestTaggingStatusConsumer() {
         this.maxDurationsPerNode = 0;
+        this.memoryBudget = 0;
+        this.sampleRate = 1;
+        this.resourceSampleRates = Collections.emptyMap();
+        this.intervalSampleRate = 1;
+        this.intervalResourceSampleRates = Collections.emptyMap();
+        this.resourceSlowRequestThresholds = Collections.emptyMap();
+        this.fastDurationSampleRate = 1;
+        this.memoryBudgetExceededHandler = () -> {
+        };
         this.swapLock = new ReentrantReadWriteLock();
         this.tree = new ConcurrentHashMap<>();
+        this.treeSize = new LongAdder();
+        this.memoryBudgetExceeded = new AtomicBoolean();
     }
 
     @Override
@@ -54,47 +96,138 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
         if (status.isIgnored()) {
             return;
         }
+        InternalMetrics metrics = internalMetrics;
+        long start = metrics == null ? 0 : System.nanoTime();
         this.swapLock.readLock()
                      .lock();
         try {
-            TreeNode currentNode = tree.computeIfAbsent(status.getResourceName(), ResourceNode::new);
+            double resourceSampleRate = intervalResourceSampleRates.getOrDefault(status.getResourceName(), 1d);
+            if (resourceSampleRate < 1 && ThreadLocalRandom.current()
+                                                           .nextDouble() >= resourceSampleRate) {
+                return;
+            }
+            TreeNode currentNode = tree.computeIfAbsent(status.getResourceName(), name -> {
+                treeSize.add(NODE_SIZE + sizeOf(name));
+                nodeCreated();
+                return new ResourceNode(name, intervalSampleRate * resourceSampleRate);
+            });
             Iterator<MetaDataPair> iter = status.getMetaData()
                                                 .entrySet()
                                                 .stream()
                                                 .map(MetaDataPair::of)
                                                 .iterator();
             while (iter.hasNext()) {
-                currentNode = currentNode.children.computeIfAbsent(iter.next(), x -> new TreeNode());
+                currentNode = currentNode.children.computeIfAbsent(iter.next(), this::newTreeNode);
             }
             MetaDataPair requestId = status.getRequestId().map(MetaDataPair::of).orElse(null);
             if(requestId != null) {
-                currentNode = currentNode.children.computeIfAbsent(requestId, x -> new TreeNode());
+                currentNode = currentNode.children.computeIfAbsent(requestId, this::newTreeNode);
             }
-            MutableMeasurement measurement = currentNode.measurements.computeIfAbsent(status.getStatusCode(), x -> new MutableMeasurement(x.toString()));
+            MutableMeasurement measurement = currentNode.measurements.computeIfAbsent(status.getStatusCode(), x -> {
+                treeSize.add(MEASUREMENT_SIZE);
+                if (metrics != null) {
+                    metrics.seriesCreated();
+                }
+                return new MutableMeasurement(x.toString());
+            });
             measurement.numberOfinvocations.increment();
-            if (getMaxDurationsPerNode() <= 0) {
-                return;
+            if (getMaxDurationsPerNode() > 0) {
+                boolean slow = isSlow(status);
+                if (slow || retainFastDurations(status)) {
+                    status.visitDurations((key, duration) -> {
+                        FixedSizeList<Duration> durations = measurement.durations.computeIfAbsent(key, x -> {
+                            treeSize.add(DURATION_LIST_SIZE + sizeOf(x));
+                            return new FixedSizeList<>(this::getMaxDurationsPerNode);
+                        });
+                        if (durations.offer(duration, slow)) {
+                            treeSize.add(DURATION_SIZE);
+                        } else if (metrics != null) {
+                            metrics.durationDropped();
+                        }
+                    });
+                }
             }
-            status.visitDurations((key, duration) -> {
-                measurement.durations.computeIfAbsent(key, x -> new FixedSizeList<>(this::getMaxDurationsPerNode))
-                                     .offer(duration);
-            });
         } finally {
             this.swapLock.readLock()
                          .unlock();
         }
+        checkMemoryBudget();
+        if (metrics != null) {
+            metrics.accepted(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if one of the durations of the given status
+     *         exceeds the slow request threshold of its resource.
+     */
+    private boolean isSlow(DefaultRequestTaggingStatus status) {
+        Duration threshold = resourceSlowRequestThresholds.getOrDefault(status.getResourceName(), slowRequestThreshold);
+        if (threshold == null) {
+            return false;
+        }
+        boolean[] slow = new boolean[1];
+        status.visitDurations((key, duration) -> slow[0] |= duration.compareTo(threshold) > 0);
+        return slow[0];
+    }
+
+    /**
+     * Durations of client and server errors are always retained, durations of
+     * fast successful requests only with the fast duration sample rate.
+     */
+    private boolean retainFastDurations(DefaultRequestTaggingStatus status) {
+        double rate = fastDurationSampleRate;
+        return rate >= 1 || status.getStatusCode() != StatusCode.SUCCESS || ThreadLocalRandom.current()
+                                                                                             .nextDouble() < rate;
     }
-    
+
+    private void nodeCreated() {
+        InternalMetrics metrics = internalMetrics;
+        if (metrics != null) {
+            metrics.nodeCreated();
+        }
+    }
+
+    private TreeNode newTreeNode(MetaDataPair metaData) {
+        treeSize.add(NODE_SIZE + sizeOf(metaData.getKey()) + sizeOf(metaData.getValue()));
+        nodeCreated();
+        return new TreeNode();
+    }
+
+    private static long sizeOf(String value) {
+        return STRING_SIZE + 2L * value.length();
+    }
+
+    /**
+     * Call the handler once when the estimated size of the current tree
+     * exceeds the memory budget. The handler is armed again after the tree
+     * has been swapped.
+     */
+    private void checkMemoryBudget() {
+        long budget = memoryBudget;
+        if (budget > 0 && !memoryBudgetExceeded.get() && treeSize.sum() > budget && memoryBudgetExceeded.compareAndSet(false, true)) {
+            memoryBudgetExceededHandler.run();
+        }
+    }
+
     public Map<String, ResourceNode> swapTree() {
+        long start = System.nanoTime();
         this.swapLock.writeLock()
                      .lock();
         try {
             Map<String, ResourceNode> result = tree;
             tree = new ConcurrentHashMap<>(result.isEmpty() ? 16 : result.size());
+            treeSize.reset();
+            memoryBudgetExceeded.set(false);
+            applySampleRates();
             return result;
         } finally {
             this.swapLock.writeLock()
                          .unlock();
+            InternalMetrics metrics = internalMetrics;
+            if (metrics != null) {
+                metrics.swapped(System.nanoTime() - start);
+            }
         }
     }
 
@@ -103,6 +236,180 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
                   .forEach(node -> node.report(reporter));
     }
 
+    /**
+     * Pass the data collected so far to the given reporter without swapping
+     * the tree or resetting the counters.
+     * 
+     * @see #snapshot()
+     */
+    public void snapshot(StatusReporter reporter) {
+        snapshot().forEach(reporter::accept);
+    }
+
+    /**
+     * Read the data collected so far without swapping the tree or resetting
+     * the counters, so it is still passed to the next report. The tree is
+     * traversed lazily while the stream is consumed and writers are not
+     * blocked. The snapshot is therefore only weakly consistent: requests
+     * which finish during the traversal may or may not be contained.
+     *
+     * @return The resources collected in the current interval.
+     */
+    public Stream<Resource> snapshot() {
+        return tree.values()
+                   .stream()
+                   .flatMap(ResourceNode::snapshot);
+    }
+
+    /**
+     * @return <code>true</code> if nothing has been collected since the last
+     *         swap.
+     */
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    /**
+     * @return The number of resource, meta data and status code combinations
+     *         collected so far by resource name.
+     */
+    public Map<String, Long> getSeriesCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        tree.forEach((name, node) -> result.put(name, node.seriesCount()));
+        return result;
+    }
+
+    /**
+     * Decide at the start of a request whether it should be tagged. Requests
+     * which are not sampled are not collected at all.
+     *
+     * @return <code>true</code> if the request should be tagged.
+     */
+    public boolean sample() {
+        double rate = intervalSampleRate;
+        return rate >= 1 || ThreadLocalRandom.current()
+                                             .nextDouble() < rate;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate The probability with which a request is sampled. The
+     *        reported number of invocations is scaled by the inverse of the
+     *        sample rate. A new rate takes effect with the next interval
+     *        unless nothing has been collected yet.
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = checkSampleRate(sampleRate);
+        applySampleRatesIfEmpty();
+    }
+
+    public Map<String, Double> getResourceSampleRates() {
+        return resourceSampleRates;
+    }
+
+    /**
+     * @param resourceSampleRates Additional sample rates by resource name. As
+     *        the resource name is known only at the end of a request, these
+     *        rates are applied when the request is collected and are
+     *        multiplied with the global sample rate. Like the global rate
+     *        they take effect with the next interval.
+     */
+    public void setResourceSampleRates(Map<String, Double> resourceSampleRates) {
+        Objects.requireNonNull(resourceSampleRates, "Can not set resourceSampleRates to null!").values()
+                                                                                              .forEach(DefaultRequestTaggingStatusConsumer::checkSampleRate);
+        this.resourceSampleRates = Collections.unmodifiableMap(new HashMap<>(resourceSampleRates));
+        applySampleRatesIfEmpty();
+    }
+
+    /**
+     * The resource nodes scale their counts with the rates which were active
+     * when they were created, so the rates may only change while the tree is
+     * empty. Must be called with the write lock held.
+     */
+    private void applySampleRates() {
+        intervalSampleRate = sampleRate;
+        intervalResourceSampleRates = resourceSampleRates;
+    }
+
+    private void applySampleRatesIfEmpty() {
+        this.swapLock.writeLock()
+                     .lock();
+        try {
+            if (tree.isEmpty()) {
+                applySampleRates();
+            }
+        } finally {
+            this.swapLock.writeLock()
+                         .unlock();
+        }
+    }
+
+    private static double checkSampleRate(double sampleRate) {
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Invalid sample rate: '" + sampleRate + "'!");
+        }
+        return sampleRate;
+    }
+
+    public Duration getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    /**
+     * @param slowRequestThreshold Requests with a duration above this
+     *        threshold are slow. Their durations are always retained and
+     *        replace durations of fast requests if the list of durations of a
+     *        node is full. A value of <code>null</code> disables the threshold.
+     */
+    public void setSlowRequestThreshold(Duration slowRequestThreshold) {
+        this.slowRequestThreshold = slowRequestThreshold;
+    }
+
+    public Map<String, Duration> getResourceSlowRequestThresholds() {
+        return resourceSlowRequestThresholds;
+    }
+
+    /**
+     * @param resourceSlowRequestThresholds Slow request thresholds by resource
+     *        name which overwrite the global threshold.
+     */
+    public void setResourceSlowRequestThresholds(Map<String, Duration> resourceSlowRequestThresholds) {
+        this.resourceSlowRequestThresholds = Collections.unmodifiableMap(new HashMap<>(Objects.requireNonNull(resourceSlowRequestThresholds,
+                                                                                                             "Can not set resourceSlowRequestThresholds to null!")));
+    }
+
+    public double getFastDurationSampleRate() {
+        return fastDurationSampleRate;
+    }
+
+    /**
+     * @param fastDurationSampleRate The probability with which the durations
+     *        of a successful request below the slow request threshold are
+     *        retained.
+     */
+    public void setFastDurationSampleRate(double fastDurationSampleRate) {
+        if (!(fastDurationSampleRate >= 0 && fastDurationSampleRate <= 1)) {
+            throw new IllegalArgumentException("Invalid fast duration sample rate: '" + fastDurationSampleRate + "'!");
+        }
+        this.fastDurationSampleRate = fastDurationSampleRate;
+    }
+
+    public InternalMetrics getInternalMetrics() {
+        return internalMetrics;
+    }
+
+    /**
+     * @param internalMetrics The metrics which record the overhead of this
+     *        consumer or <code>null</code> if the overhead should not be
+     *        recorded.
+     */
+    public void setInternalMetrics(InternalMetrics internalMetrics) {
+        this.internalMetrics = internalMetrics;
+    }
+
     public int getMaxDurationsPerNode() {
         return maxDurationsPerNode;
     }
@@ -111,16 +418,56 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
         this.maxDurationsPerNode = maxDurationsPerNode;
     }
 
+    /**
+     * @return The estimated heap size in bytes of the nodes, measurements and
+     *         durations collected since the last swap.
+     */
+    public long getEstimatedTreeSize() {
+        return treeSize.sum();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @param memoryBudget The estimated heap size in bytes of the collected
+     *        data at which the memory budget exceeded handler is called. A
+     *        value of zero or less disables the budget.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public void setMemoryBudgetExceededHandler(Runnable memoryBudgetExceededHandler) {
+        this.memoryBudgetExceededHandler = Objects.requireNonNull(memoryBudgetExceededHandler, "Can not set memoryBudgetExceededHandler to null!");
+    }
+
     private static class ResourceNode extends TreeNode {
 
         private final String name;
+        private final double sampleRate;
 
-        public ResourceNode(String name) {
+        public ResourceNode(String name, double sampleRate) {
             this.name = name;
+            this.sampleRate = sampleRate;
         }
 
         public void report(StatusReporter reporter) {
-            report(name, Collections.emptySortedMap(), reporter);
+            report(name, metaData(), 1 / sampleRate, reporter);
+        }
+
+        public Stream<Resource> snapshot() {
+            return snapshot(name, metaData(), 1 / sampleRate);
+        }
+
+        private SortedMap<String, String> metaData() {
+            if (sampleRate < 1) {
+                SortedMap<String, String> metaData = new TreeMap<>();
+                metaData.put(SAMPLE_RATE_KEY, Double.toString(sampleRate));
+                return metaData;
+            }
+            return Collections.emptySortedMap();
         }
     }
 
@@ -134,23 +481,57 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
             this.children = new ConcurrentHashMap<>(1);
         }
 
-        public void report(String resourceName, SortedMap<String, String> currentMetaData, StatusReporter reporter) {
-            List<Measurement> measurements = this.measurements.values()
-                                                              .stream()
-                                                              .map(MutableMeasurement::toOptionalMeasurement)
-                                                              .filter(Optional::isPresent)
-                                                              .map(Optional::get)
-                                                              .collect(Collectors.toList());
+        public long seriesCount() {
+            long result = measurements.size();
+            for (TreeNode child : children.values()) {
+                result += child.seriesCount();
+            }
+            return result;
+        }
+
+        public void report(String resourceName, SortedMap<String, String> currentMetaData, double weight, StatusReporter reporter) {
+            List<Measurement> measurements = measurements(weight, false);
             if (!measurements.isEmpty()) {
                 reporter.accept(new Resource(resourceName, currentMetaData, measurements));
             }
-            children.forEach((metaData, child) -> {
-                SortedMap<String, String> childMetaData = new TreeMap<>(currentMetaData);
-                childMetaData.put(metaData.getKey(), metaData.getValue());
-                child.report(resourceName, childMetaData, reporter);
-            });
+            children.forEach((metaData, child) -> child.report(resourceName, childMetaData(currentMetaData, metaData), weight, reporter));
+        }
+
+        /**
+         * Traverse the node and its children lazily without resetting the
+         * counters.
+         */
+        public Stream<Resource> snapshot(String resourceName, SortedMap<String, String> currentMetaData, double weight) {
+            Stream<Resource> resource = Stream.of(this)
+                                              .map(node -> node.measurements(weight, true))
+                                              .filter(measurements -> !measurements.isEmpty())
+                                              .map(measurements -> new Resource(resourceName, currentMetaData, measurements));
+            Stream<Resource> childResources = children.entrySet()
+                                                      .stream()
+                                                      .flatMap(entry -> entry.getValue()
+                                                                             .snapshot(resourceName, childMetaData(currentMetaData, entry.getKey()), weight));
+            return Stream.concat(resource, childResources);
+        }
+
+        /**
+         * @param snapshot <code>true</code> if the counters should be read
+         *        without resetting them.
+         */
+        private List<Measurement> measurements(double weight, boolean snapshot) {
+            return measurements.values()
+                               .stream()
+                               .map(measurement -> measurement.toOptionalMeasurement(weight, snapshot))
+                               .filter(Optional::isPresent)
+                               .map(Optional::get)
+                               .collect(Collectors.toList());
         }
-        
+
+        private static SortedMap<String, String> childMetaData(SortedMap<String, String> currentMetaData, MetaDataPair metaData) {
+            SortedMap<String, String> childMetaData = new TreeMap<>(currentMetaData);
+            childMetaData.put(metaData.getKey(), metaData.getValue());
+            return childMetaData;
+        }
+
     }
 
     private static class MutableMeasurement {
@@ -165,14 +546,19 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
             this.durations = new ConcurrentHashMap<>(1);
         }
 
-        public Optional<Measurement> toOptionalMeasurement() {
-            long totalNumberOfinvocations = numberOfinvocations.sumThenReset();
-            if (totalNumberOfinvocations <= 0) {
+        /**
+         * @param weight The inverse of the sample rate which is used to
+         *        estimate the total number of invocations.
+         */
+        public Optional<Measurement> toOptionalMeasurement(double weight, boolean snapshot) {
+            long sampledNumberOfinvocations = snapshot ? numberOfinvocations.sum() : numberOfinvocations.sumThenReset();
+            if (sampledNumberOfinvocations <= 0) {
                 return Optional.empty();
             }
+            long totalNumberOfinvocations = weight == 1 ? sampledNumberOfinvocations : Math.round(sampledNumberOfinvocations * weight);
             Map<String, List<Duration>> durations = new HashMap<>();
             this.durations.forEach((key, value) -> {
-                List<Duration> drainResult = value.drain();
+                List<Duration> drainResult = snapshot ? value.copy() : value.drain();
                 if (!drainResult.isEmpty()) {
                     durations.put(key, drainResult);
                 }
@@ -181,11 +567,17 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
         }
     }
 
+    /**
+     * A list which accepts elements until its maximum size has been reached.
+     * Afterwards priority elements replace the elements which have been
+     * offered without priority.
+     */
     public static class FixedSizeList<E> {
 
         private final Lock lock;
         private final Supplier<Integer> maxSize;
         private List<E> elements;
+        private List<E> priorityElements;
 
         public FixedSizeList(Supplier<Integer> maxSize) {
             this.lock = new ReentrantLock();
@@ -193,17 +585,57 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
         }
 
         public boolean offer(E element) {
+            return offer(element, false);
+        }
+
+        /**
+         * @return <code>true</code> if the list has grown. A priority element
+         *         which replaces another element is accepted but the list
+         *         does not grow.
+         */
+        public boolean offer(E element, boolean priority) {
             this.lock.lock();
             try {
                 if (elements == null) {
                     elements = new ArrayList<>();
                 }
-                if (elements.size() < maxSize.get()) {
-                    elements.add(element);
+                if (size() < maxSize.get()) {
+                    add(element, priority);
                     return true;
-                } else {
-                    return false;
                 }
+                if (priority && !elements.isEmpty()) {
+                    elements.remove(elements.size() - 1);
+                    add(element, priority);
+                }
+                return false;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private int size() {
+            return elements.size() + (priorityElements == null ? 0 : priorityElements.size());
+        }
+
+        private void add(E element, boolean priority) {
+            if (priority) {
+                if (priorityElements == null) {
+                    priorityElements = new ArrayList<>();
+                }
+                priorityElements.add(element);
+            } else {
+                elements.add(element);
+            }
+        }
+
+        public List<E> copy() {
+            this.lock.lock();
+            try {
+                List<E> result = elements == null ? new ArrayList<>() : new ArrayList<>(elements);
+                if (priorityElements != null) {
+                    result.addAll(priorityElements);
+                }
+                return result;
             } finally {
                 this.lock.unlock();
             }
@@ -213,7 +645,11 @@ public class DefaultRequestTaggingStatusConsumer implements Consumer<DefaultRequ
             this.lock.lock();
             try {
                 List<E> result = elements == null ? Collections.emptyList() : elements;
+                if (priorityElements != null) {
+                    result.addAll(priorityElements);
+                }
                 elements = null;
+                priorityElements = null;
                 return result;
             } finally {
                 this.lock.unlock();
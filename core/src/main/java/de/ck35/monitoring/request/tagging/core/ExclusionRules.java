@@ -0,0 +1,161 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Decides whether a request should not be tagged at all, e.g. health checks,
+ * static assets or metrics scrapes. A request is excluded if its path starts
+ * with one of the excluded path prefixes, if its method is one of the
+ * excluded methods or if it contains one of the excluded headers. The path
+ * prefixes are compiled into a trie of characters, so a path is checked in
+ * O(path length) without creating objects.
+ * <p>
+ * Headers are given either as <code>name</code>, which excludes all requests
+ * containing the header, or as <code>name=value</code>, which excludes all
+ * requests containing the header with exactly this value.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class ExclusionRules {
+
+    private static final ExclusionRules NONE = new ExclusionRules(new Node(), Collections.emptySet(), Collections.emptyList());
+
+    private final Node pathPrefixes;
+    private final Set<String> methods;
+    private final List<HeaderRule> headers;
+
+    private ExclusionRules(Node pathPrefixes, Set<String> methods, List<HeaderRule> headers) {
+        this.pathPrefixes = pathPrefixes;
+        this.methods = methods;
+        this.headers = headers;
+    }
+
+    public static ExclusionRules none() {
+        return NONE;
+    }
+
+    public static ExclusionRules compile(Collection<String> pathPrefixes, Collection<String> methods, Collection<String> headers) {
+        Node root = new Node();
+        for (String prefix : pathPrefixes) {
+            Node node = root;
+            for (int index = 0; index < prefix.length(); index++) {
+                node = node.child(prefix.charAt(index));
+            }
+            node.terminal = true;
+        }
+        Set<String> methodSet = new HashSet<>();
+        for (String method : methods) {
+            methodSet.add(method.toUpperCase(Locale.ROOT));
+        }
+        List<HeaderRule> headerRules = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            int index = header.indexOf('=');
+            if (index < 0) {
+                headerRules.add(new HeaderRule(header.trim(), null));
+            } else {
+                headerRules.add(new HeaderRule(header.substring(0, index)
+                                                     .trim(),
+                                               header.substring(index + 1)
+                                                     .trim()));
+            }
+        }
+        return new ExclusionRules(root, methodSet, headerRules);
+    }
+
+    public boolean isEmpty() {
+        return pathPrefixes.keys.length == 0 && !pathPrefixes.terminal && methods.isEmpty() && headers.isEmpty();
+    }
+
+    /**
+     * @param requestUri The URI of the request without query or
+     *        <code>null</code> if unknown.
+     * @param pathStart The index at which the path of the web application
+     *        starts inside the request URI.
+     * @param method The request method or <code>null</code> if unknown.
+     * @param headers Access to the request headers.
+     * @return <code>true</code> if the request should not be tagged.
+     */
+    public boolean isExcluded(String requestUri, int pathStart, String method, Function<String, String> headers) {
+        if (method != null && !methods.isEmpty() && methods.contains(method)) {
+            return true;
+        }
+        if (requestUri != null && isExcludedPath(requestUri, pathStart)) {
+            return true;
+        }
+        for (HeaderRule rule : this.headers) {
+            String value = headers.apply(rule.name);
+            if (value != null && (rule.value == null || rule.value.equals(value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcludedPath(String path, int pathStart) {
+        Node node = pathPrefixes;
+        for (int index = pathStart; !node.terminal; index++) {
+            if (index >= path.length()) {
+                return false;
+            }
+            node = node.find(path.charAt(index));
+            if (node == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class HeaderRule {
+
+        private final String name;
+        private final String value;
+
+        private HeaderRule(String name, String value) {
+            this.name = Objects.requireNonNull(name);
+            this.value = value;
+        }
+    }
+
+    private static class Node {
+
+        private char[] keys;
+        private Node[] children;
+        private boolean terminal;
+
+        private Node() {
+            this.keys = new char[0];
+            this.children = new Node[0];
+        }
+
+        private Node find(char key) {
+            for (int index = 0; index < keys.length; index++) {
+                if (keys[index] == key) {
+                    return children[index];
+                }
+            }
+            return null;
+        }
+
+        private Node child(char key) {
+            Node child = find(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                keys[keys.length - 1] = key;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TransferStatistics;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+/**
+ * Collects the overhead of request tagging itself. All values are kept in
+ * striped counters so recording them on the request path does not cause
+ * contention. The values are reported as the reserved resource
+ * {@link #RESOURCE_NAME} with one resource per metric. The name of the metric
+ * is written into the {@link #METRIC_KEY} meta data and its value as the
+ * total number of invocations. The accept latency percentiles and maximum are
+ * no counters, so they are reported as durations of the accepted metric.
+ * <p>
+ * Values which belong to sending a report (send duration, bytes sent and
+ * send failures) are recorded after a report has been created, so they are
+ * reported with the following report.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class InternalMetrics {
+
+    public static final String RESOURCE_NAME = "request_tagging_internal";
+    public static final String METRIC_KEY = "metric";
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] acceptLatencyBuckets;
+    private final LongAdder accepted;
+    private final LongAccumulator acceptLatencyMax;
+    private final LongAdder swapPauseNanos;
+    private final LongAdder nodes;
+    private final LongAdder series;
+    private final LongAdder droppedDurations;
+    private final LongAdder reportNanos;
+    private final LongAdder sendNanos;
+    private final LongAdder bytesSent;
+    private final LongAdder sendFailures;
+
+    public InternalMetrics() {
+        acceptLatencyBuckets = new LongAdder[BUCKETS];
+        for (int index = 0; index < BUCKETS; index++) {
+            acceptLatencyBuckets[index] = new LongAdder();
+        }
+        accepted = new LongAdder();
+        acceptLatencyMax = new LongAccumulator(Math::max, 0);
+        swapPauseNanos = new LongAdder();
+        nodes = new LongAdder();
+        series = new LongAdder();
+        droppedDurations = new LongAdder();
+        reportNanos = new LongAdder();
+        sendNanos = new LongAdder();
+        bytesSent = new LongAdder();
+        sendFailures = new LongAdder();
+    }
+
+    /**
+     * Latencies are counted in buckets of powers of two, so a percentile is
+     * reported as the upper bound of its bucket.
+     */
+    public void accepted(long latencyNanos) {
+        long latency = Math.max(0, latencyNanos);
+        acceptLatencyBuckets[Math.max(0, 63 - Long.numberOfLeadingZeros(latency))].increment();
+        accepted.increment();
+        acceptLatencyMax.accumulate(latency);
+    }
+
+    public void swapped(long pauseNanos) {
+        swapPauseNanos.add(pauseNanos);
+    }
+
+    public void nodeCreated() {
+        nodes.increment();
+    }
+
+    public void seriesCreated() {
+        series.increment();
+    }
+
+    public void durationDropped() {
+        droppedDurations.increment();
+    }
+
+    public void reported(long nanos) {
+        reportNanos.add(nanos);
+    }
+
+    public void sent(long nanos) {
+        sendNanos.add(nanos);
+    }
+
+    public void sendFailed() {
+        sendFailures.increment();
+    }
+
+    public void transferred(TransferStatistics statistics) {
+        bytesSent.add(statistics.getTransferredBytes());
+    }
+
+    /**
+     * Report all metrics and reset them.
+     */
+    public void report(StatusReporter reporter) {
+        long[] buckets = new long[BUCKETS];
+        for (int index = 0; index < BUCKETS; index++) {
+            buckets[index] = acceptLatencyBuckets[index].sumThenReset();
+        }
+        long count = accepted.sumThenReset();
+        long max = acceptLatencyMax.getThenReset();
+        Map<String, List<Duration>> latencies = new LinkedHashMap<>();
+        if (count > 0) {
+            latencies.put("latency_p50", Collections.singletonList(Duration.ofNanos(percentile(buckets, count, 0.5))));
+            latencies.put("latency_p99", Collections.singletonList(Duration.ofNanos(percentile(buckets, count, 0.99))));
+            latencies.put("latency_max", Collections.singletonList(Duration.ofNanos(max)));
+        }
+        report(reporter, "accepted", count, latencies);
+        report(reporter, "swap_pause_nanos", swapPauseNanos.sumThenReset());
+        report(reporter, "nodes", nodes.sumThenReset());
+        report(reporter, "series", series.sumThenReset());
+        report(reporter, "dropped_durations", droppedDurations.sumThenReset());
+        report(reporter, "report_nanos", reportNanos.sumThenReset());
+        report(reporter, "send_nanos", sendNanos.sumThenReset());
+        report(reporter, "bytes_sent", bytesSent.sumThenReset());
+        report(reporter, "send_failures", sendFailures.sumThenReset());
+    }
+
+    private static long percentile(long[] buckets, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += buckets[index];
+            if (seen >= rank) {
+                return index == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (index + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static void report(StatusReporter reporter, String metric, long value) {
+        report(reporter, metric, value, null);
+    }
+
+    private static void report(StatusReporter reporter, String metric, long value, Map<String, List<Duration>> durations) {
+        SortedMap<String, String> metaData = new TreeMap<>();
+        metaData.put(METRIC_KEY, metric);
+        reporter.accept(new Resource(RESOURCE_NAME, metaData, Collections.singletonList(new Measurement("SUCCESS", value, durations))));
+    }
+}
@@ -0,0 +1,117 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.Report;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+/**
+ * Encodes and decodes a {@link Report} to and from a compact binary
+ * representation which is independent of the configured report format.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class ReportCodec {
+
+    private static final byte VERSION = 1;
+
+    public byte[] encode(Report report) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(report.getInstant()
+                                .getEpochSecond());
+            out.writeInt(report.getInstant()
+                               .getNano());
+            out.writeInt(report.getResources()
+                               .size());
+            for (Resource resource : report.getResources()) {
+                out.writeUTF(resource.getName());
+                out.writeInt(resource.getMetaData()
+                                     .size());
+                for (Map.Entry<String, String> entry : resource.getMetaData()
+                                                               .entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+                out.writeInt(resource.getMeasurements()
+                                     .size());
+                for (Measurement measurement : resource.getMeasurements()) {
+                    out.writeUTF(measurement.getStatusCodeName());
+                    out.writeLong(measurement.getTotalNumberOfInvocations());
+                    out.writeInt(measurement.getDurations()
+                                            .size());
+                    for (Map.Entry<String, List<Duration>> entry : measurement.getDurations()
+                                                                              .entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue()
+                                          .size());
+                        for (Duration duration : entry.getValue()) {
+                            out.writeLong(duration.toNanos());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode report: '" + report.getInstant() + "'!", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Report decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported report version: '" + version + "'!");
+            }
+            Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            int numberOfResources = in.readInt();
+            List<Resource> resources = new ArrayList<>(numberOfResources);
+            for (int resourceIndex = 0; resourceIndex < numberOfResources; resourceIndex++) {
+                String name = in.readUTF();
+                int numberOfMetaData = in.readInt();
+                SortedMap<String, String> metaData = new TreeMap<>();
+                for (int index = 0; index < numberOfMetaData; index++) {
+                    metaData.put(in.readUTF(), in.readUTF());
+                }
+                int numberOfMeasurements = in.readInt();
+                List<Measurement> measurements = new ArrayList<>(numberOfMeasurements);
+                for (int measurementIndex = 0; measurementIndex < numberOfMeasurements; measurementIndex++) {
+                    String statusCodeName = in.readUTF();
+                    long totalNumberOfInvocations = in.readLong();
+                    int numberOfTimers = in.readInt();
+                    Map<String, List<Duration>> durations = new HashMap<>();
+                    for (int timerIndex = 0; timerIndex < numberOfTimers; timerIndex++) {
+                        String key = in.readUTF();
+                        int size = in.readInt();
+                        List<Duration> values = new ArrayList<>(size);
+                        for (int index = 0; index < size; index++) {
+                            values.add(Duration.ofNanos(in.readLong()));
+                        }
+                        durations.put(key, values);
+                    }
+                    measurements.add(new Measurement(statusCodeName, totalNumberOfInvocations, durations));
+                }
+                resources.add(new Resource(name, metaData, measurements));
+            }
+            return new Report(instant, resources);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not decode report!", e);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.Report;
+
+/**
+ * A local spool for reports which is backed by size capped, memory mapped
+ * segment files. Every report is appended once before it is sent and
+ * acknowledged after it has been sent successfully. Reports which could not be
+ * sent stay inside the spool and can be replayed later, also after a restart
+ * of the process. When the spool exceeds its maximum size the oldest segments
+ * are evicted.
+ * <p>
+ * Every record inside a segment consists of a state byte, the length of the
+ * encoded report as int and the report encoded by {@link ReportCodec}. The
+ * state byte is written last so a record which has been written partially is
+ * treated as the end of the segment.
+ * <p>
+ * Segments are unmapped when they are deleted or the spool is closed, so the
+ * files do not stay mapped until the buffers are garbage collected.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class ReportSpool implements Closeable {
+
+    private static final byte STATE_END = 0;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_DONE = 2;
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final ReportCodec codec;
+    private final Consumer<String> loggerInfo;
+
+    private final Deque<Segment> segments;
+    private final NavigableSet<Entry> replayable;
+    private final Map<Report, Entry> inFlight;
+
+    private Segment active;
+    private boolean closed;
+    private long nextSequence;
+    private long appendedReports;
+    private long evictedReports;
+
+    public ReportSpool(Path directory, int segmentSize, long maxSize, Consumer<String> loggerInfo) {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size: '" + segmentSize + "' is too small!");
+        }
+        if (maxSize < segmentSize) {
+            throw new IllegalArgumentException("Max spool size: '" + maxSize + "' must not be smaller than segment size: '" + segmentSize + "'!");
+        }
+        this.directory = Objects.requireNonNull(directory);
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.loggerInfo = Objects.requireNonNull(loggerInfo);
+        this.codec = new ReportCodec();
+        this.segments = new ArrayDeque<>();
+        this.replayable = new TreeSet<>(Comparator.comparingLong((Entry entry) -> entry.segment.sequence)
+                                                  .thenComparingInt(entry -> entry.position));
+        this.inFlight = new IdentityHashMap<>();
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open report spool: '" + directory + "'!", e);
+        }
+    }
+
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName()
+                              .toString();
+            long sequence;
+            try {
+                sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            Segment segment = new Segment(sequence, file, map(file, Files.size(file)));
+            segment.scan(replayable::add);
+            if (segment.liveRecords == 0) {
+                segment.delete();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        if (!replayable.isEmpty()) {
+            loggerInfo.accept("Found '" + replayable.size() + "' unsent request tagging report(s) inside spool: '" + directory + "'.");
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Append the given report as pending record. The report stays pending
+     * until it is acknowledged.
+     *
+     * @param report The report which will be sent.
+     * @return <code>true</code> if the report has been appended.
+     */
+    public synchronized boolean append(Report report) {
+        if (closed) {
+            return false;
+        }
+        byte[] data = codec.encode(report);
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        if (recordSize > segmentSize) {
+            loggerInfo.accept("Request tagging report of: '" + report.getInstant() + "' with '" + data.length + "' bytes exceeds spool segment size. Report will not be spooled.");
+            return false;
+        }
+        if (active == null || active.remaining() < recordSize) {
+            roll();
+        }
+        inFlight.put(report, active.write(data));
+        appendedReports++;
+        return true;
+    }
+
+    /**
+     * Mark the given report as successfully sent.
+     *
+     * @param report A report which has been appended or replayed before.
+     */
+    public synchronized void acknowledge(Report report) {
+        Entry entry = inFlight.remove(report);
+        if (entry != null) {
+            entry.done();
+        }
+    }
+
+    /**
+     * Release the given report because it could not be sent. The report will
+     * be available for replay in the order in which it has been appended, so a
+     * failed replay is replayed again before newer reports.
+     *
+     * @param report A report which has been appended or replayed before.
+     */
+    public synchronized void release(Report report) {
+        Entry entry = inFlight.remove(report);
+        if (entry != null && !entry.segment.evicted) {
+            replayable.add(entry);
+        }
+    }
+
+    /**
+     * @return The oldest report which is available for replay. The report must
+     *         be acknowledged or released afterwards.
+     */
+    public synchronized Optional<Report> nextReplay() {
+        Entry entry;
+        while ((entry = replayable.pollFirst()) != null) {
+            if (entry.segment.evicted) {
+                continue;
+            }
+            Report report = codec.decode(entry.read());
+            inFlight.put(report, entry);
+            return Optional.of(report);
+        }
+        return Optional.empty();
+    }
+
+    public synchronized boolean hasReplayableReports() {
+        return !replayable.isEmpty();
+    }
+
+    /**
+     * @return The number of reports which have not been acknowledged.
+     */
+    public synchronized int getPendingReports() {
+        int result = 0;
+        for (Segment segment : segments) {
+            result += segment.liveRecords;
+        }
+        return result;
+    }
+
+    public synchronized long getAppendedReports() {
+        return appendedReports;
+    }
+
+    public synchronized long getEvictedReports() {
+        return evictedReports;
+    }
+
+    /**
+     * @return The number of bytes which are currently allocated on disk.
+     */
+    public synchronized long getSize() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    private void roll() {
+        Segment previous = active;
+        active = null;
+        if (previous != null && previous.liveRecords == 0) {
+            segments.remove(previous);
+            previous.delete();
+        }
+        while (!segments.isEmpty() && (long) (segments.size() + 1) * segmentSize > maxSize) {
+            Segment oldest = segments.pollFirst();
+            evictedReports += oldest.liveRecords;
+            loggerInfo.accept("Evicting '" + oldest.liveRecords + "' unsent request tagging report(s) from spool: '" + directory + "'.");
+            oldest.delete();
+        }
+        long sequence = nextSequence++;
+        Path file = directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+        try {
+            active = new Segment(sequence, file, map(file, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create spool segment: '" + file + "'!", e);
+        }
+        segments.addLast(active);
+    }
+
+    /**
+     * Write the segments to disk and unmap them. Unsent reports stay inside
+     * the segment files and are found again by the next spool which is opened
+     * on the same directory.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        segments.forEach(Segment::unmap);
+        segments.clear();
+        replayable.clear();
+        inFlight.clear();
+        active = null;
+    }
+
+    private class Segment {
+
+        private final long sequence;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+
+        private int writePosition;
+        private int liveRecords;
+        private boolean evicted;
+
+        private Segment(long sequence, Path file, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private void scan(Consumer<Entry> pending) {
+            int position = 0;
+            while (position + RECORD_HEADER_SIZE <= buffer.limit()) {
+                byte state = buffer.get(position);
+                if (state == STATE_END) {
+                    break;
+                }
+                int length = buffer.getInt(position + 1);
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.limit()) {
+                    break;
+                }
+                if (state == STATE_PENDING) {
+                    liveRecords++;
+                    pending.accept(new Entry(this, position, length));
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+            writePosition = buffer.limit();
+        }
+
+        private int remaining() {
+            return buffer.limit() - writePosition;
+        }
+
+        private Entry write(byte[] data) {
+            int position = writePosition;
+            buffer.putInt(position + 1, data.length);
+            ByteBuffer target = buffer.duplicate();
+            target.position(position + RECORD_HEADER_SIZE);
+            target.put(data);
+            buffer.put(position, STATE_PENDING);
+            writePosition += RECORD_HEADER_SIZE + data.length;
+            liveRecords++;
+            return new Entry(this, position, data.length);
+        }
+
+        private void delete() {
+            for (Iterator<Entry> iter = replayable.iterator(); iter.hasNext();) {
+                if (iter.next().segment == this) {
+                    iter.remove();
+                }
+            }
+            unmap();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete spool segment: '" + file + "'!", e);
+            }
+        }
+
+        /**
+         * Write the segment to disk and release the mapping. The buffer must
+         * not be accessed afterwards, so the segment is marked as evicted.
+         */
+        private void unmap() {
+            if (evicted) {
+                return;
+            }
+            evicted = true;
+            buffer.force();
+            ReportSpool.unmap(buffer);
+        }
+    }
+
+    /**
+     * Release the mapping of the given buffer right away instead of waiting for
+     * the buffer to be garbage collected. If the JVM does not allow this the
+     * mapping is released by the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass()
+                                            .getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass()
+                           .getMethod("clean")
+                           .invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The mapping is released when the buffer is garbage collected.
+        }
+    }
+
+    private class Entry {
+
+        private final Segment segment;
+        private final int position;
+        private final int length;
+
+        private Entry(Segment segment, int position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+        private byte[] read() {
+            byte[] data = new byte[length];
+            ByteBuffer source = segment.buffer.duplicate();
+            source.position(position + RECORD_HEADER_SIZE);
+            source.get(data);
+            return data;
+        }
+
+        private void done() {
+            if (segment.evicted) {
+                return;
+            }
+            segment.buffer.put(position, STATE_DONE);
+            segment.liveRecords--;
+            if (segment.liveRecords == 0 && segment != active) {
+                segments.remove(segment);
+                segment.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+/**
+ * Decouples the swap of the collected request tagging data from serializing
+ * and sending it. Reports are handed over to a bounded queue and sent by
+ * dedicated worker threads. Failed sends are retried with an exponential
+ * backoff. When the queue is full a report is dropped according to the
+ * configured {@link DropPolicy}. Dropped reports and reports which could not
+ * be sent after all retries are handed over to the discard listener.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class ReportingPipeline implements Closeable {
+
+    public enum DropPolicy {
+
+            /**
+             * Drop the oldest queued report so the new one can be queued.
+             */
+            DROP_OLDEST,
+
+            /**
+             * Drop the new report and keep the queued ones.
+             */
+            DROP_NEWEST
+
+    }
+
+    /**
+     * The default time to wait for queued reports when the pipeline is closed.
+     */
+    public static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final long IDLE_TIMEOUT_MILLIS = 100;
+
+    private final Consumer<Report> sender;
+    private final Consumer<Report> discardListener;
+    private final BlockingDeque<Report> queue;
+    private final ExecutorService workers;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final DropPolicy dropPolicy;
+    private final BiConsumer<String, Throwable> loggerWarn;
+
+    private final LongAdder submittedReports;
+    private final LongAdder sentReports;
+    private final LongAdder droppedReports;
+    private final LongAdder failedReports;
+    private final LongAdder retries;
+
+    private volatile boolean closed;
+    private volatile boolean stopped;
+
+    public ReportingPipeline(Consumer<Report> sender,
+                             int capacity,
+                             int numberOfWorkers,
+                             int maxRetries,
+                             Duration retryBackoff,
+                             DropPolicy dropPolicy,
+                             Consumer<Report> discardListener,
+                             BiConsumer<String, Throwable> loggerWarn) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero!");
+        }
+        if (numberOfWorkers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be greater than zero!");
+        }
+        this.sender = Objects.requireNonNull(sender);
+        this.discardListener = Objects.requireNonNull(discardListener);
+        this.queue = new LinkedBlockingDeque<>(capacity);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoff = Objects.requireNonNull(retryBackoff);
+        this.dropPolicy = Objects.requireNonNull(dropPolicy);
+        this.loggerWarn = Objects.requireNonNull(loggerWarn);
+        this.submittedReports = new LongAdder();
+        this.sentReports = new LongAdder();
+        this.droppedReports = new LongAdder();
+        this.failedReports = new LongAdder();
+        this.retries = new LongAdder();
+        this.workers = Executors.newFixedThreadPool(numberOfWorkers, daemonThreads());
+        for (int index = 0; index < numberOfWorkers; index++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Create a sender which writes a report with a new status reporter.
+     *
+     * @param reporters The status reporter factory.
+     * @return A sender for reports.
+     */
+    public static Consumer<Report> sender(Function<Instant, StatusReporter> reporters) {
+        Objects.requireNonNull(reporters);
+        return report -> {
+            StatusReporter reporter = reporters.apply(report.getInstant());
+            try {
+                report.getResources()
+                      .forEach(reporter::accept);
+            } finally {
+                reporter.close();
+            }
+        };
+    }
+
+    /**
+     * Queue the given report for sending. Never blocks.
+     *
+     * @param report The report to send.
+     * @return <code>true</code> if the report has been queued,
+     *         <code>false</code> if it has been dropped.
+     */
+    public boolean submit(Report report) {
+        Objects.requireNonNull(report);
+        if (closed) {
+            discard(report);
+            return false;
+        }
+        while (!queue.offerLast(report)) {
+            if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                discard(report);
+                return false;
+            }
+            Report oldest = queue.pollFirst();
+            if (oldest != null) {
+                discard(oldest);
+            }
+        }
+        submittedReports.increment();
+        return true;
+    }
+
+    private void discard(Report report) {
+        droppedReports.increment();
+        discardListener.accept(report);
+    }
+
+    /**
+     * Workers wait for reports with a timeout so they notice when the pipeline
+     * has been closed. After close they send the remaining reports and stop as
+     * soon as the queue is empty.
+     */
+    private void work() {
+        while (!stopped) {
+            Report report;
+            try {
+                report = closed ? queue.pollFirst() : queue.pollFirst(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                return;
+            }
+            if (report == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            if (!sendWithRetries(report)) {
+                return;
+            }
+        }
+    }
+
+    private boolean sendWithRetries(Report report) {
+        for (int attempt = 0;; attempt++) {
+            try {
+                sender.accept(report);
+                sentReports.increment();
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries) {
+                    failedReports.increment();
+                    loggerWarn.accept("Error while sending request tagging data!", e);
+                    discardListener.accept(report);
+                    return true;
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(backoff(attempt).toMillis());
+                } catch (InterruptedException interrupted) {
+                    failedReports.increment();
+                    discardListener.accept(report);
+                    Thread.currentThread()
+                          .interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    Duration backoff(int attempt) {
+        return retryBackoff.multipliedBy(1L << Math.min(attempt, 16));
+    }
+
+    /**
+     * @return The number of reports which are currently waiting for a worker.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSubmittedReports() {
+        return submittedReports.sum();
+    }
+
+    public long getSentReports() {
+        return sentReports.sum();
+    }
+
+    public long getDroppedReports() {
+        return droppedReports.sum();
+    }
+
+    public long getFailedReports() {
+        return failedReports.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Close the pipeline and wait up to {@link #CLOSE_TIMEOUT} for the queued
+     * and in-flight reports to be sent.
+     */
+    @Override
+    public void close() {
+        close(CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Stop accepting reports and wait for the workers to send the queued and
+     * in-flight reports. Workers which are still busy after the given timeout
+     * are interrupted and the reports which are left are discarded.
+     *
+     * @param timeout The maximum time to wait for the remaining reports.
+     */
+    public void close(Duration timeout) {
+        closed = true;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                stopped = true;
+                workers.shutdownNow();
+                workers.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+            workers.shutdownNow();
+            Thread.currentThread()
+                  .interrupt();
+        }
+        Report report;
+        while ((report = queue.pollFirst()) != null) {
+            discard(report);
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "request-tagging-reporter-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The swapped request tagging data of one send interval.
+     */
+    public static class Report {
+
+        private final Instant instant;
+        private final List<Resource> resources;
+
+        public Report(Instant instant, List<Resource> resources) {
+            this.instant = Objects.requireNonNull(instant);
+            this.resources = Collections.unmodifiableList(Objects.requireNonNull(resources));
+        }
+
+        public Instant getInstant() {
+            return instant;
+        }
+
+        public List<Resource> getResources() {
+            return resources;
+        }
+
+        @Override
+        public String toString() {
+            return "Report [instant=" + instant + ", resources=" + resources + "]";
+        }
+    }
+}
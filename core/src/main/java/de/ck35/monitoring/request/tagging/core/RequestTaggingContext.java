@@ -1,20 +1,36 @@
 package de.ck35.monitoring.request.tagging.core;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.DropPolicy;
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.Report;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
 
 /**
@@ -35,12 +51,52 @@ public class RequestTaggingContext implements Closeable {
 
     private volatile Clock sendIntervalClock;
     private volatile Duration collectorSendDelayDuration;
+    private volatile Duration collectorSendJitter;
+    private volatile String collectorSendJitterSeed;
+    private volatile Duration collectorSendOffset;
     private volatile Function<Instant, StatusReporter> requestTaggingStatusReporterReference;
 
+    private volatile boolean internalMetricsEnabled;
+
     private volatile boolean requestIdEnabled;
     private volatile boolean forceRequestIdOverwrite;
     private volatile String requestIdParameterName;
 
+    private volatile boolean asyncReporting;
+    private volatile int reportQueueCapacity;
+    private volatile int reportWorkers;
+    private volatile int reportMaxRetries;
+    private volatile Duration reportRetryBackoff;
+    private volatile DropPolicy reportDropPolicy;
+    private volatile ReportingPipeline reportingPipeline;
+
+    private volatile Path spoolDirectory;
+    private volatile int spoolSegmentSize;
+    private volatile long spoolMaxSize;
+    private volatile Duration spoolReplayInterval;
+    private volatile ReportSpool reportSpool;
+    private final ScheduledThreadPoolExecutor replayExecutor;
+    private final AtomicBoolean replaying;
+    private final AtomicInteger earlySends;
+    private final InternalMetrics internalMetrics;
+
+    private volatile RouteTemplates resourceNameTemplates;
+    private volatile Collection<String> excludedPathPrefixes;
+    private volatile Collection<String> excludedMethods;
+    private volatile Collection<String> excludedHeaders;
+    private volatile ExclusionRules exclusionRules;
+
+    private volatile boolean jmxEnabled;
+    private volatile String jmxName;
+    private volatile RequestTaggingContextManagement management;
+    private volatile boolean initialized;
+    private volatile ScheduledFuture<?> sendTask;
+    private long sendGeneration;
+    private volatile Instant intervalStart;
+    private volatile Instant lastSendTime;
+    private volatile Duration lastSendDuration;
+    private volatile boolean lastSendSucceeded;
+
     public RequestTaggingContext() {
         this(new StatusReporterFactory()::build);
     }
@@ -56,46 +112,217 @@ public class RequestTaggingContext implements Closeable {
         this.statusConsumer = new DefaultRequestTaggingStatusConsumer();
         defaultStatus = new DefaultRequestTaggingStatus(statusConsumer, hashAlgorithm, measurementClock);
         executor = new ScheduledThreadPoolExecutor(1);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        replayExecutor = new ScheduledThreadPoolExecutor(1);
+        replaying = new AtomicBoolean();
+        earlySends = new AtomicInteger();
+        internalMetrics = new InternalMetrics();
+        jmxName = "default";
+        resourceNameTemplates = RouteTemplates.empty();
+        excludedPathPrefixes = Collections.emptyList();
+        excludedMethods = Collections.emptyList();
+        excludedHeaders = Collections.emptyList();
+        exclusionRules = ExclusionRules.none();
+        statusConsumer.setMemoryBudgetExceededHandler(this::memoryBudgetExceeded);
 
         requestIdEnabled = false;
         forceRequestIdOverwrite = false;
         requestIdParameterName = "X-Request-ID";
 
+        asyncReporting = false;
+        reportQueueCapacity = 3;
+        reportWorkers = 1;
+        reportMaxRetries = 2;
+        reportRetryBackoff = Duration.ofSeconds(1);
+        reportDropPolicy = DropPolicy.DROP_OLDEST;
+
+        spoolSegmentSize = 4 * 1024 * 1024;
+        spoolMaxSize = 64L * 1024 * 1024;
+        spoolReplayInterval = Duration.ofSeconds(1);
+
         loggerInfo = System.out::println;
         loggerWarn = (message, throwable) -> {
             System.out.println(message);
-            throwable.printStackTrace();
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
         };
 
         setCollectorSendDelayDuration(Duration.ofMinutes(1));
+        collectorSendJitter = Duration.ZERO;
+        collectorSendOffset = Duration.ZERO;
     }
 
     public void initialize() {
         loggerInfo.accept("Initializing request tagging context.");
 
         requestTaggingStatusReporterReference = requestTaggingStatusReporterFactory.get();
+        if (internalMetricsEnabled) {
+            loggerInfo.accept("Reporting overhead of request tagging as resource: '" + InternalMetrics.RESOURCE_NAME + "'.");
+            statusConsumer.setInternalMetrics(internalMetrics);
+        }
+        if (spoolDirectory != null) {
+            loggerInfo.accept("Spooling request tagging data to: '" + spoolDirectory + "' with max size of '" + spoolMaxSize + "' bytes.");
+            reportSpool = new ReportSpool(spoolDirectory, spoolSegmentSize, spoolMaxSize, message -> loggerInfo.accept(message));
+        }
+        if (asyncReporting) {
+            loggerInfo.accept("Sending request tagging data asynchronously with queue capacity of '" + reportQueueCapacity + "' and '" + reportWorkers + "' worker(s).");
+            reportingPipeline = new ReportingPipeline(this::deliver,
+                                                      reportQueueCapacity,
+                                                      reportWorkers,
+                                                      reportMaxRetries,
+                                                      reportRetryBackoff,
+                                                      reportDropPolicy,
+                                                      this::release,
+                                                      (message, throwable) -> loggerWarn.accept(message, throwable));
+        }
+
+        intervalStart = Instant.now();
+        initialized = true;
+        schedule();
+        if (jmxEnabled) {
+            management = RequestTaggingContextManagement.register(this, jmxName, (message, throwable) -> loggerWarn.accept(message, throwable));
+        }
+    }
 
-        loggerInfo.accept("Scheduling send process for request tagging data with delay of '" + collectorSendDelayDuration + "'.");
-        long startDelay = Math.max(0, sendIntervalClock.instant()
-                                                       .plus(collectorSendDelayDuration)
-                                                       .toEpochMilli()
+    private synchronized void schedule() {
+        Optional.ofNullable(sendTask)
+                .ifPresent(task -> task.cancel(false));
+        collectorSendOffset = sendOffset();
+        loggerInfo.accept("Scheduling send process for request tagging data with delay of '" + collectorSendDelayDuration + "' and offset of '" + collectorSendOffset
+                + "'.");
+        scheduleSend(++sendGeneration, currentIntervalEnd());
+    }
+
+    /**
+     * Schedule the send of the interval which ends at the given boundary. The
+     * delay is computed from the clock for every interval, so the sends do not
+     * drift away from the boundaries.
+     */
+    private synchronized void scheduleSend(long generation, Instant boundary) {
+        if (generation != sendGeneration || executor.isShutdown()) {
+            return;
+        }
+        long delay = Math.max(0, boundary.plus(collectorSendOffset)
+                                         .toEpochMilli()
                 - Instant.now()
                          .toEpochMilli());
-        executor.scheduleWithFixedDelay(this::send, startDelay, collectorSendDelayDuration.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            sendTask = executor.schedule(() -> sendInterval(generation, boundary), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Context has been closed.
+        }
+    }
+
+    private void sendInterval(long generation, Instant boundary) {
+        try {
+            earlySends.set(0);
+            send(boundary);
+        } finally {
+            Instant next = currentIntervalEnd();
+            Instant following = boundary.plus(collectorSendDelayDuration);
+            scheduleSend(generation, next.isAfter(following) ? next : following);
+        }
+    }
+
+    /**
+     * Every instance sends its data at a fixed offset after the interval
+     * boundary so a large number of instances does not send at the same time.
+     * The offset is derived from a hash of the jitter seed, so an instance
+     * keeps its offset across restarts. The reported timestamps are not
+     * affected because the offset is always smaller than the interval.
+     */
+    private Duration sendOffset() {
+        long bound = Math.min(collectorSendJitter.toMillis(), collectorSendDelayDuration.toMillis());
+        if (bound <= 0) {
+            return Duration.ZERO;
+        }
+        String seed = Optional.ofNullable(collectorSendJitterSeed)
+                              .orElseGet(RequestTaggingContext::localHostName);
+        long hash = UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8))
+                        .getMostSignificantBits();
+        return Duration.ofMillis(Math.floorMod(hash, bound));
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost()
+                              .getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID()
+                       .toString();
+        }
     }
 
     public void runWithinContext(Function<String, String> headers, Runnable runnable) {
         taggingRunnable(headers, runnable).run();
     }
 
+    /**
+     * Run the given runnable with the resource name set to the configured
+     * resource name template which matches the given request path.
+     *
+     * @param requestUri The URI of the request without query.
+     * @param pathStart The index at which the path which should be matched
+     *        starts, e.g. the length of the context path of a web application.
+     */
+    public void runWithinContext(String requestUri, int pathStart, Function<String, String> headers, Runnable runnable) {
+        taggingRunnable(requestUri, pathStart, headers, runnable).run();
+    }
+
+    /**
+     * Check the configured exclusion rules before a request is passed into
+     * this context. Requests which are excluded should be processed without
+     * calling {@link #runWithinContext(String, int, Function, Runnable)}.
+     *
+     * @see ExclusionRules#isExcluded(String, int, String, Function)
+     */
+    public boolean isExcluded(String requestUri, int pathStart, String method, Function<String, String> headers) {
+        return exclusionRules.isExcluded(requestUri, pathStart, method, headers);
+    }
+
     public RequestTaggingRunnable taggingRunnable(Function<String, String> parameters, Runnable runnable) {
+        return taggingRunnable(null, 0, parameters, runnable);
+    }
+
+    public RequestTaggingRunnable taggingRunnable(String requestUri, int pathStart, Function<String, String> parameters, Runnable runnable) {
+        if (!statusConsumer.sample()) {
+            return RequestTaggingRunnable.untagged(runnable);
+        }
+        return new RequestTaggingRunnable(runnable, newStatus(requestUri, pathStart, parameters));
+    }
+
+    /**
+     * Create the status for a request which is not processed by a single
+     * thread, e.g. on a non blocking server. The caller is responsible for
+     * making the status available while the request is processed and for
+     * consuming it when the response has been written, see
+     * {@link AsyncRequestTagging}.
+     *
+     * @return The status of the request or {@link Optional#empty()} if the
+     *         request is excluded or not sampled.
+     */
+    public Optional<DefaultRequestTaggingStatus> createStatus(String requestUri, int pathStart, String method, Function<String, String> headers) {
+        if (isExcluded(requestUri, pathStart, method, headers) || !statusConsumer.sample()) {
+            return Optional.empty();
+        }
+        return Optional.of(newStatus(requestUri, pathStart, headers));
+    }
+
+    private DefaultRequestTaggingStatus newStatus(String requestUri, int pathStart, Function<String, String> parameters) {
         DefaultRequestTaggingStatus status = new DefaultRequestTaggingStatus(defaultStatus);
+        if (requestUri != null) {
+            String template = resourceNameTemplates.match(requestUri, pathStart);
+            if (template != null) {
+                status.withResourceName(template);
+            }
+        }
         if (requestIdEnabled) {
             String requestId = forceRequestIdOverwrite ? generateUniqueRequestId() : Optional.ofNullable(parameters.apply(requestIdParameterName))
                                                                                              .orElseGet(this::generateUniqueRequestId);
             status.withRequestId(requestIdParameterName, requestId);
         }
-        return new RequestTaggingRunnable(runnable, status);
+        return status;
     }
 
     protected String generateUniqueRequestId() {
@@ -103,26 +330,223 @@ public class RequestTaggingContext implements Closeable {
                    .toString();
     }
 
+    /**
+     * Stop the send process and send the data of the unfinished interval. With
+     * asynchronous reporting the queued reports are sent before the pipeline
+     * is closed, see {@link ReportingPipeline#close()}.
+     */
     @Override
     public void close() {
         loggerInfo.accept("Shutting down request tagging context.");
+        Optional.ofNullable(management)
+                .ifPresent(RequestTaggingContextManagement::unregister);
         executor.shutdown();
+        try {
+            executor.awaitTermination(ReportingPipeline.CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+        if (initialized && !statusConsumer.isEmpty()) {
+            send(currentIntervalEnd());
+        }
+        replayExecutor.shutdownNow();
+        Optional.ofNullable(reportingPipeline)
+                .ifPresent(ReportingPipeline::close);
+        Optional.ofNullable(reportSpool)
+                .ifPresent(ReportSpool::close);
+        if (requestTaggingStatusReporterReference instanceof Closeable) {
+            try {
+                ((Closeable) requestTaggingStatusReporterReference).close();
+            } catch (IOException e) {
+                loggerWarn.accept("Could not close request tagging status reporter!", e);
+            }
+        }
     }
 
     protected void send() {
+        earlySends.set(0);
+        send(sendIntervalClock.instant());
+    }
+
+    /**
+     * @return The timestamp of the report which will contain the data
+     *         collected right now, i.e. the end of the current interval.
+     */
+    private Instant currentIntervalEnd() {
+        long interval = collectorSendDelayDuration.toMillis();
+        long now = Instant.now()
+                          .toEpochMilli()
+                - collectorSendOffset.toMillis();
+        return Instant.ofEpochMilli(now - Math.floorMod(now, interval) + interval);
+    }
+
+    private void memoryBudgetExceeded() {
         try {
-            Instant now = sendIntervalClock.instant();
+            executor.execute(this::sendEarly);
+        } catch (RejectedExecutionException e) {
+            loggerWarn.accept("Could not send request tagging data before end of interval!", e);
+        }
+    }
+
+    /**
+     * Send the collected data before the end of the interval because the
+     * memory budget of the status consumer has been exceeded. The report is
+     * stamped with the boundary of the current interval plus the number of
+     * early sends in milliseconds. It stays inside the bucket of the regular
+     * report without overwriting it and without adding meta data which would
+     * split the series. This only works if the backend stores timestamps with
+     * millisecond or finer precision, otherwise the partial report overwrites
+     * the regular one.
+     */
+    private void sendEarly() {
+        loggerInfo.accept("Request tagging data exceeded memory budget of: '" + statusConsumer.getMemoryBudget() + "' bytes. Sending data before end of interval.");
+        send(currentIntervalEnd().plusMillis(earlySends.incrementAndGet()));
+    }
+
+    private void send(Instant now) {
+        intervalStart = Instant.now();
+        long sendStart = System.nanoTime();
+        try {
+            ReportingPipeline pipeline = reportingPipeline;
+            ReportSpool spool = reportSpool;
+            if (pipeline != null || spool != null) {
+                List<Resource> resources = new ArrayList<>();
+                collect(resources::add);
+                if (resources.isEmpty()) {
+                    return;
+                }
+                Report report = new Report(now, resources);
+                if (spool != null) {
+                    append(spool, report);
+                }
+                if (pipeline == null) {
+                    try {
+                        deliver(report);
+                    } catch (RuntimeException e) {
+                        loggerWarn.accept("Error while sending request tagging data!", e);
+                    }
+                } else if (!pipeline.submit(report)) {
+                    loggerInfo.accept("Request tagging report queue is full. Dropped report of: '" + now + "'.");
+                }
+                return;
+            }
             StatusReporter reporter = requestTaggingStatusReporterReference.apply(now);
             try {
-                statusConsumer.report(reporter);
+                collect(reporter);
             } finally {
-                reporter.close();
+                long start = System.nanoTime();
+                try {
+                    reporter.close();
+                    sent(start, true);
+                } catch (RuntimeException e) {
+                    sent(start, false);
+                    throw e;
+                } finally {
+                    internalMetrics(metrics -> metrics.sent(System.nanoTime() - start));
+                }
             }
         } catch (RuntimeException e) {
+            sent(sendStart, false);
+            internalMetrics(InternalMetrics::sendFailed);
             loggerWarn.accept("Error while sending request tagging data!", e);
         }
     }
 
+    /**
+     * A report which could not be spooled is still sent, it only can not be
+     * replayed if the send fails.
+     */
+    private void append(ReportSpool spool, Report report) {
+        try {
+            spool.append(report);
+        } catch (RuntimeException e) {
+            loggerWarn.accept("Could not spool request tagging report of: '" + report.getInstant() + "'!", e);
+        }
+    }
+
+    private void sent(long start, boolean succeeded) {
+        lastSendDuration = Duration.ofNanos(System.nanoTime() - start);
+        lastSendTime = Instant.now();
+        lastSendSucceeded = succeeded;
+    }
+
+    /**
+     * Pass the collected data and the internal metrics to the given reporter.
+     */
+    private void collect(StatusReporter reporter) {
+        long start = System.nanoTime();
+        statusConsumer.report(reporter);
+        internalMetrics(metrics -> {
+            metrics.reported(System.nanoTime() - start);
+            metrics.report(reporter);
+        });
+    }
+
+    private void internalMetrics(Consumer<InternalMetrics> action) {
+        Optional.ofNullable(statusConsumer.getInternalMetrics())
+                .ifPresent(action);
+    }
+
+    /**
+     * Send the given report and acknowledge it inside the spool. If the report
+     * could not be sent it will be released for a later replay. The result of
+     * the send is recorded here, so callers must not record it again.
+     */
+    private void deliver(Report report) {
+        long start = System.nanoTime();
+        try {
+            ReportingPipeline.sender(requestTaggingStatusReporterReference)
+                             .accept(report);
+            sent(start, true);
+            internalMetrics(metrics -> metrics.sent(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            sent(start, false);
+            internalMetrics(InternalMetrics::sendFailed);
+            if (reportingPipeline == null) {
+                release(report);
+            }
+            throw e;
+        }
+        ReportSpool spool = reportSpool;
+        if (spool != null) {
+            spool.acknowledge(report);
+            if (spool.hasReplayableReports() && replaying.compareAndSet(false, true)) {
+                replayExecutor.execute(this::replay);
+            }
+        }
+    }
+
+    private void release(Report report) {
+        Optional.ofNullable(reportSpool)
+                .ifPresent(spool -> spool.release(report));
+    }
+
+    /**
+     * Replay one spooled report and schedule the next replay after the replay
+     * interval. Replaying stops when the spool is empty or a send fails.
+     */
+    private void replay() {
+        ReportSpool spool = reportSpool;
+        Optional<Report> next = spool == null ? Optional.empty() : spool.nextReplay();
+        if (!next.isPresent()) {
+            replaying.set(false);
+            return;
+        }
+        Report report = next.get();
+        try {
+            ReportingPipeline.sender(requestTaggingStatusReporterReference)
+                             .accept(report);
+            spool.acknowledge(report);
+            loggerInfo.accept("Replayed spooled request tagging report of: '" + report.getInstant() + "'.");
+            replayExecutor.schedule(this::replay, spoolReplayInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            spool.release(report);
+            replaying.set(false);
+            loggerWarn.accept("Error while replaying spooled request tagging data!", e);
+        }
+    }
+
     public void setLoggerInfo(Consumer<String> loggerInfo) {
         this.loggerInfo = Objects.requireNonNull(loggerInfo, "Can not set loggerInfo to null!");
     }
@@ -135,15 +559,52 @@ public class RequestTaggingContext implements Closeable {
         return sendIntervalClock;
     }
 
+    /**
+     * Changing the delay of an initialized context reschedules the send
+     * process. The data collected so far is sent at the next boundary of the
+     * new interval.
+     */
     public void setCollectorSendDelayDuration(Duration collectorSendDelayDuration) {
         this.collectorSendDelayDuration = collectorSendDelayDuration;
         this.sendIntervalClock = Clock.tick(Clock.systemUTC(), this.collectorSendDelayDuration);
+        if (initialized && !executor.isShutdown()) {
+            schedule();
+        }
     }
 
     public Duration getCollectorSendDelayDuration() {
         return collectorSendDelayDuration;
     }
 
+    public void setCollectorSendJitter(Duration collectorSendJitter) {
+        this.collectorSendJitter = Objects.requireNonNull(collectorSendJitter, "Can not set collectorSendJitter to null!");
+    }
+
+    public Duration getCollectorSendJitter() {
+        return collectorSendJitter;
+    }
+
+    /**
+     * @param collectorSendJitterSeed The value from which the send offset is
+     *        derived e.g. host and instance id. If not set the local host name
+     *        is used.
+     */
+    public void setCollectorSendJitterSeed(String collectorSendJitterSeed) {
+        this.collectorSendJitterSeed = collectorSendJitterSeed;
+    }
+
+    public String getCollectorSendJitterSeed() {
+        return collectorSendJitterSeed;
+    }
+
+    /**
+     * @return The offset after the interval boundary at which data is sent.
+     *         Calculated when the context is initialized.
+     */
+    public Duration getCollectorSendOffset() {
+        return collectorSendOffset;
+    }
+
     public DefaultRequestTaggingStatusConsumer getStatusConsumer() {
         return statusConsumer;
     }
@@ -152,6 +613,81 @@ public class RequestTaggingContext implements Closeable {
         return defaultStatus;
     }
     
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+    public void setJmxName(String jmxName) {
+        this.jmxName = Objects.requireNonNull(jmxName, "Can not set jmxName to null!");
+    }
+    public String getJmxName() {
+        return jmxName;
+    }
+    /**
+     * @return The time at which the current interval started, i.e. the last
+     *         send or the initialization of the context.
+     */
+    public Optional<Instant> getIntervalStart() {
+        return Optional.ofNullable(intervalStart);
+    }
+    public Optional<Instant> getLastSendTime() {
+        return Optional.ofNullable(lastSendTime);
+    }
+    public Optional<Duration> getLastSendDuration() {
+        return Optional.ofNullable(lastSendDuration);
+    }
+    public boolean isLastSendSucceeded() {
+        return lastSendSucceeded;
+    }
+    public void setResourceNameTemplates(Collection<String> resourceNameTemplates) {
+        this.resourceNameTemplates = RouteTemplates.compile(resourceNameTemplates);
+    }
+    public RouteTemplates getResourceNameTemplates() {
+        return resourceNameTemplates;
+    }
+    public void setExcludedPathPrefixes(Collection<String> excludedPathPrefixes) {
+        this.excludedPathPrefixes = Objects.requireNonNull(excludedPathPrefixes, "Can not set excludedPathPrefixes to null!");
+        compileExclusionRules();
+    }
+    public Collection<String> getExcludedPathPrefixes() {
+        return excludedPathPrefixes;
+    }
+    public void setExcludedMethods(Collection<String> excludedMethods) {
+        this.excludedMethods = Objects.requireNonNull(excludedMethods, "Can not set excludedMethods to null!");
+        compileExclusionRules();
+    }
+    public Collection<String> getExcludedMethods() {
+        return excludedMethods;
+    }
+    public void setExcludedHeaders(Collection<String> excludedHeaders) {
+        this.excludedHeaders = Objects.requireNonNull(excludedHeaders, "Can not set excludedHeaders to null!");
+        compileExclusionRules();
+    }
+    public Collection<String> getExcludedHeaders() {
+        return excludedHeaders;
+    }
+    private synchronized void compileExclusionRules() {
+        exclusionRules = ExclusionRules.compile(excludedPathPrefixes, excludedMethods, excludedHeaders);
+    }
+    public ExclusionRules getExclusionRules() {
+        return exclusionRules;
+    }
+
+    public void setInternalMetricsEnabled(boolean internalMetricsEnabled) {
+        this.internalMetricsEnabled = internalMetricsEnabled;
+    }
+    public boolean isInternalMetricsEnabled() {
+        return internalMetricsEnabled;
+    }
+    /**
+     * @return The metrics which record the overhead of request tagging. They
+     *         are only recorded and reported if internal metrics are enabled.
+     */
+    public InternalMetrics getInternalMetrics() {
+        return internalMetrics;
+    }
     public void setRequestIdEnabled(boolean requestIdEnabled) {
         this.requestIdEnabled = requestIdEnabled;
     }
@@ -170,5 +706,79 @@ public class RequestTaggingContext implements Closeable {
     public void setRequestIdParameterName(String requestIdParameterName) {
         this.requestIdParameterName = Objects.requireNonNull(requestIdParameterName, "Can not set requestIdParameterName to null!");
     }
+    public void setAsyncReporting(boolean asyncReporting) {
+        this.asyncReporting = asyncReporting;
+    }
+    public boolean isAsyncReporting() {
+        return asyncReporting;
+    }
+    public void setReportQueueCapacity(int reportQueueCapacity) {
+        this.reportQueueCapacity = reportQueueCapacity;
+    }
+    public int getReportQueueCapacity() {
+        return reportQueueCapacity;
+    }
+    public void setReportWorkers(int reportWorkers) {
+        this.reportWorkers = reportWorkers;
+    }
+    public int getReportWorkers() {
+        return reportWorkers;
+    }
+    public void setReportMaxRetries(int reportMaxRetries) {
+        this.reportMaxRetries = reportMaxRetries;
+    }
+    public int getReportMaxRetries() {
+        return reportMaxRetries;
+    }
+    public void setReportRetryBackoff(Duration reportRetryBackoff) {
+        this.reportRetryBackoff = Objects.requireNonNull(reportRetryBackoff, "Can not set reportRetryBackoff to null!");
+    }
+    public Duration getReportRetryBackoff() {
+        return reportRetryBackoff;
+    }
+    public void setReportDropPolicy(DropPolicy reportDropPolicy) {
+        this.reportDropPolicy = Objects.requireNonNull(reportDropPolicy, "Can not set reportDropPolicy to null!");
+    }
+    public DropPolicy getReportDropPolicy() {
+        return reportDropPolicy;
+    }
+    /**
+     * @return The pipeline which sends the reports if asynchronous reporting
+     *         is enabled and the context has been initialized.
+     */
+    public Optional<ReportingPipeline> getReportingPipeline() {
+        return Optional.ofNullable(reportingPipeline);
+    }
+    public void setSpoolDirectory(Path spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+    public Path getSpoolDirectory() {
+        return spoolDirectory;
+    }
+    public void setSpoolSegmentSize(int spoolSegmentSize) {
+        this.spoolSegmentSize = spoolSegmentSize;
+    }
+    public int getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+    public void setSpoolMaxSize(long spoolMaxSize) {
+        this.spoolMaxSize = spoolMaxSize;
+    }
+    public long getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+    public void setSpoolReplayInterval(Duration spoolReplayInterval) {
+        this.spoolReplayInterval = Objects.requireNonNull(spoolReplayInterval, "Can not set spoolReplayInterval to null!");
+    }
+    public Duration getSpoolReplayInterval() {
+        return spoolReplayInterval;
+    }
+    /**
+     * @return The spool for unsent reports if a spool directory has been
+     *         configured and the context has been initialized.
+     */
+    public Optional<ReportSpool> getReportSpool() {
+        return Optional.ofNullable(reportSpool);
+    }
     
 }
\ No newline at end of file
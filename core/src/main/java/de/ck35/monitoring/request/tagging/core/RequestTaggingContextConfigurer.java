@@ -1,14 +1,24 @@
 package de.ck35.monitoring.request.tagging.core;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus.StatusCode;
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.DropPolicy;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory.HttpTransport;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory.ReportFormat;
 
 /**
@@ -24,15 +34,39 @@ public class RequestTaggingContextConfigurer {
     public enum ConfigKey {
 
             collectorSendDelayDuration("requestTagging.context.collectorSendDelayDuration"),
+            collectorSendJitter("requestTagging.context.collectorSendJitter"),
+            internalMetricsEnabled("requestTagging.context.internalMetricsEnabled"),
+            jmxEnabled("requestTagging.context.jmxEnabled"),
+            resourceNameTemplates("requestTagging.context.resourceNameTemplates"),
+            excludedPathPrefixes("requestTagging.context.excludedPathPrefixes"),
+            excludedMethods("requestTagging.context.excludedMethods"),
+            excludedHeaders("requestTagging.context.excludedHeaders"),
+            jmxName("requestTagging.context.jmxName"),
             requestIdEnabled("requestTagging.context.requestIdEnabled"),
             forceRequestIdOverwrite("requestTagging.context.forceRequestIdOverwrite"),
             requestIdParameterName("requestTagging.context.requestIdParameterName"),
+            asyncReporting("requestTagging.context.asyncReporting"),
+            reportQueueCapacity("requestTagging.context.reportQueueCapacity"),
+            reportWorkers("requestTagging.context.reportWorkers"),
+            reportMaxRetries("requestTagging.context.reportMaxRetries"),
+            reportRetryBackoff("requestTagging.context.reportRetryBackoff"),
+            reportDropPolicy("requestTagging.context.reportDropPolicy"),
+            spoolDirectory("requestTagging.context.spoolDirectory"),
+            spoolSegmentSize("requestTagging.context.spoolSegmentSize"),
+            spoolMaxSize("requestTagging.context.spoolMaxSize"),
+            spoolReplayInterval("requestTagging.context.spoolReplayInterval"),
 
             ignored("requestTagging.defaultStatus.ignored"),
             resourceName("requestTagging.defaultStatus.resourceName"),
             statusCode("requestTagging.defaultStatus.statusCode"),
 
             maxDurationsPerNode("requestTagging.statusConsumer.maxDurationsPerNode"),
+            memoryBudget("requestTagging.statusConsumer.memoryBudget"),
+            sampleRate("requestTagging.statusConsumer.sampleRate"),
+            resourceSampleRates("requestTagging.statusConsumer.resourceSampleRates"),
+            slowRequestThreshold("requestTagging.statusConsumer.slowRequestThreshold"),
+            resourceSlowRequestThresholds("requestTagging.statusConsumer.resourceSlowRequestThresholds"),
+            fastDurationSampleRate("requestTagging.statusConsumer.fastDurationSampleRate"),
 
             hostId("requestTagging.statusReporter.hostId"),
             instanceId("requestTagging.statusReporter.instanceId"),
@@ -47,9 +81,33 @@ public class RequestTaggingContextConfigurer {
             queryPart("requestTagging.statusReporter.queryPart"),
             connectionTimeout("requestTagging.statusReporter.connectionTimeout"),
             readTimeout("requestTagging.statusReporter.readTimeout"),
+            httpTransport("requestTagging.statusReporter.httpTransport"),
+            keepAliveConnections("requestTagging.statusReporter.keepAliveConnections"),
+            gzipEnabled("requestTagging.statusReporter.gzipEnabled"),
+            gzipLevel("requestTagging.statusReporter.gzipLevel"),
 
             elasticsearchDocumentType("requestTagging.statusReporter.elasticsearchDocumentType"),
             elasticsearchIndexPrefixTemplate("requestTagging.statusReporter.elasticsearchIndexPrefixTemplate"),
+            elasticsearchBulkMaxBytes("requestTagging.statusReporter.elasticsearchBulkMaxBytes"),
+            elasticsearchBulkMaxDocuments("requestTagging.statusReporter.elasticsearchBulkMaxDocuments"),
+            elasticsearchBulkParallelism("requestTagging.statusReporter.elasticsearchBulkParallelism"),
+            elasticsearchBulkPipelineDepth("requestTagging.statusReporter.elasticsearchBulkPipelineDepth"),
+
+            influxDBAggregateDurations("requestTagging.statusReporter.influxDBAggregateDurations"),
+
+            prometheusPort("requestTagging.statusReporter.prometheusPort"),
+            prometheusPath("requestTagging.statusReporter.prometheusPath"),
+
+            statsdMaxPacketSize("requestTagging.statusReporter.statsdMaxPacketSize"),
+
+            fileDirectory("requestTagging.statusReporter.fileDirectory"),
+            fileMaxSize("requestTagging.statusReporter.fileMaxSize"),
+            fileRotationInterval("requestTagging.statusReporter.fileRotationInterval"),
+            fileMaxFiles("requestTagging.statusReporter.fileMaxFiles"),
+            fileBufferSize("requestTagging.statusReporter.fileBufferSize"),
+
+            additionalReporters("requestTagging.statusReporter.additionalReporters"),
+            additionalReporterQueueCapacity("requestTagging.statusReporter.additionalReporterQueueCapacity"),
 
             algorithmName("requestTagging.hashAlgorithm.algorithmName");
 
@@ -72,11 +130,49 @@ public class RequestTaggingContextConfigurer {
         this.infoLogger = infoLogger;
     }
 
+    private static final String STATUS_REPORTER_PREFIX = "requestTagging.statusReporter.";
+
+    /**
+     * The status reporter keys which an additional status reporter takes from
+     * the default status reporter. Destination and format specific keys like
+     * the port or the file directory are never shared.
+     */
+    private static final Set<String> SHARED_STATUS_REPORTER_KEYS = Stream.of(ConfigKey.hostId,
+                                                                            ConfigKey.instanceId,
+                                                                            ConfigKey.sendData,
+                                                                            ConfigKey.connectionTimeout,
+                                                                            ConfigKey.readTimeout,
+                                                                            ConfigKey.httpTransport,
+                                                                            ConfigKey.keepAliveConnections,
+                                                                            ConfigKey.gzipEnabled,
+                                                                            ConfigKey.gzipLevel)
+                                                                        .map(ConfigKey::getName)
+                                                                        .collect(Collectors.toSet());
+
     public void configure(RequestTaggingContext context) {
         configureDurationValue(ConfigKey.collectorSendDelayDuration, context::setCollectorSendDelayDuration);
+        configureDurationValue(ConfigKey.collectorSendJitter, context::setCollectorSendJitter);
+        jitterSeed().ifPresent(context::setCollectorSendJitterSeed);
+        configureBooleanValue(ConfigKey.internalMetricsEnabled, context::setInternalMetricsEnabled);
+        configureBooleanValue(ConfigKey.jmxEnabled, context::setJmxEnabled);
+        configureStringValue(ConfigKey.jmxName, context::setJmxName);
+        configure(ConfigKey.resourceNameTemplates, RequestTaggingContextConfigurer::names, context::setResourceNameTemplates);
+        configure(ConfigKey.excludedPathPrefixes, RequestTaggingContextConfigurer::names, context::setExcludedPathPrefixes);
+        configure(ConfigKey.excludedMethods, RequestTaggingContextConfigurer::names, context::setExcludedMethods);
+        configure(ConfigKey.excludedHeaders, RequestTaggingContextConfigurer::names, context::setExcludedHeaders);
         configureBooleanValue(ConfigKey.requestIdEnabled, context::setRequestIdEnabled);
         configureBooleanValue(ConfigKey.forceRequestIdOverwrite, context::setForceRequestIdOverwrite);
         configureStringValue(ConfigKey.requestIdParameterName, context::setRequestIdParameterName);
+        configureBooleanValue(ConfigKey.asyncReporting, context::setAsyncReporting);
+        configureIntValue(ConfigKey.reportQueueCapacity, context::setReportQueueCapacity);
+        configureIntValue(ConfigKey.reportWorkers, context::setReportWorkers);
+        configureIntValue(ConfigKey.reportMaxRetries, context::setReportMaxRetries);
+        configureDurationValue(ConfigKey.reportRetryBackoff, context::setReportRetryBackoff);
+        configureDropPolicyValue(ConfigKey.reportDropPolicy, context::setReportDropPolicy);
+        configurePathValue(ConfigKey.spoolDirectory, context::setSpoolDirectory);
+        configureIntValue(ConfigKey.spoolSegmentSize, context::setSpoolSegmentSize);
+        configureLongValue(ConfigKey.spoolMaxSize, context::setSpoolMaxSize);
+        configureDurationValue(ConfigKey.spoolReplayInterval, context::setSpoolReplayInterval);
 
         DefaultRequestTaggingStatus status = context.getDefaultRequestTaggingStatus();
         configureBooleanValue(ConfigKey.ignored, status::setIgnored);
@@ -85,9 +181,100 @@ public class RequestTaggingContextConfigurer {
 
         DefaultRequestTaggingStatusConsumer statusConsumer = context.getStatusConsumer();
         configureIntValue(ConfigKey.maxDurationsPerNode, statusConsumer::setMaxDurationsPerNode);
+        configureLongValue(ConfigKey.memoryBudget, statusConsumer::setMemoryBudget);
+        configure(ConfigKey.sampleRate, Double::parseDouble, statusConsumer::setSampleRate);
+        configure(ConfigKey.resourceSampleRates, RequestTaggingContextConfigurer::sampleRates, statusConsumer::setResourceSampleRates);
+        configureDurationValue(ConfigKey.slowRequestThreshold, statusConsumer::setSlowRequestThreshold);
+        configure(ConfigKey.resourceSlowRequestThresholds, RequestTaggingContextConfigurer::slowRequestThresholds, statusConsumer::setResourceSlowRequestThresholds);
+        configure(ConfigKey.fastDurationSampleRate, Double::parseDouble, statusConsumer::setFastDurationSampleRate);
     }
 
+    /**
+     * The send offset of an instance is derived from its configured host and
+     * instance id.
+     */
+    private Optional<String> jitterSeed() {
+        String hostId = properties.apply(ConfigKey.hostId.getName());
+        String instanceId = properties.apply(ConfigKey.instanceId.getName());
+        if (hostId == null && instanceId == null) {
+            return Optional.empty();
+        }
+        return Optional.of(hostId + "/" + instanceId);
+    }
+
+    /**
+     * Configure the given factory and all additional status reporters. The
+     * properties of an additional status reporter are read from the status
+     * reporter keys with the name of the additional status reporter inserted
+     * after <code>requestTagging.statusReporter.</code> e.g.
+     * <code>requestTagging.statusReporter.influx.reportFormat</code>. Shared
+     * properties like the host id which are not defined for the additional
+     * status reporter are taken from the default status reporter.
+     */
     public void configure(StatusReporterFactory statusReporterFactory) {
+        configureStatusReporter(statusReporterFactory);
+        configureIntValue(ConfigKey.additionalReporterQueueCapacity, statusReporterFactory::setAdditionalReporterQueueCapacity);
+        configure(ConfigKey.additionalReporters, RequestTaggingContextConfigurer::names, names -> names.forEach(name -> {
+            StatusReporterFactory additionalReporter = statusReporterFactory.addAdditionalReporter(name);
+            new RequestTaggingContextConfigurer(additionalReporterProperties(properties, name), infoLogger).configureStatusReporter(additionalReporter);
+        }));
+    }
+
+    private static List<String> names(String value) {
+        return Arrays.stream(value.split(","))
+                     .map(String::trim)
+                     .filter(name -> !name.isEmpty())
+                     .collect(Collectors.toList());
+    }
+
+    private static Map<String, Double> sampleRates(String value) {
+        return resourceValues(value, Double::parseDouble);
+    }
+
+    private static Map<String, Duration> slowRequestThresholds(String value) {
+        return resourceValues(value, Duration::parse);
+    }
+
+    /**
+     * Parse a comma separated list of <code>resourceName=value</code> pairs.
+     */
+    private static <T> Map<String, T> resourceValues(String value, Function<String, T> transformer) {
+        Map<String, T> result = new HashMap<>();
+        for (String pair : names(value)) {
+            int index = pair.lastIndexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Missing value for resource: '" + pair + "'!");
+            }
+            result.put(pair.substring(0, index)
+                           .trim(),
+                       transformer.apply(pair.substring(index + 1)
+                                             .trim()));
+        }
+        return result;
+    }
+
+    static Function<String, String> additionalReporterProperties(Function<String, String> properties, String name) {
+        return key -> {
+            String additionalKey = additionalReporterKey(key, name);
+            if (additionalKey == null) {
+                return properties.apply(key);
+            }
+            String value = properties.apply(additionalKey);
+            if (value == null && SHARED_STATUS_REPORTER_KEYS.contains(key)) {
+                return properties.apply(key);
+            }
+            return value;
+        };
+    }
+
+    private static String additionalReporterKey(String key, String name) {
+        if (!key.startsWith(STATUS_REPORTER_PREFIX)) {
+            return null;
+        }
+        return STATUS_REPORTER_PREFIX + name + "." + key.substring(STATUS_REPORTER_PREFIX.length());
+    }
+
+    private void configureStatusReporter(StatusReporterFactory statusReporterFactory) {
         configureStringValue(ConfigKey.hostId, statusReporterFactory::setHostId);
         configureStringValue(ConfigKey.instanceId, statusReporterFactory::setInstanceId);
 
@@ -102,9 +289,30 @@ public class RequestTaggingContextConfigurer {
 
         configureIntValue(ConfigKey.connectionTimeout, statusReporterFactory::setConnectionTimeout);
         configureIntValue(ConfigKey.readTimeout, statusReporterFactory::setReadTimeout);
+        configureHttpTransportValue(ConfigKey.httpTransport, statusReporterFactory::setHttpTransport);
+        configureIntValue(ConfigKey.keepAliveConnections, statusReporterFactory::setKeepAliveConnections);
+        configureBooleanValue(ConfigKey.gzipEnabled, statusReporterFactory::setGzipEnabled);
+        configureIntValue(ConfigKey.gzipLevel, statusReporterFactory::setGzipLevel);
 
         configureStringValue(ConfigKey.elasticsearchDocumentType, statusReporterFactory::setElasticsearchDocumentType);
         configureStringValue(ConfigKey.elasticsearchIndexPrefixTemplate, statusReporterFactory::setElasticsearchIndexPrefixTemplate);
+        configureIntValue(ConfigKey.elasticsearchBulkMaxBytes, statusReporterFactory::setElasticsearchBulkMaxBytes);
+        configureIntValue(ConfigKey.elasticsearchBulkMaxDocuments, statusReporterFactory::setElasticsearchBulkMaxDocuments);
+        configureIntValue(ConfigKey.elasticsearchBulkParallelism, statusReporterFactory::setElasticsearchBulkParallelism);
+        configureIntValue(ConfigKey.elasticsearchBulkPipelineDepth, statusReporterFactory::setElasticsearchBulkPipelineDepth);
+
+        configureBooleanValue(ConfigKey.influxDBAggregateDurations, statusReporterFactory::setInfluxDBAggregateDurations);
+
+        configureIntValue(ConfigKey.prometheusPort, statusReporterFactory::setPrometheusPort);
+        configureStringValue(ConfigKey.prometheusPath, statusReporterFactory::setPrometheusPath);
+
+        configureIntValue(ConfigKey.statsdMaxPacketSize, statusReporterFactory::setStatsdMaxPacketSize);
+
+        configurePathValue(ConfigKey.fileDirectory, statusReporterFactory::setFileDirectory);
+        configureLongValue(ConfigKey.fileMaxSize, statusReporterFactory::setFileMaxSize);
+        configureDurationValue(ConfigKey.fileRotationInterval, statusReporterFactory::setFileRotationInterval);
+        configureIntValue(ConfigKey.fileMaxFiles, statusReporterFactory::setFileMaxFiles);
+        configureIntValue(ConfigKey.fileBufferSize, statusReporterFactory::setFileBufferSize);
     }
 
     public void configure(HashAlgorithm hashAlgorithm) {
@@ -127,14 +335,30 @@ public class RequestTaggingContextConfigurer {
         configure(key, Integer::parseInt, valueConsumer);
     }
 
+    private void configureLongValue(ConfigKey key, Consumer<Long> valueConsumer) {
+        configure(key, Long::parseLong, valueConsumer);
+    }
+
+    private void configurePathValue(ConfigKey key, Consumer<Path> valueConsumer) {
+        configure(key, Paths::get, valueConsumer);
+    }
+
     private void configureStatusCodeValue(ConfigKey key, Consumer<StatusCode> valueConsumer) {
         configure(key, StatusCode::valueOf, valueConsumer);
     }
 
+    private void configureDropPolicyValue(ConfigKey key, Consumer<DropPolicy> valueConsumer) {
+        configure(key, DropPolicy::valueOf, valueConsumer);
+    }
+
     private void configureReportFormatValue(ConfigKey key, Consumer<ReportFormat> valueConsumer) {
         configure(key, ReportFormat::valueOf, valueConsumer);
     }
 
+    private void configureHttpTransportValue(ConfigKey key, Consumer<HttpTransport> valueConsumer) {
+        configure(key, HttpTransport::valueOf, valueConsumer);
+    }
+
     private <T> void configure(ConfigKey key, Function<String, T> transformer, Consumer<T> valueConsumer) {
         String value = Optional.ofNullable(properties.apply(key.getName()))
                                .map(String::trim)
@@ -161,5 +385,25 @@ public class RequestTaggingContextConfigurer {
                           .map(String::trim)
                           .ifPresent(value -> target.accept(key.getName(), value));
               });
+        Optional.ofNullable(source.apply(ConfigKey.additionalReporters.name()))
+                .map(Optional::of)
+                .orElseGet(() -> Optional.ofNullable(source.apply(ConfigKey.additionalReporters.getName())))
+                .map(RequestTaggingContextConfigurer::names)
+                .ifPresent(names -> names.forEach(name -> loadAdditionalReporter(name, source, target)));
+    }
+
+    private static void loadAdditionalReporter(String name, Function<String, String> source, BiConsumer<String, String> target) {
+        for (ConfigKey key : ConfigKey.values()) {
+            String additionalKey = additionalReporterKey(key.getName(), name);
+            if (additionalKey == null) {
+                continue;
+            }
+            Optional.ofNullable(source.apply(additionalKey))
+                    .map(String::trim)
+                    .ifPresent(value -> target.accept(additionalKey, value));
+            Optional.ofNullable(source.apply(name + "." + key.name()))
+                    .map(String::trim)
+                    .ifPresent(value -> target.accept(additionalKey, value));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.util.Map;
+
+/**
+ * The management interface of a {@link RequestTaggingContext}. It exposes the
+ * state of the current interval and allows tuning the cost of collecting
+ * request data at runtime.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public interface RequestTaggingContextMXBean {
+
+    /**
+     * @return The number of resource, meta data and status code combinations
+     *         collected in the current interval by resource name.
+     */
+    Map<String, Long> getSeriesCounts();
+
+    long getIntervalAgeMillis();
+
+    /**
+     * @return The duration of the last send in milliseconds or
+     *         <code>-1</code> if nothing has been sent yet.
+     */
+    long getLastSendDurationMillis();
+
+    /**
+     * @return <code>NONE</code>, <code>SUCCESS</code> or <code>FAILURE</code>.
+     */
+    String getLastSendStatus();
+
+    String getLastSendTime();
+
+    /**
+     * @return The data collected in the current interval as JSON. The data is
+     *         not swapped, so it is still sent with the next report.
+     */
+    String snapshot();
+
+    int getMaxDurationsPerNode();
+
+    void setMaxDurationsPerNode(int maxDurationsPerNode);
+
+    /**
+     * @return The send interval as ISO-8601 duration e.g. <code>PT1M</code>.
+     */
+    String getCollectorSendDelayDuration();
+
+    /**
+     * Change the send interval and reschedule the send process.
+     */
+    void setCollectorSendDelayDuration(String collectorSendDelayDuration);
+
+    double getSampleRate();
+
+    /**
+     * Change the sample rate. Data of the current interval has already been
+     * weighted with the old rate, so the new rate takes effect with the next
+     * interval.
+     */
+    void setSampleRate(double sampleRate);
+
+    double getFastDurationSampleRate();
+
+    void setFastDurationSampleRate(double fastDurationSampleRate);
+
+    long getMemoryBudget();
+
+    void setMemoryBudget(long memoryBudget);
+}
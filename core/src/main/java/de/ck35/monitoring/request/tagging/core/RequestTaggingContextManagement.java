@@ -0,0 +1,173 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.ck35.monitoring.request.tagging.core.reporter.JSONNestedStatusReporter;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
+
+/**
+ * Exposes a {@link RequestTaggingContext} as MXBean with the object name
+ * <code>de.ck35.monitoring.request.tagging:type=RequestTaggingContext,name=&lt;jmxName&gt;</code>.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class RequestTaggingContextManagement implements RequestTaggingContextMXBean {
+
+    public static final String DOMAIN = "de.ck35.monitoring.request.tagging";
+
+    private final RequestTaggingContext context;
+    private final DefaultRequestTaggingStatusConsumer statusConsumer;
+    private final MBeanServer server;
+    private final ObjectName objectName;
+    private final BiConsumer<String, Throwable> loggerWarn;
+
+    private RequestTaggingContextManagement(RequestTaggingContext context, MBeanServer server, ObjectName objectName, BiConsumer<String, Throwable> loggerWarn) {
+        this.context = Objects.requireNonNull(context);
+        this.statusConsumer = context.getStatusConsumer();
+        this.server = server;
+        this.objectName = objectName;
+        this.loggerWarn = loggerWarn;
+    }
+
+    public static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=RequestTaggingContext,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Register the management bean of the given context at the platform MBean
+     * server. A failed registration is only logged so the context can be used
+     * without JMX.
+     *
+     * @return The registered bean or <code>null</code> if it could not be
+     *         registered.
+     */
+    static RequestTaggingContextManagement register(RequestTaggingContext context, String name, BiConsumer<String, Throwable> loggerWarn) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            RequestTaggingContextManagement management = new RequestTaggingContextManagement(context, server, objectName(name), loggerWarn);
+            server.registerMBean(management, management.objectName);
+            return management;
+        } catch (JMException e) {
+            loggerWarn.accept("Could not register request tagging MBean with name: '" + name + "'!", e);
+            return null;
+        }
+    }
+
+    void unregister() {
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            loggerWarn.accept("Could not unregister request tagging MBean: '" + objectName + "'!", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getSeriesCounts() {
+        return statusConsumer.getSeriesCounts();
+    }
+
+    @Override
+    public long getIntervalAgeMillis() {
+        return context.getIntervalStart()
+                      .map(start -> Duration.between(start, Instant.now())
+                                            .toMillis())
+                      .orElse(0L);
+    }
+
+    @Override
+    public long getLastSendDurationMillis() {
+        return context.getLastSendDuration()
+                      .map(Duration::toMillis)
+                      .orElse(-1L);
+    }
+
+    @Override
+    public String getLastSendStatus() {
+        if (!context.getLastSendTime()
+                    .isPresent()) {
+            return "NONE";
+        }
+        return context.isLastSendSucceeded() ? "SUCCESS" : "FAILURE";
+    }
+
+    @Override
+    public String getLastSendTime() {
+        return context.getLastSendTime()
+                      .map(Instant::toString)
+                      .orElse(null);
+    }
+
+    @Override
+    public String snapshot() {
+        StringBuilder result = new StringBuilder();
+        try (StatusReporter reporter = new JSONNestedStatusReporter(Instant.now(), null, null, result::append)) {
+            statusConsumer.snapshot(reporter);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public int getMaxDurationsPerNode() {
+        return statusConsumer.getMaxDurationsPerNode();
+    }
+
+    @Override
+    public void setMaxDurationsPerNode(int maxDurationsPerNode) {
+        statusConsumer.setMaxDurationsPerNode(maxDurationsPerNode);
+    }
+
+    @Override
+    public String getCollectorSendDelayDuration() {
+        return context.getCollectorSendDelayDuration()
+                      .toString();
+    }
+
+    @Override
+    public void setCollectorSendDelayDuration(String collectorSendDelayDuration) {
+        Duration duration = Duration.parse(collectorSendDelayDuration);
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Invalid send delay: '" + collectorSendDelayDuration + "'!");
+        }
+        context.setCollectorSendDelayDuration(duration);
+    }
+
+    @Override
+    public double getSampleRate() {
+        return statusConsumer.getSampleRate();
+    }
+
+    @Override
+    public void setSampleRate(double sampleRate) {
+        statusConsumer.setSampleRate(sampleRate);
+    }
+
+    @Override
+    public double getFastDurationSampleRate() {
+        return statusConsumer.getFastDurationSampleRate();
+    }
+
+    @Override
+    public void setFastDurationSampleRate(double fastDurationSampleRate) {
+        statusConsumer.setFastDurationSampleRate(fastDurationSampleRate);
+    }
+
+    @Override
+    public long getMemoryBudget() {
+        return statusConsumer.getMemoryBudget();
+    }
+
+    @Override
+    public void setMemoryBudget(long memoryBudget) {
+        statusConsumer.setMemoryBudget(memoryBudget);
+    }
+}
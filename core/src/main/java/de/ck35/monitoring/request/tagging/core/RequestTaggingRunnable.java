@@ -3,7 +3,6 @@ package de.ck35.monitoring.request.tagging.core;
 import java.util.Objects;
 
 import de.ck35.monitoring.request.tagging.RequestTagging;
-import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus.StatusCode;
 
 /**
  * Provides the request tagging mechanism. Wraps a {@link Runnable} which can access the
@@ -16,9 +15,6 @@ import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus.Statu
  */
 public class RequestTaggingRunnable implements Runnable {
     
-    private static final String EXCEPTION_CAUSE_KEY = "serverErrorCause";
-    private static final String DEFAULT_TIMER_KEY = "total_request_duration";
-    
     private final Runnable runnable;
     private final DefaultRequestTaggingStatus status;
 
@@ -27,36 +23,46 @@ public class RequestTaggingRunnable implements Runnable {
         this.runnable = Objects.requireNonNull(runnable);
         this.status = Objects.requireNonNull(status);
     }
+
+    private RequestTaggingRunnable(Runnable runnable) {
+        this.runnable = Objects.requireNonNull(runnable);
+        this.status = null;
+    }
+
+    /**
+     * @return A runnable which invokes the given runnable without request
+     *         tagging, so {@link RequestTagging#get()} returns the empty status.
+     */
+    public static RequestTaggingRunnable untagged(Runnable runnable) {
+        return new RequestTaggingRunnable(runnable);
+    }
     
     @Override
     public void run() {
+        if (status == null) {
+            runnable.run();
+            return;
+        }
         RequestTagging.init(status);
         try {
-            status.startTimer(DEFAULT_TIMER_KEY);
+            AsyncRequestTagging.start(status);
             try {                
                 runnable.run();
             } catch(RuntimeException e) { 
                 if(e instanceof WrappedException) {
-                    tagServerError(e.getCause());
+                    AsyncRequestTagging.failed(status, e.getCause());
                 } else {
-                    tagServerError(e);
+                    AsyncRequestTagging.failed(status, e);
                 }
                 throw e;
             } finally {
-                status.stopTimer(DEFAULT_TIMER_KEY);
-                status.consume();
+                AsyncRequestTagging.finish(status);
             }
         } finally {
             RequestTagging.remove();
         }
     }
     
-    private void tagServerError(Throwable e) {
-        if(status.getStatusCode() == StatusCode.SUCCESS) {            
-            status.serverError().withMetaData(EXCEPTION_CAUSE_KEY, e.getClass().getName());
-        }
-    }
-    
     public static class WrappedException extends RuntimeException {
         
         private final Throwable source;
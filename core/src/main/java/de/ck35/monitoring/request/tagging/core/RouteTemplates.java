@@ -0,0 +1,176 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Maps request paths to URL templates like <code>/users/{id}/orders</code>.
+ * The templates are compiled into a trie of path segments, so a request path
+ * is matched in O(path segments) without regular expressions and without
+ * creating objects. A segment in curly braces matches any non empty segment.
+ * Literal segments take precedence over variable segments. Empty segments
+ * (leading, trailing or repeated slashes) are ignored.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class RouteTemplates {
+
+    private static final RouteTemplates EMPTY = new RouteTemplates(new Node());
+
+    private final Node root;
+
+    private RouteTemplates(Node root) {
+        this.root = root;
+    }
+
+    public static RouteTemplates empty() {
+        return EMPTY;
+    }
+
+    public static RouteTemplates compile(Collection<String> templates) {
+        Node root = new Node();
+        for (String template : templates) {
+            Node node = root;
+            for (String segment : template.split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.child(segment);
+                }
+            }
+            if (node.template != null && !node.template.equals(template)) {
+                throw new IllegalArgumentException("Template: '" + template + "' is ambiguous with: '" + node.template + "'!");
+            }
+            node.template = template;
+        }
+        return new RouteTemplates(root);
+    }
+
+    public boolean isEmpty() {
+        return root.template == null && root.literals.length == 0 && root.variable == null;
+    }
+
+    /**
+     * @return The template which matches the given path or <code>null</code>
+     *         if no template matches.
+     */
+    public String match(String path) {
+        return path == null ? null : match(path, 0);
+    }
+
+    /**
+     * Match the part of the given path which starts at the given index, e.g.
+     * behind the context path of a web application.
+     *
+     * @return The template which matches the path or <code>null</code> if no
+     *         template matches.
+     */
+    public String match(String path, int fromIndex) {
+        return match(root, Objects.requireNonNull(path), skipSlashes(path, fromIndex));
+    }
+
+    private static String match(Node node, String path, int start) {
+        if (start >= path.length()) {
+            return node.template;
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - start;
+        int next = skipSlashes(path, end);
+        for (Node child : node.literals) {
+            if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                String result = match(child, path, next);
+                if (result != null) {
+                    return result;
+                }
+                break;
+            }
+        }
+        if (node.variable != null) {
+            return match(node.variable, path, next);
+        }
+        return null;
+    }
+
+    /**
+     * @return The index at which the path of a web application starts inside
+     *         the given request URI.
+     */
+    public static int pathStart(String requestUri, String contextPath) {
+        if (requestUri != null && contextPath != null && requestUri.startsWith(contextPath)) {
+            return contextPath.length();
+        }
+        return 0;
+    }
+
+    /**
+     * Remove path parameters like <code>;jsessionid=...</code> from every
+     * segment of the given request URI, so they do not prevent a template
+     * from matching. The URI is returned as is if it has no path parameters.
+     */
+    public static String withoutPathParameters(String requestUri) {
+        if (requestUri == null) {
+            return null;
+        }
+        int index = requestUri.indexOf(';');
+        if (index < 0) {
+            return requestUri;
+        }
+        StringBuilder result = new StringBuilder(requestUri.length());
+        int start = 0;
+        while (index >= 0) {
+            result.append(requestUri, start, index);
+            start = requestUri.indexOf('/', index);
+            if (start < 0) {
+                return result.toString();
+            }
+            index = requestUri.indexOf(';', start);
+        }
+        return result.append(requestUri, start, requestUri.length())
+                     .toString();
+    }
+
+    private static int skipSlashes(String path, int index) {
+        while (index < path.length() && path.charAt(index) == '/') {
+            index++;
+        }
+        return index;
+    }
+
+    private static class Node {
+
+        private final String segment;
+        private Node[] literals;
+        private Node variable;
+        private String template;
+
+        private Node() {
+            this(null);
+        }
+
+        private Node(String segment) {
+            this.segment = segment;
+            this.literals = new Node[0];
+        }
+
+        private Node child(String segment) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (variable == null) {
+                    variable = new Node(segment);
+                }
+                return variable;
+            }
+            for (Node literal : literals) {
+                if (literal.segment.equals(segment)) {
+                    return literal;
+                }
+            }
+            Node literal = new Node(segment);
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literals[literals.length - 1] = literal;
+            return literal;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+/**
+ * Reads reports which have been written by the {@link BinaryStatusReporter}.
+ * <p>
+ * All numbers are unsigned LEB128 varints. A string is a varint reference into
+ * the dictionary of the report: <code>0</code> is <code>null</code>, a known
+ * index refers to a string which has been read before and the next free index
+ * (starting at <code>1</code>) is followed by a varint byte length and the
+ * UTF-8 bytes of a new string. The dictionary starts empty for every report.
+ *
+ * <pre>
+ * report      = 'R' 'T' 'B' version epochSecond nano host instanceId { length resource } 0
+ * resource    = name metaCount { key value } measurementCount { measurement }
+ * measurement = statusCodeName totalNumberOfInvocations timerCount { timerName durationCount { durationMillis } }
+ * </pre>
+ *
+ * Every resource is prefixed with its length in bytes so a reader can skip
+ * resources without decoding them.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class BinaryReportDecoder {
+
+    private final InputStream in;
+    private final List<String> dictionary;
+
+    private BinaryReportDecoder(InputStream in) {
+        this.in = in;
+        this.dictionary = new ArrayList<>();
+    }
+
+    public static DecodedReport decode(byte[] data) throws IOException {
+        return decode(new ByteArrayInputStream(data));
+    }
+
+    public static DecodedReport decodeBase64(String data) throws IOException {
+        return decode(Base64.getDecoder()
+                            .decode(data));
+    }
+
+    public static DecodedReport decode(InputStream in) throws IOException {
+        return new BinaryReportDecoder(in).read();
+    }
+
+    private DecodedReport read() throws IOException {
+        byte[] magic = new byte[BinaryStatusReporter.MAGIC.length];
+        for (int index = 0; index < magic.length; index++) {
+            magic[index] = (byte) readByte();
+        }
+        if (!Arrays.equals(magic, BinaryStatusReporter.MAGIC)) {
+            throw new IOException("Not a binary request tagging report!");
+        }
+        long version = readVarint();
+        if (version != BinaryStatusReporter.VERSION) {
+            throw new IOException("Unsupported binary report version: '" + version + "'!");
+        }
+        Instant instant = Instant.ofEpochSecond(readVarint(), readVarint());
+        String hostId = readString();
+        String instanceId = readString();
+        List<Resource> resources = new ArrayList<>();
+        while (readVarint() != 0) {
+            resources.add(readResource());
+        }
+        return new DecodedReport(instant, hostId, instanceId, resources);
+    }
+
+    private Resource readResource() throws IOException {
+        String name = readString();
+        int metaCount = readCount();
+        SortedMap<String, String> metaData = new TreeMap<>();
+        for (int index = 0; index < metaCount; index++) {
+            metaData.put(readString(), readString());
+        }
+        int measurementCount = readCount();
+        List<Measurement> measurements = new ArrayList<>(measurementCount);
+        for (int index = 0; index < measurementCount; index++) {
+            String statusCodeName = readString();
+            long totalNumberOfInvocations = readVarint();
+            int timerCount = readCount();
+            Map<String, List<Duration>> durations = new HashMap<>();
+            for (int timer = 0; timer < timerCount; timer++) {
+                String timerName = readString();
+                int durationCount = readCount();
+                List<Duration> values = new ArrayList<>(durationCount);
+                for (int duration = 0; duration < durationCount; duration++) {
+                    values.add(Duration.ofMillis(readVarint()));
+                }
+                durations.put(timerName, values);
+            }
+            measurements.add(new Measurement(statusCodeName, totalNumberOfInvocations, durations));
+        }
+        return new Resource(name, metaData, measurements);
+    }
+
+    private String readString() throws IOException {
+        int reference = readCount();
+        if (reference == 0) {
+            return null;
+        }
+        if (reference <= dictionary.size()) {
+            return dictionary.get(reference - 1);
+        }
+        if (reference != dictionary.size() + 1) {
+            throw new IOException("Invalid string reference: '" + reference + "'!");
+        }
+        byte[] bytes = new byte[readCount()];
+        int offset = 0;
+        while (offset < bytes.length) {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        dictionary.add(value);
+        return value;
+    }
+
+    private int readCount() throws IOException {
+        long value = readVarint();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid count: '" + value + "'!");
+        }
+        return (int) value;
+    }
+
+    private long readVarint() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int next = readByte();
+            result |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint!");
+    }
+
+    private int readByte() throws IOException {
+        int next = in.read();
+        if (next < 0) {
+            throw new EOFException();
+        }
+        return next;
+    }
+
+    public static class DecodedReport {
+
+        private final Instant instant;
+        private final String hostId;
+        private final String instanceId;
+        private final List<Resource> resources;
+
+        public DecodedReport(Instant instant, String hostId, String instanceId, List<Resource> resources) {
+            this.instant = instant;
+            this.hostId = hostId;
+            this.instanceId = instanceId;
+            this.resources = Collections.unmodifiableList(resources);
+        }
+
+        public Instant getInstant() {
+            return instant;
+        }
+
+        public String getHostId() {
+            return hostId;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public List<Resource> getResources() {
+            return resources;
+        }
+    }
+}
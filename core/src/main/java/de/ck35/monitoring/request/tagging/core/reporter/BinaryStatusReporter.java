@@ -0,0 +1,184 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A status reporter which writes request data in a compact binary format. The
+ * layout is described and read by the {@link BinaryReportDecoder}. Strings are
+ * written only once per report and referenced by their dictionary index
+ * afterwards.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class BinaryStatusReporter implements StatusReporter {
+
+    static final byte[] MAGIC = { 'R', 'T', 'B' };
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary;
+    private final Buffer record;
+
+    public BinaryStatusReporter(Instant instant, String hostId, String instanceId, OutputStream out) {
+        this.out = Objects.requireNonNull(out);
+        this.dictionary = new HashMap<>();
+        this.record = new Buffer();
+        record.write(MAGIC, 0, MAGIC.length);
+        record.writeVarint(VERSION);
+        record.writeVarint(instant.getEpochSecond());
+        record.writeVarint(instant.getNano());
+        writeString(hostId);
+        writeString(instanceId);
+        flush(false);
+    }
+
+    /**
+     * Create a status reporter which writes the binary report as one Base64
+     * encoded String to the given writer when it is closed.
+     */
+    public static StatusReporter base64(Instant instant, String hostId, String instanceId, Consumer<String> writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryStatusReporter reporter = new BinaryStatusReporter(instant, hostId, instanceId, bytes);
+        return new StatusReporter() {
+            @Override
+            public void accept(Resource resource) {
+                reporter.accept(resource);
+            }
+
+            @Override
+            public void close() {
+                reporter.close();
+                writer.accept(Base64.getEncoder()
+                                    .encodeToString(bytes.toByteArray()));
+            }
+        };
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        writeString(resource.getName());
+        record.writeVarint(resource.getMetaData()
+                                   .size());
+        resource.getMetaData()
+                .forEach((key, value) -> {
+                    writeString(key);
+                    writeString(value);
+                });
+        record.writeVarint(resource.getMeasurements()
+                                   .size());
+        resource.getMeasurements()
+                .forEach(measurement -> {
+                    writeString(measurement.getStatusCodeName());
+                    record.writeVarint(measurement.getTotalNumberOfInvocations());
+                    record.writeVarint(measurement.getDurations()
+                                                  .size());
+                    measurement.getDurations()
+                               .forEach(this::writeDurations);
+                });
+        flush(true);
+    }
+
+    private void writeDurations(String name, List<Duration> durations) {
+        writeString(name);
+        record.writeVarint(durations.size());
+        for (Duration duration : durations) {
+            record.writeVarint(duration.toMillis());
+        }
+    }
+
+    /**
+     * A string is written as reference into the dictionary. Zero is the
+     * reference for <code>null</code>. A reference which is equal to the next
+     * free dictionary index is followed by the length and the UTF-8 bytes of a
+     * new string.
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            record.writeVarint(0);
+            return;
+        }
+        Integer reference = dictionary.get(value);
+        if (reference != null) {
+            record.writeVarint(reference);
+            return;
+        }
+        int next = dictionary.size() + 1;
+        dictionary.put(value, next);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        record.writeVarint(next);
+        record.writeVarint(bytes.length);
+        record.write(bytes, 0, bytes.length);
+    }
+
+    private void flush(boolean lengthPrefixed) {
+        try {
+            if (lengthPrefixed) {
+                byte[] length = new byte[5];
+                int size = Buffer.encodeVarint(record.size, length, 0);
+                out.write(length, 0, size);
+            }
+            out.write(record.bytes, 0, record.size);
+            record.size = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write binary report!", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.write(0);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write binary report!", e);
+        }
+    }
+
+    private static class Buffer {
+
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+
+        private void write(byte[] source, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            size = encodeVarint(value, bytes, size);
+        }
+
+        private static int encodeVarint(long value, byte[] target, int offset) {
+            long remaining = value;
+            int position = offset;
+            while ((remaining & ~0x7FL) != 0) {
+                target[position++] = (byte) ((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            target[position++] = (byte) remaining;
+            return position;
+        }
+    }
+}
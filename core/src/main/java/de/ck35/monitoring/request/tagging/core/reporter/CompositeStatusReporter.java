@@ -0,0 +1,267 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A status reporter which passes every resource of one report to several
+ * status reporters. Every status reporter runs on its own worker and receives
+ * the resources through a bounded queue, so serializing and sending happens in
+ * parallel while the report is still being walked.
+ * <p>
+ * The first status reporter is the primary one: closing the composite reporter
+ * waits for it and fails when it fails. All other status reporters are
+ * isolated. Their failures are only logged, closing does not wait for them and
+ * a report is skipped for a status reporter which is still busy with the
+ * previous one. A slow or broken backend can therefore not hold up the others.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class CompositeStatusReporter implements StatusReporter {
+
+    private static final Resource END = new Resource("", Collections.emptySortedMap(), Collections.emptyList());
+
+    private final List<Run> runs;
+
+    private CompositeStatusReporter(List<Run> runs) {
+        this.runs = runs;
+    }
+
+    /**
+     * Create a transport which passes every report to all given status
+     * reporters. The first entry is the primary status reporter.
+     */
+    public static Transport transport(Map<String, Function<Instant, StatusReporter>> reporters, int queueCapacity, BiConsumer<String, Throwable> loggerWarn) {
+        return new Transport(reporters, queueCapacity, loggerWarn);
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        for (Run run : runs) {
+            run.offer(resource);
+        }
+    }
+
+    @Override
+    public void close() {
+        runs.forEach(Run::finish);
+        Run primary = runs.get(0);
+        try {
+            primary.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException("Interrupted while waiting for status reporter: '" + primary.lane.name + "'!", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Status reporter: '" + primary.lane.name + "' failed!", cause);
+        }
+    }
+
+    public static class Transport implements Function<Instant, StatusReporter>, Closeable {
+
+        private final List<Lane> lanes;
+        private final int queueCapacity;
+        private final BiConsumer<String, Throwable> loggerWarn;
+
+        private Transport(Map<String, Function<Instant, StatusReporter>> reporters, int queueCapacity, BiConsumer<String, Throwable> loggerWarn) {
+            if (reporters.isEmpty()) {
+                throw new IllegalArgumentException("At least one status reporter is needed!");
+            }
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("Invalid queue capacity: '" + queueCapacity + "'!");
+            }
+            this.queueCapacity = queueCapacity;
+            this.loggerWarn = Objects.requireNonNull(loggerWarn);
+            this.lanes = new ArrayList<>(reporters.size());
+            reporters.forEach((name, reporter) -> lanes.add(new Lane(name, reporter)));
+        }
+
+        @Override
+        public StatusReporter apply(Instant instant) {
+            List<Run> runs = new ArrayList<>(lanes.size());
+            for (int index = 0; index < lanes.size(); index++) {
+                Lane lane = lanes.get(index);
+                Run run = lane.start(instant, index == 0, queueCapacity, loggerWarn);
+                if (run != null) {
+                    runs.add(run);
+                }
+            }
+            return new CompositeStatusReporter(runs);
+        }
+
+        /**
+         * @return The number of resources which have been dropped per status
+         *         reporter because its queue was full.
+         */
+        public Map<String, Long> getDroppedResources() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            lanes.forEach(lane -> result.put(lane.name, lane.droppedResources.sum()));
+            return result;
+        }
+
+        /**
+         * @return The number of reports which have been skipped per status
+         *         reporter because it was still busy.
+         */
+        public Map<String, Long> getSkippedReports() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            lanes.forEach(lane -> result.put(lane.name, lane.skippedReports.sum()));
+            return result;
+        }
+
+        /**
+         * @return The number of reports which failed per status reporter.
+         */
+        public Map<String, Long> getFailedReports() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            lanes.forEach(lane -> result.put(lane.name, lane.failedReports.sum()));
+            return result;
+        }
+
+        @Override
+        public void close() {
+            for (Lane lane : lanes) {
+                lane.worker.shutdownNow();
+                if (lane.reporter instanceof Closeable) {
+                    try {
+                        ((Closeable) lane.reporter).close();
+                    } catch (IOException | RuntimeException e) {
+                        loggerWarn.accept("Could not close status reporter: '" + lane.name + "'!", e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Lane {
+
+        private final String name;
+        private final Function<Instant, StatusReporter> reporter;
+        private final ExecutorService worker;
+        private final AtomicReference<Future<?>> current;
+
+        private final LongAdder droppedResources;
+        private final LongAdder skippedReports;
+        private final LongAdder failedReports;
+
+        private Lane(String name, Function<Instant, StatusReporter> reporter) {
+            this.name = Objects.requireNonNull(name);
+            this.reporter = Objects.requireNonNull(reporter);
+            this.worker = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "request-tagging-reporter-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.current = new AtomicReference<>();
+            this.droppedResources = new LongAdder();
+            this.skippedReports = new LongAdder();
+            this.failedReports = new LongAdder();
+        }
+
+        private Run start(Instant instant, boolean primary, int queueCapacity, BiConsumer<String, Throwable> loggerWarn) {
+            Future<?> previous = current.get();
+            if (!primary && previous != null && !previous.isDone()) {
+                skippedReports.increment();
+                loggerWarn.accept("Skipping report for status reporter: '" + name + "' because it is still busy with the previous one.",
+                                  new IllegalStateException("Status reporter: '" + name + "' is busy!"));
+                return null;
+            }
+            Run run = new Run(this, primary, queueCapacity);
+            run.future = worker.submit(() -> {
+                try (StatusReporter statusReporter = reporter.apply(instant)) {
+                    for (Resource resource = run.queue.take(); resource != END; resource = run.queue.take()) {
+                        statusReporter.accept(resource);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread()
+                          .interrupt();
+                    throw new IllegalStateException("Interrupted while sending to status reporter: '" + name + "'!", e);
+                } catch (RuntimeException e) {
+                    if (!primary) {
+                        loggerWarn.accept("Error while sending request tagging data with status reporter: '" + name + "'!", e);
+                    }
+                    failedReports.increment();
+                    throw e;
+                }
+                return null;
+            });
+            current.set(run.future);
+            return run;
+        }
+    }
+
+    /**
+     * One report which is sent by one status reporter. The primary status
+     * reporter applies back pressure, for all other status reporters a resource
+     * is dropped when the queue is full. The queue has one additional slot
+     * which is reserved for the end marker, so finishing a run of another
+     * status reporter never blocks.
+     */
+    private static class Run {
+
+        private final Lane lane;
+        private final boolean primary;
+        private final LinkedBlockingQueue<Resource> queue;
+        private volatile Future<?> future;
+
+        private Run(Lane lane, boolean primary, int queueCapacity) {
+            this.lane = lane;
+            this.primary = primary;
+            this.queue = new LinkedBlockingQueue<>(queueCapacity + 1);
+        }
+
+        private void offer(Resource resource) {
+            if (primary) {
+                put(resource);
+            } else if (future.isDone() || queue.remainingCapacity() <= 1 || !queue.offer(resource)) {
+                lane.droppedResources.increment();
+            }
+        }
+
+        private void finish() {
+            if (primary) {
+                put(END);
+            } else {
+                queue.offer(END);
+            }
+        }
+
+        /**
+         * Wait until the resource has been queued or the worker has stopped.
+         */
+        private void put(Resource resource) {
+            try {
+                while (!future.isDone()) {
+                    if (queue.offer(resource, 100, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.HttpTransferException;
+
+/**
+ * A status reporter which splits the documents written by an
+ * {@link ElasticsearchStatusReporter} into several bulk requests. A bulk
+ * request is limited by a maximum number of bytes and documents. Bulk requests
+ * are sent in parallel while the next batch is collected, the number of
+ * parallel requests is bounded. Bulk requests which are waiting for a free
+ * sender can be pipelined together over one connection. A failed bulk request
+ * or a bulk response which reports failed items does not stop the other bulk
+ * requests, a failed pipelined exchange fails all of its bulk requests. All
+ * failures are reported together when the reporter is closed.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class ElasticsearchBulkStatusReporter implements StatusReporter {
+
+    private static final Pattern ERRORS = Pattern.compile("\"errors\"\\s*:\\s*true");
+    private static final Pattern ITEM_ERROR = Pattern.compile("\"error\"\\s*:");
+
+    private final Instant instant;
+    private final Transport transport;
+    private final List<Future<?>> bulkRequests;
+
+    private StatusReporter reporter;
+    private StringBuilder batch;
+    private long batchBytes;
+    private int batchDocuments;
+
+    public ElasticsearchBulkStatusReporter(Instant instant, Transport transport) {
+        this.instant = instant;
+        this.transport = transport;
+        this.bulkRequests = new ArrayList<>();
+        this.batch = new StringBuilder();
+    }
+
+    public static Transport transport(int maxBytes,
+                                      int maxDocuments,
+                                      int parallelism,
+                                      Function<String, String> bulkSender,
+                                      BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        return new Transport(maxBytes, maxDocuments, parallelism, 1, bodies -> {
+            List<String> responses = new ArrayList<>(bodies.size());
+            bodies.forEach(body -> responses.add(bulkSender.apply(body)));
+            return responses;
+        }, () -> {
+        }, reporters);
+    }
+
+    /**
+     * Create a transport which sends up to the given pipeline depth of waiting
+     * bulk requests with one invocation of the bulk sender. The connections
+     * are closed together with the transport.
+     */
+    public static Transport transport(int maxBytes,
+                                      int maxDocuments,
+                                      int parallelism,
+                                      int pipelineDepth,
+                                      Function<List<String>, List<String>> bulkSender,
+                                      Closeable connections,
+                                      BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        return new Transport(maxBytes, maxDocuments, parallelism, pipelineDepth, bulkSender, connections, reporters);
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        if (reporter == null) {
+            reporter = transport.reporters.apply(instant, this::append);
+        }
+        reporter.accept(resource);
+    }
+
+    private void append(String document) {
+        long documentBytes = utf8Length(document);
+        if (batchDocuments > 0 && (batchDocuments >= transport.maxDocuments || batchBytes + documentBytes > transport.maxBytes)) {
+            flush();
+        }
+        batch.append(document);
+        batchBytes += documentBytes;
+        batchDocuments++;
+    }
+
+    private void flush() {
+        String body = batch.toString();
+        int documents = batchDocuments;
+        batch = new StringBuilder();
+        batchBytes = 0;
+        batchDocuments = 0;
+        bulkRequests.add(transport.submit(body, documents));
+    }
+
+    @Override
+    public void close() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.close();
+        if (batchDocuments > 0) {
+            flush();
+        }
+        List<Throwable> failures = new ArrayList<>();
+        for (Future<?> bulkRequest : bulkRequests) {
+            try {
+                bulkRequest.get();
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new HttpTransferException("Interrupted while waiting for bulk requests!", e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            HttpTransferException result = new HttpTransferException("'" + failures.size() + "' of '" + bulkRequests.size() + "' bulk request(s) failed!", failures.get(0));
+            failures.subList(1, failures.size())
+                    .forEach(result::addSuppressed);
+            throw result;
+        }
+    }
+
+    static long utf8Length(String value) {
+        long length = 0;
+        for (int index = 0; index < value.length(); index++) {
+            char next = value.charAt(index);
+            if (next < 0x80) {
+                length++;
+            } else if (next < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(next)) {
+                length += 4;
+                index++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Creates the status reporters and holds the threads which send the bulk
+     * requests.
+     */
+    public static class Transport implements Function<Instant, StatusReporter>, Closeable {
+
+        private final int maxBytes;
+        private final int maxDocuments;
+        private final int pipelineDepth;
+        private final Function<List<String>, List<String>> bulkSender;
+        private final Closeable connections;
+        private final BiFunction<Instant, Consumer<String>, StatusReporter> reporters;
+        private final Semaphore permits;
+        private final Queue<Bulk> pending;
+        private final ExecutorService senders;
+
+        private final LongAdder bulkRequests;
+        private final LongAdder failedBulkRequests;
+        private final LongAdder failedDocuments;
+
+        public Transport(int maxBytes,
+                         int maxDocuments,
+                         int parallelism,
+                         int pipelineDepth,
+                         Function<List<String>, List<String>> bulkSender,
+                         Closeable connections,
+                         BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+            if (maxBytes <= 0 || maxDocuments <= 0 || parallelism <= 0 || pipelineDepth <= 0) {
+                throw new IllegalArgumentException("Max bytes, max documents, parallelism and pipeline depth must be greater than zero!");
+            }
+            this.maxBytes = maxBytes;
+            this.maxDocuments = maxDocuments;
+            this.pipelineDepth = pipelineDepth;
+            this.bulkSender = Objects.requireNonNull(bulkSender);
+            this.connections = Objects.requireNonNull(connections);
+            this.reporters = Objects.requireNonNull(reporters);
+            this.permits = new Semaphore(parallelism * pipelineDepth);
+            this.pending = new ConcurrentLinkedQueue<>();
+            AtomicInteger counter = new AtomicInteger();
+            this.senders = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "request-tagging-bulk-sender-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.bulkRequests = new LongAdder();
+            this.failedBulkRequests = new LongAdder();
+            this.failedDocuments = new LongAdder();
+        }
+
+        @Override
+        public StatusReporter apply(Instant instant) {
+            return new ElasticsearchBulkStatusReporter(instant, this);
+        }
+
+        /**
+         * Submit one bulk request. Blocks while the maximum number of bulk
+         * requests is in flight.
+         */
+        private Future<?> submit(String body, int documents) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new HttpTransferException("Interrupted while waiting for a free bulk request slot!", e);
+            }
+            Bulk bulk = new Bulk(body, documents);
+            pending.add(bulk);
+            try {
+                senders.execute(this::sendPending);
+            } catch (RuntimeException e) {
+                if (pending.remove(bulk)) {
+                    permits.release();
+                    throw e;
+                }
+            }
+            return bulk.result;
+        }
+
+        private void sendPending() {
+            List<Bulk> bulks = new ArrayList<>(pipelineDepth);
+            Bulk next;
+            while (bulks.size() < pipelineDepth && (next = pending.poll()) != null) {
+                bulks.add(next);
+            }
+            if (bulks.isEmpty()) {
+                return;
+            }
+            try {
+                send(bulks);
+            } finally {
+                permits.release(bulks.size());
+            }
+        }
+
+        private void send(List<Bulk> bulks) {
+            bulkRequests.add(bulks.size());
+            List<String> bodies = new ArrayList<>(bulks.size());
+            bulks.forEach(bulk -> bodies.add(bulk.body));
+            List<String> responses;
+            try {
+                responses = bulkSender.apply(bodies);
+            } catch (RuntimeException e) {
+                for (Bulk bulk : bulks) {
+                    failedBulkRequests.increment();
+                    failedDocuments.add(bulk.documents);
+                    bulk.result.completeExceptionally(e);
+                }
+                return;
+            }
+            for (int index = 0; index < bulks.size(); index++) {
+                Bulk bulk = bulks.get(index);
+                String response = responses.get(index);
+                if (response != null && ERRORS.matcher(response)
+                                              .find()) {
+                    int failedItems = 0;
+                    Matcher matcher = ITEM_ERROR.matcher(response);
+                    while (matcher.find()) {
+                        failedItems++;
+                    }
+                    failedBulkRequests.increment();
+                    failedDocuments.add(failedItems);
+                    bulk.result.completeExceptionally(new HttpTransferException("Bulk request with '" + bulk.documents + "' document(s) contains '" + failedItems
+                            + "' failed item(s)!"));
+                } else {
+                    bulk.result.complete(null);
+                }
+            }
+        }
+
+        public long getBulkRequests() {
+            return bulkRequests.sum();
+        }
+
+        public long getFailedBulkRequests() {
+            return failedBulkRequests.sum();
+        }
+
+        public long getFailedDocuments() {
+            return failedDocuments.sum();
+        }
+
+        @Override
+        public void close() {
+            senders.shutdownNow();
+            Bulk bulk;
+            while ((bulk = pending.poll()) != null) {
+                bulk.result.completeExceptionally(new HttpTransferException("Bulk request transport has been closed!"));
+            }
+            try {
+                connections.close();
+            } catch (IOException e) {
+                throw new HttpTransferException("Could not close bulk request connections!", e);
+            }
+        }
+    }
+
+    private static class Bulk {
+
+        private final String body;
+        private final int documents;
+        private final CompletableFuture<Void> result;
+
+        private Bulk(String body, int documents) {
+            this.body = body;
+            this.documents = documents;
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
@@ -1,32 +1,48 @@
 package de.ck35.monitoring.request.tagging.core.reporter;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.function.Consumer;
 
 /**
  * A status reporter which writes request data in a format which is suitable for
- * the Elasticsearch bulk HTTP endpoint.
- * 
+ * the Elasticsearch bulk HTTP endpoint. Every document is passed to the writer
+ * with one call so the output can be split into several bulk requests.
+ * <p>
+ * The id of a document is a 128 bit hash of host, instance, timestamp,
+ * resource name, meta data and status code. Sending the same report again
+ * therefore overwrites the documents instead of creating duplicates.
+ *
  * @author Christian Kaspari
  * @since 2.0.0
  */
 public class ElasticsearchStatusReporter extends JSONStatusReporter {
 
+    private final Instant instant;
+    private final String hostId;
+    private final String instanceId;
     private final String index;
     private final String type;
 
+    private byte[] idSource;
+    private int idSourceLength;
+
     public ElasticsearchStatusReporter(Instant instant, String hostId, String instanceId, Consumer<String> writer, String index, String type) {
         super(instant, hostId, instanceId, writer);
+        this.instant = instant;
+        this.hostId = hostId;
+        this.instanceId = instanceId;
         this.index = index;
         this.type = type;
+        this.idSource = new byte[256];
     }
 
     @Override
-    protected void appendMeasurement(JsonObject measurementObject) {
-        writer.accept("{\"index\": { \"_index\": \"" + index + "\", \"_type\": \"" + type + "\", \"_id\": \"" + generateMeasurementId() + "\"}}\n");
-        writer.accept(measurementObject.toJSON());
-        writer.accept("\r\n");
+    protected void appendMeasurement(Resource resource, Measurement measurement, JsonObject measurementObject) {
+        writer.accept("{\"index\": { \"_index\": \"" + index + "\", \"_type\": \"" + type + "\", \"_id\": \"" + generateMeasurementId(resource, measurement) + "\"}}\n"
+                + measurementObject.toJSON() + "\r\n");
     }
 
     @Override
@@ -37,8 +53,65 @@ public class ElasticsearchStatusReporter extends JSONStatusReporter {
     protected void afterMeasurements() {
     }
 
-    protected String generateMeasurementId() {
-        return UUID.randomUUID()
-                   .toString();
+    /**
+     * Generate the id of the document for the given measurement. The id only
+     * depends on the identity of the measurement, not on its values.
+     *
+     * @return A 22 character URL safe Base64 encoded 128 bit hash.
+     */
+    protected String generateMeasurementId(Resource resource, Measurement measurement) {
+        idSourceLength = 0;
+        appendIdSource(hostId);
+        appendIdSource(instanceId);
+        appendIdSource(instant.getEpochSecond());
+        appendIdSource(instant.getNano());
+        appendIdSource(resource.getName());
+        appendIdSource(resource.getMetaData()
+                               .size());
+        resource.getMetaData()
+                .forEach((key, value) -> {
+                    appendIdSource(key);
+                    appendIdSource(value);
+                });
+        appendIdSource(measurement.getStatusCodeName());
+        long[] hash = Murmur3.hash128(idSource, idSourceLength, 0);
+        byte[] id = new byte[16];
+        for (int index = 0; index < 8; index++) {
+            id[index] = (byte) (hash[0] >>> (index * 8));
+            id[index + 8] = (byte) (hash[1] >>> (index * 8));
+        }
+        return Base64.getUrlEncoder()
+                     .withoutPadding()
+                     .encodeToString(id);
+    }
+
+    /**
+     * Strings are written with their length so different field boundaries
+     * can not produce the same source. <code>null</code> is written as
+     * <code>-1</code>.
+     */
+    private void appendIdSource(String value) {
+        if (value == null) {
+            appendIdSource(-1L);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        appendIdSource(bytes.length);
+        ensureIdSourceCapacity(bytes.length);
+        System.arraycopy(bytes, 0, idSource, idSourceLength, bytes.length);
+        idSourceLength += bytes.length;
+    }
+
+    private void appendIdSource(long value) {
+        ensureIdSourceCapacity(8);
+        for (int index = 0; index < 8; index++) {
+            idSource[idSourceLength++] = (byte) (value >>> (index * 8));
+        }
+    }
+
+    private void ensureIdSourceCapacity(int additional) {
+        if (idSourceLength + additional > idSource.length) {
+            idSource = Arrays.copyOf(idSource, Math.max(idSource.length * 2, idSourceLength + additional));
+        }
     }
-}
\ No newline at end of file
+}
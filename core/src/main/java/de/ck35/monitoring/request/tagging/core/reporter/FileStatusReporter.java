@@ -0,0 +1,291 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A status reporter which appends the written request data to local files,
+ * e.g. for shipping them with a log collector. Data is encoded into a large
+ * direct buffer and written through a {@link FileChannel} whenever the buffer
+ * is full and at the end of every report.
+ * <p>
+ * A file is rotated at the end of a report when it has reached its maximum size
+ * or age. Syncing and closing the rotated file and deleting the oldest files
+ * beyond the retention cap happens in the background, so a report is never
+ * blocked by more than one buffer flush.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class FileStatusReporter implements StatusReporter {
+
+    static final String FILE_PREFIX = "request-tagging-";
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss.SSS'Z'")
+                                                                             .withZone(ZoneOffset.UTC);
+
+    private final StatusReporter reporter;
+    private final Transport transport;
+
+    private FileStatusReporter(StatusReporter reporter, Transport transport) {
+        this.reporter = reporter;
+        this.transport = transport;
+    }
+
+    public static Transport transport(Path directory,
+                                      String fileExtension,
+                                      long maxFileSize,
+                                      Duration rotationInterval,
+                                      int maxFiles,
+                                      int bufferSize,
+                                      Clock clock,
+                                      BiConsumer<String, Throwable> loggerWarn,
+                                      BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        return new Transport(directory, fileExtension, maxFileSize, rotationInterval, maxFiles, bufferSize, clock, loggerWarn, reporters);
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        reporter.accept(resource);
+    }
+
+    @Override
+    public void close() {
+        try {
+            reporter.close();
+        } finally {
+            transport.endOfReport();
+        }
+    }
+
+    public static class Transport implements Function<Instant, StatusReporter>, Closeable {
+
+        private final Path directory;
+        private final String fileExtension;
+        private final long maxFileSize;
+        private final Duration rotationInterval;
+        private final int maxFiles;
+        private final Clock clock;
+        private final BiConsumer<String, Throwable> loggerWarn;
+        private final BiFunction<Instant, Consumer<String>, StatusReporter> reporters;
+
+        private final ByteBuffer buffer;
+        private final CharsetEncoder encoder;
+        private final ExecutorService rotator;
+        private final LongAdder rotations;
+
+        private FileChannel channel;
+        private Instant fileOpened;
+        private long fileSize;
+        private int sequence;
+
+        private Transport(Path directory,
+                          String fileExtension,
+                          long maxFileSize,
+                          Duration rotationInterval,
+                          int maxFiles,
+                          int bufferSize,
+                          Clock clock,
+                          BiConsumer<String, Throwable> loggerWarn,
+                          BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+            if (maxFiles < 1) {
+                throw new IllegalArgumentException("Invalid max files: '" + maxFiles + "'!");
+            }
+            if (bufferSize < 16) {
+                throw new IllegalArgumentException("Invalid buffer size: '" + bufferSize + "'!");
+            }
+            this.directory = Objects.requireNonNull(directory);
+            this.fileExtension = Objects.requireNonNull(fileExtension);
+            this.maxFileSize = maxFileSize;
+            this.rotationInterval = Objects.requireNonNull(rotationInterval);
+            this.maxFiles = maxFiles;
+            this.clock = Objects.requireNonNull(clock);
+            this.loggerWarn = Objects.requireNonNull(loggerWarn);
+            this.reporters = Objects.requireNonNull(reporters);
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+            this.encoder = StandardCharsets.UTF_8.newEncoder()
+                                                 .onMalformedInput(CodingErrorAction.REPLACE)
+                                                 .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.rotator = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "request-tagging-file-rotation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.rotations = new LongAdder();
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create directory: '" + directory + "'!", e);
+            }
+        }
+
+        @Override
+        public StatusReporter apply(Instant instant) {
+            return new FileStatusReporter(reporters.apply(instant, this::write), this);
+        }
+
+        synchronized void write(String data) {
+            CharBuffer chars = CharBuffer.wrap(data);
+            encoder.reset();
+            for (;;) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    flush();
+                } else {
+                    break;
+                }
+            }
+            while (encoder.flush(buffer)
+                          .isOverflow()) {
+                flush();
+            }
+        }
+
+        /**
+         * Write the buffered data and rotate the file if it has reached its
+         * maximum size or age. Rotation only happens between reports so a
+         * report is never split into two files.
+         */
+        synchronized void endOfReport() {
+            flush();
+            if (channel != null && (fileSize >= maxFileSize || !clock.instant()
+                                                                     .isBefore(fileOpened.plus(rotationInterval)))) {
+                rotate();
+            }
+        }
+
+        private void flush() {
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            try {
+                if (channel == null) {
+                    open();
+                }
+                while (buffer.hasRemaining()) {
+                    fileSize += channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write request tagging data to: '" + directory + "'!", e);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void open() throws IOException {
+            fileOpened = clock.instant();
+            Path file = directory.resolve(String.format("%s%s-%06d.%s", FILE_PREFIX, FILE_TIMESTAMP.format(fileOpened), sequence++, fileExtension));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            fileSize = channel.size();
+        }
+
+        private void rotate() {
+            FileChannel rotated = channel;
+            channel = null;
+            rotations.increment();
+            rotator.execute(() -> {
+                try {
+                    rotated.force(true);
+                } catch (IOException e) {
+                    loggerWarn.accept("Could not sync rotated request tagging file!", e);
+                } finally {
+                    closeQuietly(rotated);
+                }
+                deleteOldestFiles();
+            });
+        }
+
+        private void closeQuietly(FileChannel rotated) {
+            try {
+                rotated.close();
+            } catch (IOException e) {
+                loggerWarn.accept("Could not close rotated request tagging file!", e);
+            }
+        }
+
+        /**
+         * File names start with the creation time so the oldest files come
+         * first when sorted by name.
+         */
+        private void deleteOldestFiles() {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*." + fileExtension)) {
+                stream.forEach(files::add);
+            } catch (IOException e) {
+                loggerWarn.accept("Could not list request tagging files in: '" + directory + "'!", e);
+                return;
+            }
+            Collections.sort(files);
+            for (int index = 0; index < files.size() - maxFiles; index++) {
+                try {
+                    Files.deleteIfExists(files.get(index));
+                } catch (IOException e) {
+                    loggerWarn.accept("Could not delete request tagging file: '" + files.get(index) + "'!", e);
+                }
+            }
+        }
+
+        public long getRotations() {
+            return rotations.sum();
+        }
+
+        /**
+         * Wait until all rotated files have been synced, closed and the
+         * retention cap has been applied.
+         */
+        void awaitRotations() throws InterruptedException, ExecutionException, TimeoutException {
+            rotator.submit(() -> {
+            })
+                   .get(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                flush();
+                if (channel != null) {
+                    rotate();
+                }
+            } finally {
+                rotator.shutdown();
+                try {
+                    rotator.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread()
+                          .interrupt();
+                }
+            }
+        }
+    }
+}
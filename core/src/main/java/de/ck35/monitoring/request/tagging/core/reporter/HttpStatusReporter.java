@@ -1,36 +1,45 @@
 package de.ck35.monitoring.request.tagging.core.reporter;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A status reporter implementation which sends request tagging data via HTTP
- * with the help of a {@link HttpURLConnection}.
+ * with the help of a {@link HttpURLConnection}. The request body can optionally
+ * be compressed with GZIP while it is streamed to the remote endpoint.
  * 
  * @author Christian Kaspari
  * @since 2.0.0
  */
 public class HttpStatusReporter implements StatusReporter {
 
-    private final Instant instant;
     private final Connection connection;
-    private final BiFunction<Instant, Consumer<String>, StatusReporter> reporters;
+    private final Function<Connection, StatusReporter> reporters;
 
     private StatusReporter reporter;
 
     public HttpStatusReporter(Instant instant, Connection connection, BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
-        this.instant = instant;
+        this(connection, writer -> reporters.apply(instant, writer));
+    }
+
+    private HttpStatusReporter(Connection connection, Function<Connection, StatusReporter> reporters) {
         this.connection = connection;
         this.reporters = reporters;
     }
@@ -39,10 +48,53 @@ public class HttpStatusReporter implements StatusReporter {
         return instant -> new HttpStatusReporter(instant, Connection.connect(url, connectionTimeout, readTimeout), reporters);
     }
 
+    public static Function<Instant, StatusReporter> statusReporter(URL url,
+                                                                   int connectionTimeout,
+                                                                   int readTimeout,
+                                                                   Optional<Integer> gzipLevel,
+                                                                   Consumer<TransferStatistics> statisticsListener,
+                                                                   BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        return instant -> new HttpStatusReporter(instant, Connection.connect(url, connectionTimeout, readTimeout, gzipLevel, statisticsListener), reporters);
+    }
+
+    /**
+     * Create a status reporter which writes binary data directly to the output
+     * stream of the connection.
+     */
+    public static Function<Instant, StatusReporter> binaryStatusReporter(URL url,
+                                                                         int connectionTimeout,
+                                                                         int readTimeout,
+                                                                         Optional<Integer> gzipLevel,
+                                                                         Consumer<TransferStatistics> statisticsListener,
+                                                                         BiFunction<Instant, OutputStream, StatusReporter> reporters) {
+        return instant -> new HttpStatusReporter(Connection.connect(url, connectionTimeout, readTimeout, "application/octet-stream", gzipLevel, statisticsListener),
+                                                 connection -> reporters.apply(instant, connection.getOutputStream()));
+    }
+
+    /**
+     * Create a function which sends one request body per invocation and
+     * returns the body of the response.
+     */
+    public static Function<String, String> requests(URL url,
+                                                    int connectionTimeout,
+                                                    int readTimeout,
+                                                    Optional<Integer> gzipLevel,
+                                                    Consumer<TransferStatistics> statisticsListener) {
+        return body -> {
+            Connection connection = Connection.connect(url, connectionTimeout, readTimeout, gzipLevel, statisticsListener);
+            try {
+                connection.accept(body);
+            } finally {
+                connection.close();
+            }
+            return connection.getResponseBody();
+        };
+    }
+
     @Override
     public void accept(Resource resource) {
         if (reporter == null) {
-            reporter = reporters.apply(instant, connection);
+            reporter = reporters.apply(connection);
         }
         reporter.accept(resource);
     }
@@ -60,14 +112,41 @@ public class HttpStatusReporter implements StatusReporter {
     public static class Connection implements Consumer<String>, Closeable {
 
         private final HttpURLConnection connection;
+        private final Optional<Integer> gzipLevel;
+        private final Consumer<TransferStatistics> statisticsListener;
 
         private BufferedWriter writer;
+        private CountingOutputStream payload;
+        private CountingOutputStream transferred;
+        private TimedGZIPOutputStream compression;
+        private String responseBody = "";
 
         public Connection(HttpURLConnection connection) {
+            this(connection, Optional.empty(), statistics -> {
+            });
+        }
+
+        public Connection(HttpURLConnection connection, Optional<Integer> gzipLevel, Consumer<TransferStatistics> statisticsListener) {
             this.connection = Objects.requireNonNull(connection);
+            this.gzipLevel = Objects.requireNonNull(gzipLevel);
+            this.statisticsListener = Objects.requireNonNull(statisticsListener);
         }
 
         public static Connection connect(URL url, int connectionTimeout, int readTimeout) {
+            return connect(url, connectionTimeout, readTimeout, Optional.empty(), statistics -> {
+            });
+        }
+
+        public static Connection connect(URL url, int connectionTimeout, int readTimeout, Optional<Integer> gzipLevel, Consumer<TransferStatistics> statisticsListener) {
+            return connect(url, connectionTimeout, readTimeout, "text/plain; charset=utf-8", gzipLevel, statisticsListener);
+        }
+
+        public static Connection connect(URL url,
+                                         int connectionTimeout,
+                                         int readTimeout,
+                                         String contentType,
+                                         Optional<Integer> gzipLevel,
+                                         Consumer<TransferStatistics> statisticsListener) {
             try {
                 boolean disconnect = true;
                 HttpURLConnection connection = (HttpURLConnection) url.openConnection();
@@ -76,11 +155,14 @@ public class HttpStatusReporter implements StatusReporter {
                     connection.setReadTimeout(readTimeout);
                     connection.setDoOutput(true);
                     connection.setRequestMethod("POST");
-                    connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+                    connection.setRequestProperty("Content-Type", contentType);
+                    if (gzipLevel.isPresent()) {
+                        connection.setRequestProperty("Content-Encoding", "gzip");
+                    }
                     connection.setChunkedStreamingMode(0);
                     connection.connect();
                     disconnect = false;
-                    return new Connection(connection);
+                    return new Connection(connection, gzipLevel, statisticsListener);
                 } finally {
                     if (disconnect) {
                         connection.disconnect();
@@ -93,13 +175,30 @@ public class HttpStatusReporter implements StatusReporter {
 
         public BufferedWriter getWriter() {
             if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(getOutputStream(), StandardCharsets.UTF_8));
+            }
+            return writer;
+        }
+
+        /**
+         * @return The stream for writing the uncompressed request body. Must
+         *         not be mixed with {@link #getWriter()}.
+         */
+        public OutputStream getOutputStream() {
+            if (payload == null) {
                 try {
-                    writer = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+                    transferred = new CountingOutputStream(connection.getOutputStream());
+                    OutputStream target = transferred;
+                    if (gzipLevel.isPresent()) {
+                        compression = new TimedGZIPOutputStream(transferred, gzipLevel.get());
+                        target = compression;
+                    }
+                    payload = new CountingOutputStream(target);
                 } catch (IOException e) {
                     throw new HttpTransferException("Could not create output stream to: '" + connection.getURL() + "'!", e);
                 }
             }
-            return writer;
+            return payload;
         }
 
         @Override
@@ -113,10 +212,13 @@ public class HttpStatusReporter implements StatusReporter {
 
         @Override
         public void close() {
+            boolean disconnect = true;
             try {
                 try {
-                    if (writer == null) {
+                    if (payload == null) {
                         return;
+                    } else if (writer == null) {
+                        payload.close();
                     } else {
                         writer.close();
                     }
@@ -132,10 +234,146 @@ public class HttpStatusReporter implements StatusReporter {
                 if (code < 200 || code > 299) {
                     throw new HttpTransferException("Invalid response code: '" + code + "' received after writing to: '" + connection.getURL() + "'. Expected 2xx!");
                 }
+                statisticsListener.accept(new TransferStatistics(payload.getCount(),
+                                                                 transferred.getCount(),
+                                                                 gzipLevel.isPresent(),
+                                                                 Duration.ofNanos(compression == null ? 0 : compression.getNanos())));
+                disconnect = !drainResponse();
+            } finally {
+                if (disconnect) {
+                    connection.disconnect();
+                }
+            }
+        }
+
+        /**
+         * Read the remaining response body so the underlying connection can be
+         * reused by the keep alive cache of the JDK.
+         */
+        private boolean drainResponse() {
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+                responseBody = new String(body.toByteArray(), StandardCharsets.UTF_8);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * @return The body of a successful response or an empty String if the
+         *         response has not been read.
+         */
+        public String getResponseBody() {
+            return responseBody;
+        }
+    }
+
+    /**
+     * Statistics of one successful HTTP transfer. The payload bytes are the
+     * bytes written by the reporter, the transferred bytes are the bytes which
+     * have been written to the connection after optional compression. The
+     * compression time contains all time spent inside the deflater including
+     * the time needed for passing compressed data to the connection.
+     */
+    public static class TransferStatistics {
+
+        private final long payloadBytes;
+        private final long transferredBytes;
+        private final boolean compressed;
+        private final Duration compressionTime;
+
+        public TransferStatistics(long payloadBytes, long transferredBytes, boolean compressed, Duration compressionTime) {
+            this.payloadBytes = payloadBytes;
+            this.transferredBytes = transferredBytes;
+            this.compressed = compressed;
+            this.compressionTime = Objects.requireNonNull(compressionTime);
+        }
+
+        public long getPayloadBytes() {
+            return payloadBytes;
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+
+        public Duration getCompressionTime() {
+            return compressionTime;
+        }
+
+        @Override
+        public String toString() {
+            return "TransferStatistics [payloadBytes=" + payloadBytes + ", transferredBytes=" + transferredBytes + ", compressed=" + compressed + ", compressionTime=" + compressionTime + "]";
+        }
+    }
+
+    static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    static class TimedGZIPOutputStream extends GZIPOutputStream {
+
+        private long nanos;
+
+        TimedGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+
+        @Override
+        public synchronized void write(byte[] buf, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                super.write(buf, off, len);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            long start = System.nanoTime();
+            try {
+                super.finish();
             } finally {
-                connection.disconnect();
+                nanos += System.nanoTime() - start;
             }
         }
+
+        long getNanos() {
+            return nanos;
+        }
     }
 
     public static class HttpTransferException extends RuntimeException {
@@ -1,6 +1,8 @@
 package de.ck35.monitoring.request.tagging.core.reporter;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -8,6 +10,12 @@ import java.util.function.Consumer;
 /**
  * A status reporter which writes request data in a format which is suitable for
  * the InfluxDB write HTTP endpoint.
+ * <p>
+ * By default every single duration is written as its own line with an unique
+ * duration index tag. When durations are aggregated only one line per status
+ * code is written which contains count, sum, min, max and percentile fields for
+ * every timer. Aggregated lines are written with millisecond precision so the
+ * InfluxDB write endpoint must be called with <code>precision=ms</code>.
  * 
  * @author Christian Kaspari
  * @since 2.0.0
@@ -18,17 +26,23 @@ public class InfluxDBStatusReporter implements StatusReporter {
     private final Optional<String> hostId;
     private final Optional<String> instanceId;
     private final Consumer<String> writer;
+    private final boolean aggregateDurations;
 
     public InfluxDBStatusReporter(Instant instant, String hostId, String instanceId, Consumer<String> writer) {
+        this(instant, hostId, instanceId, writer, false);
+    }
+
+    public InfluxDBStatusReporter(Instant instant, String hostId, String instanceId, Consumer<String> writer, boolean aggregateDurations) {
         this.writer = writer;
         this.instant = Objects.requireNonNull(instant);
         this.hostId = Optional.ofNullable(hostId);
         this.instanceId = Optional.ofNullable(instanceId);
+        this.aggregateDurations = aggregateDurations;
     }
 
     @Override
     public void accept(Resource resource) {
-        Line lineWithMetaData = new Line(instant);
+        Line lineWithMetaData = new Line(instant, aggregateDurations ? Precision.MILLISECONDS : Precision.NANOSECONDS);
         lineWithMetaData.writeTag("resource_name", resource.getName());
         hostId.ifPresent(id -> lineWithMetaData.writeTag("host", id));
         instanceId.ifPresent(id -> lineWithMetaData.writeTag("instanceId", id));
@@ -44,6 +58,10 @@ public class InfluxDBStatusReporter implements StatusReporter {
                 .forEach(measurement -> {
                     Line lineWithStatusCode = new Line(lineWithMetaData);
                     lineWithStatusCode.writeTag("statusCodeName", measurement.getStatusCodeName());
+                    if (aggregateDurations) {
+                        writeAggregatedDurations(lineWithStatusCode, measurement);
+                        return;
+                    }
                     measurement.getDurations()
                                .forEach((key, durations) -> {
                                    for (int index = 0; index < durations.size(); index++) {
@@ -57,6 +75,68 @@ public class InfluxDBStatusReporter implements StatusReporter {
                 });
     }
 
+    private void writeAggregatedDurations(Line lineWithStatusCode, Measurement measurement) {
+        if (measurement.getDurations()
+                       .values()
+                       .stream()
+                       .allMatch(List::isEmpty)) {
+            return;
+        }
+        measurement.getDurations()
+                   .forEach((key, durations) -> {
+                       if (durations.isEmpty()) {
+                           return;
+                       }
+                       long[] values = new long[durations.size()];
+                       long sum = 0;
+                       for (int index = 0; index < values.length; index++) {
+                           values[index] = durations.get(index)
+                                                    .toMillis();
+                           sum += values[index];
+                       }
+                       Arrays.sort(values);
+                       lineWithStatusCode.writeField(key + "_count", values.length);
+                       lineWithStatusCode.writeField(key + "_sum", sum);
+                       lineWithStatusCode.writeField(key + "_min", values[0]);
+                       lineWithStatusCode.writeField(key + "_max", values[values.length - 1]);
+                       lineWithStatusCode.writeField(key + "_p50", percentile(values, 50));
+                       lineWithStatusCode.writeField(key + "_p99", percentile(values, 99));
+                   });
+        writer.accept(lineWithStatusCode.getCompleteLine());
+    }
+
+    /**
+     * Nearest rank percentile of the given sorted values.
+     */
+    static long percentile(long[] sortedValues, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100d * sortedValues.length);
+        return sortedValues[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * The timestamp precision of a line. The name of the precision is the value
+     * of the <code>precision</code> query parameter of the InfluxDB write
+     * endpoint.
+     */
+    public enum Precision {
+
+            NANOSECONDS("ns", "000000"),
+
+            MILLISECONDS("ms", "");
+
+        private final String queryParameterValue;
+        private final String millisSuffix;
+
+        private Precision(String queryParameterValue, String millisSuffix) {
+            this.queryParameterValue = queryParameterValue;
+            this.millisSuffix = millisSuffix;
+        }
+
+        public String getQueryParameterValue() {
+            return queryParameterValue;
+        }
+    }
+
     public static class Line {
 
         private enum WritePosition {
@@ -69,7 +149,11 @@ public class InfluxDBStatusReporter implements StatusReporter {
         private WritePosition position;
 
         public Line(Instant timestamp) {
-            this.lineEnding = toLineEnding(timestamp);
+            this(timestamp, Precision.NANOSECONDS);
+        }
+
+        public Line(Instant timestamp, Precision precision) {
+            this.lineEnding = toLineEnding(timestamp, precision);
             this.builder = new StringBuilder("request_data");
             this.position = WritePosition.TAGS;
         }
@@ -145,11 +229,11 @@ public class InfluxDBStatusReporter implements StatusReporter {
             return this;
         }
 
-        private static String toLineEnding(Instant instant) {
+        private static String toLineEnding(Instant instant, Precision precision) {
             StringBuilder builder = new StringBuilder();
             builder.append(" ")
                    .append(instant.toEpochMilli())
-                   .append("000000")
+                   .append(precision.millisSuffix)
                    .append("\n");
             return builder.toString();
         }
@@ -0,0 +1,74 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import de.ck35.monitoring.request.tagging.core.reporter.JSONStatusReporter.JsonObject;
+
+/**
+ * A status reporter which writes request data as JSON with one object per
+ * resource. Timestamp, host, instance and meta data are written only once and
+ * the values of every status code are written into a nested
+ * <code>measurements</code> array.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class JSONNestedStatusReporter implements StatusReporter {
+
+    private final String timestamp;
+    private final Optional<String> hostId;
+    private final Optional<String> instanceId;
+    private final Consumer<String> writer;
+
+    private boolean firstResource;
+
+    public JSONNestedStatusReporter(Instant instant, String hostId, String instanceId, Consumer<String> writer) {
+        this.writer = writer;
+        this.timestamp = Objects.requireNonNull(instant)
+                                .toString();
+        this.hostId = Optional.ofNullable(hostId);
+        this.instanceId = Optional.ofNullable(instanceId);
+        this.firstResource = true;
+        writer.accept("[");
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        JsonObject object = new JsonObject();
+        object.appendField("timestamp", timestamp);
+        object.appendField("key", "request_data");
+        object.appendField("resource_name", resource.getName());
+        hostId.ifPresent(id -> object.appendField("host", id));
+        instanceId.ifPresent(id -> object.appendField("instanceId", id));
+        resource.getMetaData()
+                .forEach(object::appendField);
+        List<JsonObject> measurements = new ArrayList<>(resource.getMeasurements()
+                                                                .size());
+        resource.getMeasurements()
+                .forEach(measurement -> {
+                    JsonObject measurementObject = new JsonObject();
+                    measurementObject.appendField("statusCodeName", measurement.getStatusCodeName());
+                    measurementObject.appendField("totalNumberOfInvocations", measurement.getTotalNumberOfInvocations());
+                    measurement.getDurations()
+                               .forEach(measurementObject::appendField);
+                    measurements.add(measurementObject);
+                });
+        object.appendField("measurements", measurements);
+        if (firstResource) {
+            firstResource = false;
+        } else {
+            writer.accept(",");
+        }
+        writer.accept(object.toJSON());
+    }
+
+    @Override
+    public void close() {
+        writer.accept("]");
+    }
+}
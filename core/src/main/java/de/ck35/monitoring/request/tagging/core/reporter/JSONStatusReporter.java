@@ -41,6 +41,14 @@ public class JSONStatusReporter implements StatusReporter {
         writer.accept("]");
     }
 
+    /**
+     * Append the measurement of the given resource. Subclasses which need the
+     * source of the measurement object can overwrite this method.
+     */
+    protected void appendMeasurement(Resource resource, Measurement measurement, JsonObject measurementObject) {
+        appendMeasurement(measurementObject);
+    }
+
     protected void appendMeasurement(JsonObject measurementObject) {
         if (firstMeasurement) {
             firstMeasurement = false;
@@ -72,7 +80,7 @@ public class JSONStatusReporter implements StatusReporter {
                     measurementObject.appendField("totalNumberOfInvocations", measurement.getTotalNumberOfInvocations());
                     measurement.getDurations()
                                .forEach(measurementObject::appendField);
-                    appendMeasurement(measurementObject);
+                    appendMeasurement(resource, measurement, measurementObject);
                 });
     }
 
@@ -120,6 +128,21 @@ public class JSONStatusReporter implements StatusReporter {
             builder.append("]");
         }
 
+        public void appendField(String name, Iterable<JsonObject> objects) {
+            appendFieldName(name);
+            builder.append("[");
+            Iterator<JsonObject> iter = objects.iterator();
+            if (iter.hasNext()) {
+                builder.append(iter.next()
+                                   .toJSON());
+            }
+            iter.forEachRemaining(object -> {
+                builder.append(",");
+                builder.append(object.toJSON());
+            });
+            builder.append("]");
+        }
+
         private void appendFieldName(String fieldName) {
             if (firstField) {
                 firstField = false;
@@ -0,0 +1,32 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * A status reporter which writes request data as newline delimited JSON. Every
+ * measurement is one JSON object on its own line and is passed to the writer
+ * with one call.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class NDJSONStatusReporter extends JSONStatusReporter {
+
+    public NDJSONStatusReporter(Instant instant, String hostId, String instanceId, Consumer<String> writer) {
+        super(instant, hostId, instanceId, writer);
+    }
+
+    @Override
+    protected void appendMeasurement(JsonObject measurementObject) {
+        writer.accept(measurementObject.toJSON() + "\n");
+    }
+
+    @Override
+    protected void beforeMeasurements() {
+    }
+
+    @Override
+    protected void afterMeasurements() {
+    }
+}
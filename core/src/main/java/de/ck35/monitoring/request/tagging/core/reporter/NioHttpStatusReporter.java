@@ -0,0 +1,600 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.CountingOutputStream;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.HttpTransferException;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TimedGZIPOutputStream;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TransferStatistics;
+
+/**
+ * A status reporter implementation which sends request tagging data via HTTP
+ * over non blocking {@link SocketChannel}s. In contrast to the
+ * {@link HttpStatusReporter} the connections are kept alive and reused for the
+ * following reports. The request body is collected in memory and written from
+ * a direct buffer. Several request bodies can be pipelined over one connection
+ * with {@link Transport#post(List)}. Only plain HTTP is supported.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class NioHttpStatusReporter implements StatusReporter {
+
+    private final Instant instant;
+    private final Transport transport;
+    private final BiFunction<Instant, Consumer<String>, StatusReporter> reporters;
+
+    private StatusReporter reporter;
+    private Body body;
+
+    public NioHttpStatusReporter(Instant instant, Transport transport, BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        this.instant = instant;
+        this.transport = transport;
+        this.reporters = reporters;
+    }
+
+    public static Transport transport(URL url,
+                                      int connectionTimeout,
+                                      int readTimeout,
+                                      int maxIdleConnections,
+                                      Optional<Integer> gzipLevel,
+                                      Consumer<TransferStatistics> statisticsListener,
+                                      BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        return new Transport(url, connectionTimeout, readTimeout, maxIdleConnections, gzipLevel, statisticsListener, reporters);
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        if (reporter == null) {
+            reporter = reporters.apply(instant, this::write);
+        }
+        reporter.accept(resource);
+    }
+
+    private void write(String token) {
+        try {
+            if (body == null) {
+                body = new Body(transport.gzipLevel);
+            }
+            body.write(token);
+        } catch (IOException e) {
+            throw new HttpTransferException("Error while appending token: '" + token + "' to request body!", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.close();
+        if (body == null) {
+            return;
+        }
+        transport.post(Collections.singletonList(body.finish()));
+        transport.statisticsListener.accept(body.statistics());
+    }
+
+    /**
+     * Creates the status reporters and holds the pool of idle keep alive
+     * connections to the remote endpoint.
+     */
+    public static class Transport implements Function<Instant, StatusReporter>, Closeable {
+
+        private final URL url;
+        private final InetSocketAddress address;
+        private final byte[] requestHead;
+        private final int connectionTimeout;
+        private final int readTimeout;
+        private final int maxIdleConnections;
+        private final Optional<Integer> gzipLevel;
+        private final Consumer<TransferStatistics> statisticsListener;
+        private final BiFunction<Instant, Consumer<String>, StatusReporter> reporters;
+
+        private final Deque<Channel> idleChannels;
+        private final LongAdder openedConnections;
+        private final LongAdder reusedConnections;
+        private final LongAdder requests;
+
+        private volatile boolean closed;
+
+        public Transport(URL url,
+                         int connectionTimeout,
+                         int readTimeout,
+                         int maxIdleConnections,
+                         Optional<Integer> gzipLevel,
+                         Consumer<TransferStatistics> statisticsListener,
+                         BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+            if (!"http".equalsIgnoreCase(url.getProtocol())) {
+                throw new IllegalArgumentException("Protocol: '" + url.getProtocol() + "' is not supported by the NIO transport. Only http is supported!");
+            }
+            this.url = url;
+            int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+            this.address = new InetSocketAddress(url.getHost(), port);
+            this.connectionTimeout = connectionTimeout;
+            this.readTimeout = readTimeout;
+            this.maxIdleConnections = maxIdleConnections;
+            this.gzipLevel = Objects.requireNonNull(gzipLevel);
+            this.statisticsListener = Objects.requireNonNull(statisticsListener);
+            this.reporters = Objects.requireNonNull(reporters);
+            this.idleChannels = new ArrayDeque<>();
+            this.openedConnections = new LongAdder();
+            this.reusedConnections = new LongAdder();
+            this.requests = new LongAdder();
+
+            String target = url.getFile()
+                               .isEmpty() ? "/" : url.getFile();
+            StringBuilder head = new StringBuilder();
+            head.append("POST ")
+                .append(target)
+                .append(" HTTP/1.1\r\n");
+            head.append("Host: ")
+                .append(url.getHost())
+                .append(':')
+                .append(port)
+                .append("\r\n");
+            head.append("Content-Type: text/plain; charset=utf-8\r\n");
+            if (gzipLevel.isPresent()) {
+                head.append("Content-Encoding: gzip\r\n");
+            }
+            head.append("Connection: keep-alive\r\n");
+            head.append("Content-Length: ");
+            this.requestHead = head.toString()
+                                   .getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public StatusReporter apply(Instant instant) {
+            return new NioHttpStatusReporter(instant, this, reporters);
+        }
+
+        /**
+         * Send the given request bodies as pipelined requests over one
+         * connection. All requests are written before the responses are read.
+         * The connection is only reused if all responses have been read
+         * completely, otherwise it is closed.
+         *
+         * @param bodies The request bodies to send.
+         * @return The response bodies in the order of the request bodies.
+         * @throws HttpTransferException If one of the requests could not be
+         *             sent or has not been answered with 2xx.
+         */
+        public List<String> post(List<byte[]> bodies) {
+            if (bodies.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Channel channel = acquire();
+            boolean keepAlive = false;
+            try {
+                for (byte[] body : bodies) {
+                    channel.write(requestHead, Integer.toString(body.length)
+                                                      .getBytes(StandardCharsets.US_ASCII),
+                                  "\r\n\r\n".getBytes(StandardCharsets.US_ASCII), body);
+                    requests.increment();
+                }
+                boolean reusable = true;
+                List<String> responses = new ArrayList<>(bodies.size());
+                for (int index = 0; index < bodies.size(); index++) {
+                    Response response = channel.readResponse();
+                    reusable &= response.keepAlive;
+                    if (response.code < 200 || response.code > 299) {
+                        throw new HttpTransferException("Invalid response code: '" + response.code + "' received after writing to: '" + url + "'. Expected 2xx!");
+                    }
+                    responses.add(response.body);
+                }
+                keepAlive = reusable;
+                return responses;
+            } catch (IOException e) {
+                throw new HttpTransferException("Error while sending request tagging data to: '" + url + "'!", e);
+            } finally {
+                if (keepAlive) {
+                    release(channel);
+                } else {
+                    channel.close();
+                }
+            }
+        }
+
+        /**
+         * Encode the given request bodies like the status reporters do and
+         * send them with {@link #post(List)}.
+         *
+         * @param bodies The uncompressed request bodies to send.
+         * @return The response bodies in the order of the request bodies.
+         */
+        public List<String> send(List<String> bodies) {
+            List<Body> encoded = new ArrayList<>(bodies.size());
+            List<byte[]> payloads = new ArrayList<>(bodies.size());
+            for (String body : bodies) {
+                Body next = new Body(gzipLevel);
+                try {
+                    next.write(body);
+                } catch (IOException e) {
+                    throw new HttpTransferException("Could not encode request body!", e);
+                }
+                payloads.add(next.finish());
+                encoded.add(next);
+            }
+            List<String> responses = post(payloads);
+            encoded.forEach(body -> statisticsListener.accept(body.statistics()));
+            return responses;
+        }
+
+        private Channel acquire() {
+            Channel channel;
+            while ((channel = pollIdle()) != null) {
+                if (channel.isReusable()) {
+                    reusedConnections.increment();
+                    return channel;
+                }
+                channel.close();
+            }
+            try {
+                channel = new Channel(address, connectionTimeout, readTimeout);
+            } catch (IOException e) {
+                throw new HttpTransferException("Could not create connection to: '" + url + "'!", e);
+            }
+            openedConnections.increment();
+            return channel;
+        }
+
+        private synchronized Channel pollIdle() {
+            return idleChannels.pollLast();
+        }
+
+        private void release(Channel channel) {
+            synchronized (this) {
+                if (!closed && idleChannels.size() < maxIdleConnections) {
+                    idleChannels.addLast(channel);
+                    return;
+                }
+            }
+            channel.close();
+        }
+
+        public long getOpenedConnections() {
+            return openedConnections.sum();
+        }
+
+        public long getReusedConnections() {
+            return reusedConnections.sum();
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public synchronized int getIdleConnections() {
+            return idleChannels.size();
+        }
+
+        @Override
+        public void close() {
+            Channel channel;
+            synchronized (this) {
+                closed = true;
+            }
+            while ((channel = pollIdle()) != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private static class Response {
+
+        private final int code;
+        private final boolean keepAlive;
+        private final String body;
+
+        private Response(int code, boolean keepAlive, String body) {
+            this.code = code;
+            this.keepAlive = keepAlive;
+            this.body = body;
+        }
+    }
+
+    /**
+     * A request body which is collected in memory and optionally compressed.
+     */
+    private static class Body {
+
+        private final ByteArrayOutputStream bytes;
+        private final CountingOutputStream payload;
+        private final CountingOutputStream transferred;
+        private final TimedGZIPOutputStream compression;
+        private final BufferedWriter writer;
+
+        private Body(Optional<Integer> gzipLevel) {
+            this.bytes = new ByteArrayOutputStream(8192);
+            this.transferred = new CountingOutputStream(bytes);
+            OutputStream target = transferred;
+            if (gzipLevel.isPresent()) {
+                try {
+                    compression = new TimedGZIPOutputStream(transferred, gzipLevel.get());
+                } catch (IOException e) {
+                    throw new HttpTransferException("Could not create compressed request body!", e);
+                }
+                target = compression;
+            } else {
+                compression = null;
+            }
+            this.payload = new CountingOutputStream(target);
+            this.writer = new BufferedWriter(new OutputStreamWriter(payload, StandardCharsets.UTF_8));
+        }
+
+        private void write(String token) throws IOException {
+            writer.write(token);
+        }
+
+        private byte[] finish() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new HttpTransferException("Could not close request body writer!", e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private TransferStatistics statistics() {
+            return new TransferStatistics(payload.getCount(),
+                                          transferred.getCount(),
+                                          compression != null,
+                                          Duration.ofNanos(compression == null ? 0 : compression.getNanos()));
+        }
+    }
+
+    private static class Channel implements Closeable {
+
+        private final SocketChannel socket;
+        private final Selector selector;
+        private final SelectionKey key;
+        private final int readTimeout;
+        private final ByteBuffer writeBuffer;
+        private final ByteBuffer readBuffer;
+
+        private Channel(InetSocketAddress address, int connectionTimeout, int readTimeout) throws IOException {
+            this.readTimeout = readTimeout;
+            this.writeBuffer = ByteBuffer.allocateDirect(16 * 1024);
+            this.readBuffer = ByteBuffer.allocateDirect(8 * 1024);
+            this.readBuffer.limit(0);
+            this.socket = SocketChannel.open();
+            boolean success = false;
+            try {
+                socket.configureBlocking(false);
+                socket.socket()
+                      .setTcpNoDelay(true);
+                this.selector = Selector.open();
+                try {
+                    this.key = socket.register(selector, SelectionKey.OP_CONNECT);
+                    if (!socket.connect(address)) {
+                        await(SelectionKey.OP_CONNECT, connectionTimeout);
+                        socket.finishConnect();
+                    }
+                    success = true;
+                } finally {
+                    if (!success) {
+                        selector.close();
+                    }
+                }
+            } finally {
+                if (!success) {
+                    socket.close();
+                }
+            }
+        }
+
+        private void await(int operation, int timeout) throws IOException {
+            key.interestOps(operation);
+            selector.selectedKeys()
+                    .clear();
+            if (selector.select(Math.max(0, timeout)) == 0) {
+                throw new SocketTimeoutException("Timeout of: '" + timeout + "' ms reached!");
+            }
+        }
+
+        /**
+         * An idle connection is reusable when the remote endpoint has not
+         * closed it and has not sent unexpected data.
+         */
+        private boolean isReusable() {
+            if (readBuffer.hasRemaining()) {
+                return false;
+            }
+            try {
+                readBuffer.clear();
+                int read = socket.read(readBuffer);
+                readBuffer.flip();
+                return read == 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void write(byte[]... parts) throws IOException {
+            for (byte[] part : parts) {
+                int offset = 0;
+                while (offset < part.length) {
+                    writeBuffer.clear();
+                    int length = Math.min(writeBuffer.remaining(), part.length - offset);
+                    writeBuffer.put(part, offset, length);
+                    writeBuffer.flip();
+                    offset += length;
+                    while (writeBuffer.hasRemaining()) {
+                        if (socket.write(writeBuffer) == 0) {
+                            await(SelectionKey.OP_WRITE, readTimeout);
+                        }
+                    }
+                }
+            }
+        }
+
+        private Response readResponse() throws IOException {
+            String statusLine = readLine();
+            String[] status = statusLine.split(" ", 3);
+            if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+                throw new IOException("Invalid status line: '" + statusLine + "'!");
+            }
+            int code;
+            try {
+                code = Integer.parseInt(status[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid status line: '" + statusLine + "'!", e);
+            }
+            boolean keepAlive = "HTTP/1.1".equals(status[0]);
+            long contentLength = -1;
+            boolean chunked = false;
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                int separator = header.indexOf(':');
+                if (separator < 0) {
+                    continue;
+                }
+                String name = header.substring(0, separator)
+                                    .trim()
+                                    .toLowerCase(Locale.ROOT);
+                String value = header.substring(separator + 1)
+                                     .trim()
+                                     .toLowerCase(Locale.ROOT);
+                if (name.equals("content-length")) {
+                    contentLength = parseLength(value, 10, header);
+                } else if (name.equals("transfer-encoding")) {
+                    chunked = value.contains("chunked");
+                } else if (name.equals("connection")) {
+                    keepAlive = value.contains("keep-alive") || (keepAlive && !value.contains("close"));
+                }
+            }
+            if (code >= 100 && code < 200) {
+                return readResponse();
+            }
+            if (code == 204 || code == 304) {
+                return new Response(code, keepAlive, "");
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (chunked) {
+                for (long size = readChunkSize(); size > 0; size = readChunkSize()) {
+                    read(size, body);
+                    readLine();
+                }
+                while (!readLine().isEmpty()) {
+                    // Skip trailers.
+                }
+            } else if (contentLength >= 0) {
+                read(contentLength, body);
+            } else {
+                while (fill(false)) {
+                    read(readBuffer.remaining(), body);
+                }
+                keepAlive = false;
+            }
+            return new Response(code, keepAlive, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        private long readChunkSize() throws IOException {
+            String line = readLine();
+            int extension = line.indexOf(';');
+            return parseLength((extension < 0 ? line : line.substring(0, extension)).trim(), 16, line);
+        }
+
+        private static long parseLength(String value, int radix, String line) throws IOException {
+            long result;
+            try {
+                result = Long.parseLong(value, radix);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid length inside: '" + line + "'!", e);
+            }
+            if (result < 0) {
+                throw new IOException("Invalid length inside: '" + line + "'!");
+            }
+            return result;
+        }
+
+        private void read(long bytes, ByteArrayOutputStream target) throws IOException {
+            long remaining = bytes;
+            while (remaining > 0) {
+                if (!readBuffer.hasRemaining()) {
+                    fill(true);
+                }
+                int length = (int) Math.min(remaining, readBuffer.remaining());
+                for (int index = 0; index < length; index++) {
+                    target.write(readBuffer.get());
+                }
+                remaining -= length;
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                if (!readBuffer.hasRemaining()) {
+                    fill(true);
+                }
+                char next = (char) (readBuffer.get() & 0xFF);
+                if (next == '\n') {
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                line.append(next);
+            }
+        }
+
+        private boolean fill(boolean required) throws IOException {
+            readBuffer.clear();
+            int read;
+            while ((read = socket.read(readBuffer)) == 0) {
+                await(SelectionKey.OP_READ, readTimeout);
+            }
+            readBuffer.flip();
+            if (read < 0) {
+                if (required) {
+                    throw new EOFException("Connection has been closed by remote endpoint!");
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Ignore, the socket is closed anyway.
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to do.
+            }
+        }
+    }
+}
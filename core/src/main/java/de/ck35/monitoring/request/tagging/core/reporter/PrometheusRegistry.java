@@ -0,0 +1,363 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+/**
+ * Keeps cumulative counters and duration histograms for every series which has
+ * been reported so far and renders them in the Prometheus text exposition
+ * format. A series is identified by the resource name, the meta data and the
+ * status code. The label part of every series is rendered only once when the
+ * series is created so a scrape only needs to write the current values. A meta
+ * data key which collides with a reserved label or with another meta data key
+ * of the same resource is exposed with the {@value #META_DATA_PREFIX} prefix
+ * or a numeric suffix.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class PrometheusRegistry {
+
+    static final String INVOCATIONS = "request_data_invocations_total";
+    static final String DURATIONS = "request_data_duration_seconds";
+    static final String META_DATA_PREFIX = "meta_";
+
+    private static final Set<String> RESERVED_LABELS = new HashSet<>(Arrays.asList("resource_name", "host", "instanceId", "statusCodeName", "timer", "le"));
+
+    private static final long[] BUCKET_MILLIS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+    private static final byte[][] BUCKET_SUFFIXES = suffixes("0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10", "+Inf");
+
+    private static final byte[] INVOCATIONS_HEADER = utf8("# HELP " + INVOCATIONS + " Total number of invocations per resource and status code.\n# TYPE "
+            + INVOCATIONS + " counter\n");
+    private static final byte[] DURATIONS_HEADER = utf8("# HELP " + DURATIONS + " Durations per resource, status code and timer.\n# TYPE " + DURATIONS
+            + " histogram\n");
+    private static final byte[] INVOCATIONS_PREFIX = utf8(INVOCATIONS);
+    private static final byte[] BUCKET_PREFIX = utf8(DURATIONS + "_bucket");
+    private static final byte[] SUM_PREFIX = utf8(DURATIONS + "_sum");
+    private static final byte[] COUNT_PREFIX = utf8(DURATIONS + "_count");
+    private static final byte[] VALUE_SEPARATOR = utf8("} ");
+
+    private final String hostLabels;
+    private final Consumer<String> loggerInfo;
+    private final Map<String, Series> series;
+    private final Map<String, Series> seriesByLabels;
+    private final Set<String> renamedKeys;
+
+    private static byte[][] suffixes(String... bounds) {
+        byte[][] suffixes = new byte[bounds.length][];
+        for (int index = 0; index < bounds.length; index++) {
+            suffixes[index] = utf8(",le=\"" + bounds[index] + "\"} ");
+        }
+        return suffixes;
+    }
+
+    public PrometheusRegistry(String hostId, String instanceId) {
+        this(hostId, instanceId, message -> {
+        });
+    }
+
+    public PrometheusRegistry(String hostId, String instanceId, Consumer<String> loggerInfo) {
+        StringBuilder labels = new StringBuilder();
+        if (hostId != null) {
+            labels.append(",host=\"");
+            appendLabelValue(labels, hostId);
+            labels.append('"');
+        }
+        if (instanceId != null) {
+            labels.append(",instanceId=\"");
+            appendLabelValue(labels, instanceId);
+            labels.append('"');
+        }
+        this.hostLabels = labels.toString();
+        this.loggerInfo = Objects.requireNonNull(loggerInfo);
+        this.series = new ConcurrentHashMap<>();
+        this.seriesByLabels = new ConcurrentHashMap<>();
+        this.renamedKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Add the measurements of the given resource to the cumulative values.
+     */
+    public void record(Resource resource) {
+        StringBuilder key = new StringBuilder();
+        key.append(resource.getName());
+        resource.getMetaData()
+                .forEach((name, value) -> key.append('\u0000')
+                                             .append(name)
+                                             .append('\u0001')
+                                             .append(value));
+        key.append('\u0000');
+        int resourceKeyLength = key.length();
+        for (Measurement measurement : resource.getMeasurements()) {
+            key.setLength(resourceKeyLength);
+            key.append(measurement.getStatusCodeName());
+            Series current = series.computeIfAbsent(key.toString(), ignored -> seriesByLabels.computeIfAbsent(labels(resource, measurement.getStatusCodeName()),
+                                                                                                                Series::new));
+            current.invocations.add(measurement.getTotalNumberOfInvocations());
+            measurement.getDurations()
+                       .forEach((timer, durations) -> current.histogram(timer)
+                                                             .record(durations));
+        }
+    }
+
+    private String labels(Resource resource, String statusCodeName) {
+        StringBuilder labels = new StringBuilder();
+        labels.append("resource_name=\"");
+        appendLabelValue(labels, resource.getName());
+        labels.append('"')
+              .append(hostLabels);
+        Set<String> labelNames = new HashSet<>();
+        resource.getMetaData()
+                .forEach((name, value) -> {
+                    labels.append(',')
+                          .append(labelName(name, labelNames));
+                    labels.append("=\"");
+                    appendLabelValue(labels, value);
+                    labels.append('"');
+                });
+        labels.append(",statusCodeName=\"");
+        appendLabelValue(labels, statusCodeName);
+        labels.append('"');
+        return labels.toString();
+    }
+
+    /**
+     * @return The label name for the given meta data key which is not reserved
+     *         and not contained in the given label names.
+     */
+    private String labelName(String key, Set<String> labelNames) {
+        StringBuilder builder = new StringBuilder();
+        appendLabelName(builder, key);
+        String sanitized = builder.toString();
+        String name = RESERVED_LABELS.contains(sanitized) || sanitized.startsWith("__") ? META_DATA_PREFIX + sanitized : sanitized;
+        String result = name;
+        for (int suffix = 2; !labelNames.add(result); suffix++) {
+            result = name + "_" + suffix;
+        }
+        if (!result.equals(sanitized) && renamedKeys.add(key + '\u0000' + result)) {
+            loggerInfo.accept("Meta data key: '" + key + "' collides with another prometheus label and is exposed as: '" + result + "'.");
+        }
+        return result;
+    }
+
+    static void appendLabelName(StringBuilder builder, String name) {
+        if (name.isEmpty()) {
+            builder.append('_');
+            return;
+        }
+        for (int index = 0; index < name.length(); index++) {
+            char next = name.charAt(index);
+            boolean valid = (next >= 'a' && next <= 'z') || (next >= 'A' && next <= 'Z') || next == '_' || (index > 0 && next >= '0' && next <= '9');
+            builder.append(valid ? next : '_');
+        }
+    }
+
+    static void appendLabelValue(StringBuilder builder, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int index = 0; index < value.length(); index++) {
+            char next = value.charAt(index);
+            switch (next) {
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            default:
+                builder.append(next);
+            }
+        }
+    }
+
+    /**
+     * @return The number of series which have been reported so far.
+     */
+    public int getSeries() {
+        return seriesByLabels.size();
+    }
+
+    /**
+     * Write all series in the Prometheus text exposition format. The label
+     * part of every line has been encoded when the series was created, only
+     * the values are encoded while writing.
+     */
+    public void write(OutputStream out) throws IOException {
+        Output output = new Output(out);
+        output.write(INVOCATIONS_HEADER);
+        for (Series current : seriesByLabels.values()) {
+            output.write(INVOCATIONS_PREFIX);
+            output.write(current.labels);
+            output.write(VALUE_SEPARATOR);
+            output.writeLong(current.invocations.sum());
+            output.write('\n');
+        }
+        output.write(DURATIONS_HEADER);
+        for (Series current : seriesByLabels.values()) {
+            for (Histogram histogram : current.histograms.values()) {
+                histogram.write(output);
+            }
+        }
+        output.flush();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Series {
+
+        private final byte[] labels;
+        private final String labelString;
+        private final LongAdder invocations;
+        private final Map<String, Histogram> histograms;
+
+        private Series(String labels) {
+            this.labelString = labels;
+            this.labels = utf8("{" + labels);
+            this.invocations = new LongAdder();
+            this.histograms = new ConcurrentHashMap<>();
+        }
+
+        private Histogram histogram(String timer) {
+            return histograms.computeIfAbsent(timer, ignored -> {
+                StringBuilder labels = new StringBuilder();
+                labels.append('{')
+                      .append(labelString)
+                      .append(",timer=\"");
+                appendLabelValue(labels, timer);
+                labels.append('"');
+                return new Histogram(utf8(labels.toString()));
+            });
+        }
+    }
+
+    private static class Histogram {
+
+        private final byte[] labels;
+        private final AtomicLongArray buckets;
+        private final LongAdder sumMillis;
+        private final LongAdder count;
+
+        private Histogram(byte[] labels) {
+            this.labels = labels;
+            this.buckets = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+            this.sumMillis = new LongAdder();
+            this.count = new LongAdder();
+        }
+
+        private void record(List<Duration> durations) {
+            for (Duration duration : durations) {
+                long millis = duration.toMillis();
+                int bucket = 0;
+                while (bucket < BUCKET_MILLIS.length && millis > BUCKET_MILLIS[bucket]) {
+                    bucket++;
+                }
+                buckets.incrementAndGet(bucket);
+                sumMillis.add(millis);
+                count.increment();
+            }
+        }
+
+        private void write(Output output) throws IOException {
+            long cumulative = 0;
+            for (int index = 0; index < BUCKET_SUFFIXES.length; index++) {
+                cumulative += buckets.get(index);
+                output.write(BUCKET_PREFIX);
+                output.write(labels);
+                output.write(BUCKET_SUFFIXES[index]);
+                output.writeLong(cumulative);
+                output.write('\n');
+            }
+            long millis = sumMillis.sum();
+            output.write(SUM_PREFIX);
+            output.write(labels);
+            output.write(VALUE_SEPARATOR);
+            output.writeLong(millis / 1000);
+            output.write('.');
+            output.write('0' + (int) (millis % 1000 / 100));
+            output.write('0' + (int) (millis % 100 / 10));
+            output.write('0' + (int) (millis % 10));
+            output.write('\n');
+            output.write(COUNT_PREFIX);
+            output.write(labels);
+            output.write(VALUE_SEPARATOR);
+            output.writeLong(count.sum());
+            output.write('\n');
+        }
+    }
+
+    /**
+     * A reusable byte buffer which writes numbers without creating strings.
+     */
+    private static class Output {
+
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int size;
+
+        private Output(OutputStream out) {
+            this.out = out;
+            this.buffer = new byte[64 * 1024];
+        }
+
+        private void write(int value) throws IOException {
+            if (size == buffer.length) {
+                flush();
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            if (size + bytes.length > buffer.length) {
+                flush();
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void writeLong(long value) throws IOException {
+            if (size + 20 > buffer.length) {
+                flush();
+            }
+            int start = size;
+            do {
+                buffer[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int left = start, right = size - 1; left < right; left++, right--) {
+                byte swap = buffer[left];
+                buffer[left] = buffer[right];
+                buffer[right] = swap;
+            }
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A status reporter which adds the request data to the cumulative values of a
+ * {@link PrometheusRegistry} instead of sending it. The registry is served by
+ * an embedded HTTP server so Prometheus can scrape the values whenever it
+ * wants.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class PrometheusStatusReporter implements StatusReporter {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PrometheusRegistry registry;
+
+    public PrometheusStatusReporter(PrometheusRegistry registry) {
+        this.registry = Objects.requireNonNull(registry);
+    }
+
+    /**
+     * Create and start an endpoint which serves the cumulative values of all
+     * reporters created by the endpoint.
+     */
+    public static Endpoint endpoint(InetSocketAddress address, String path, String hostId, String instanceId, Consumer<String> loggerInfo) {
+        return new Endpoint(address, path, new PrometheusRegistry(hostId, instanceId, loggerInfo), loggerInfo);
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        registry.record(resource);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public static class Endpoint implements Function<Instant, StatusReporter>, Closeable {
+
+        private final PrometheusRegistry registry;
+        private final ExecutorService executor;
+        private final HttpServer server;
+
+        private Endpoint(InetSocketAddress address, String path, PrometheusRegistry registry, Consumer<String> loggerInfo) {
+            this.registry = registry;
+            try {
+                this.server = HttpServer.create(address, 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start prometheus endpoint on: '" + address + "'!", e);
+            }
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "request-tagging-prometheus");
+                thread.setDaemon(true);
+                return thread;
+            });
+            server.createContext(path, this::handle);
+            server.setExecutor(executor);
+            server.start();
+            loggerInfo.accept("Serving request tagging data for prometheus on: '" + server.getAddress() + path + "'.");
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                boolean gzip = exchange.getRequestHeaders()
+                                       .getOrDefault("Accept-Encoding", Collections.emptyList())
+                                       .stream()
+                                       .anyMatch(value -> value.contains("gzip"));
+                exchange.getResponseHeaders()
+                        .set("Content-Type", CONTENT_TYPE);
+                if (gzip) {
+                    exchange.getResponseHeaders()
+                            .set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192) : exchange.getResponseBody()) {
+                    registry.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        @Override
+        public StatusReporter apply(Instant instant) {
+            return new PrometheusStatusReporter(registry);
+        }
+
+        public PrometheusRegistry getRegistry() {
+            return registry;
+        }
+
+        public InetSocketAddress getAddress() {
+            return server.getAddress();
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
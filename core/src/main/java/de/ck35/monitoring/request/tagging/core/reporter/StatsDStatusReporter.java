@@ -0,0 +1,242 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A status reporter which writes request data as StatsD metrics with DogStatsD
+ * tags. Every status code is written as an <code>invocations</code> counter and
+ * every duration as a timing of its timer. The resource name, host, instance,
+ * meta data and status code are written as tags.
+ * <p>
+ * The {@link Transport} packs the written lines into UDP packets up to a
+ * maximum packet size and sends them without waiting for an answer.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class StatsDStatusReporter implements StatusReporter {
+
+    static final String PREFIX = "request_data.";
+
+    private final Optional<String> hostId;
+    private final Optional<String> instanceId;
+    private final Consumer<String> writer;
+
+    public StatsDStatusReporter(String hostId, String instanceId, Consumer<String> writer) {
+        this.hostId = Optional.ofNullable(hostId);
+        this.instanceId = Optional.ofNullable(instanceId);
+        this.writer = Objects.requireNonNull(writer);
+    }
+
+    public static Transport transport(InetSocketAddress address, int maxPacketSize, BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        return new Transport(address, maxPacketSize, reporters);
+    }
+
+    @Override
+    public void accept(Resource resource) {
+        StringBuilder tags = new StringBuilder("|#");
+        writeTag(tags, "resource_name", resource.getName());
+        hostId.ifPresent(id -> writeTag(tags, "host", id));
+        instanceId.ifPresent(id -> writeTag(tags, "instanceId", id));
+        resource.getMetaData()
+                .forEach((key, value) -> writeTag(tags, key, value));
+        int resourceTagsLength = tags.length();
+
+        StringBuilder line = new StringBuilder();
+        resource.getMeasurements()
+                .forEach(measurement -> {
+                    tags.setLength(resourceTagsLength);
+                    writeTag(tags, "statusCodeName", measurement.getStatusCodeName());
+                    line.setLength(0);
+                    line.append(PREFIX)
+                        .append("invocations:")
+                        .append(measurement.getTotalNumberOfInvocations())
+                        .append("|c")
+                        .append(tags);
+                    writer.accept(line.toString());
+                    measurement.getDurations()
+                               .forEach((timer, durations) -> {
+                                   for (Duration duration : durations) {
+                                       line.setLength(0);
+                                       line.append(PREFIX);
+                                       appendEscaped(line, timer, true);
+                                       line.append(':')
+                                           .append(duration.toMillis())
+                                           .append("|ms")
+                                           .append(tags);
+                                       writer.accept(line.toString());
+                                   }
+                               });
+                });
+    }
+
+    private static void writeTag(StringBuilder tags, String key, String value) {
+        if (tags.length() > 2) {
+            tags.append(',');
+        }
+        appendEscaped(tags, key, true);
+        tags.append(':');
+        appendEscaped(tags, value, false);
+    }
+
+    /**
+     * Replace all characters which have a special meaning inside a StatsD line.
+     * A colon is allowed inside tag values.
+     */
+    static void appendEscaped(StringBuilder builder, String value, boolean name) {
+        if (value == null) {
+            return;
+        }
+        for (int index = 0; index < value.length(); index++) {
+            char next = value.charAt(index);
+            switch (next) {
+            case ':':
+                builder.append(name ? '_' : next);
+                break;
+            case '|':
+            case ',':
+            case '#':
+            case '@':
+            case '\n':
+            case '\r':
+                builder.append('_');
+                break;
+            default:
+                builder.append(next);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public static class Transport implements Function<Instant, StatusReporter>, Closeable {
+
+        private final BiFunction<Instant, Consumer<String>, StatusReporter> reporters;
+        private final DatagramChannel channel;
+        private final ByteBuffer packet;
+
+        private final LongAdder packets;
+        private final LongAdder droppedPackets;
+        private final LongAdder droppedLines;
+
+        private Transport(InetSocketAddress address, int maxPacketSize, BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+            if (maxPacketSize < 1) {
+                throw new IllegalArgumentException("Invalid max packet size: '" + maxPacketSize + "'!");
+            }
+            this.reporters = Objects.requireNonNull(reporters);
+            this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+            this.packets = new LongAdder();
+            this.droppedPackets = new LongAdder();
+            this.droppedLines = new LongAdder();
+            try {
+                this.channel = DatagramChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(address);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open StatsD channel to: '" + address + "'!", e);
+            }
+        }
+
+        @Override
+        public StatusReporter apply(Instant instant) {
+            StatusReporter reporter = reporters.apply(instant, this::write);
+            return new StatusReporter() {
+                @Override
+                public void accept(Resource resource) {
+                    reporter.accept(resource);
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        reporter.close();
+                    } finally {
+                        flush();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Append the line to the current packet. The packet is sent first when
+         * the line does not fit into it anymore. A line which is larger than a
+         * packet is dropped.
+         */
+        synchronized void write(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            int separator = packet.position() == 0 ? 0 : 1;
+            if (packet.remaining() < bytes.length + separator) {
+                flush();
+                separator = 0;
+                if (packet.remaining() < bytes.length) {
+                    droppedLines.increment();
+                    return;
+                }
+            }
+            if (separator > 0) {
+                packet.put((byte) '\n');
+            }
+            packet.put(bytes);
+        }
+
+        /**
+         * Send the current packet. The channel is non-blocking so a packet is
+         * dropped when the send buffer of the socket is full. Like every UDP
+         * send this is fire-and-forget, a failed send is only counted.
+         */
+        synchronized void flush() {
+            if (packet.position() == 0) {
+                return;
+            }
+            packet.flip();
+            try {
+                if (channel.write(packet) == 0) {
+                    droppedPackets.increment();
+                } else {
+                    packets.increment();
+                }
+            } catch (IOException e) {
+                droppedPackets.increment();
+            } finally {
+                packet.clear();
+            }
+        }
+
+        public long getPackets() {
+            return packets.sum();
+        }
+
+        public long getDroppedPackets() {
+            return droppedPackets.sum();
+        }
+
+        public long getDroppedLines() {
+            return droppedLines.sum();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close StatsD channel!", e);
+            }
+        }
+    }
+}
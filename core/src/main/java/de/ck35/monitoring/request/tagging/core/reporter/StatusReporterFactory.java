@@ -1,19 +1,30 @@
 package de.ck35.monitoring.request.tagging.core.reporter;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TransferStatistics;
 
 /**
  * Factory which creates the different request tagging status reporters.
@@ -24,10 +35,15 @@ import java.util.function.Function;
 public class StatusReporterFactory {
 
     public enum ReportFormat {
-            INFLUX_DB, ELASTICSEARCH, JSON;
+            INFLUX_DB, ELASTICSEARCH, JSON, JSON_NESTED, BINARY, PROMETHEUS, STATSD, NDJSON;
+    }
+
+    public enum HttpTransport {
+            URL_CONNECTION, NIO;
     }
 
     private Consumer<String> loggerInfo;
+    private BiConsumer<String, Throwable> loggerWarn;
 
     private String hostId;
     private String instanceId;
@@ -44,11 +60,44 @@ public class StatusReporterFactory {
     private int connectionTimeout;
     private int readTimeout;
 
+    private HttpTransport httpTransport;
+    private int keepAliveConnections;
+
+    private boolean gzipEnabled;
+    private int gzipLevel;
+    private Consumer<TransferStatistics> transferStatisticsListener;
+
     private String elasticsearchDocumentType;
     private DateTimeFormatter elasticsearchIndexPrefixTemplate;
+    private int elasticsearchBulkMaxBytes;
+    private int elasticsearchBulkMaxDocuments;
+    private int elasticsearchBulkParallelism;
+    private int elasticsearchBulkPipelineDepth;
+
+    private boolean influxDBAggregateDurations;
+
+    private int prometheusPort;
+    private String prometheusPath;
+
+    private int statsdMaxPacketSize;
+
+    private Path fileDirectory;
+    private long fileMaxSize;
+    private Duration fileRotationInterval;
+    private int fileMaxFiles;
+    private int fileBufferSize;
+
+    private final Map<String, StatusReporterFactory> additionalReporters;
+    private int additionalReporterQueueCapacity;
 
     public StatusReporterFactory() {
         setLoggerInfo(System.out::println);
+        setLoggerWarn((message, throwable) -> {
+            System.out.println(message);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+        });
 
         setReportFormat(ReportFormat.JSON);
 
@@ -61,12 +110,46 @@ public class StatusReporterFactory {
         setConnectionTimeout(5000);
         setReadTimeout(5000);
 
+        setHttpTransport(HttpTransport.URL_CONNECTION);
+        setKeepAliveConnections(2);
+
+        setGzipLevel(Deflater.DEFAULT_COMPRESSION);
+        setTransferStatisticsListener(statistics -> {
+        });
+
         setElasticsearchDocumentType("request_data");
         setElasticsearchIndexPrefixTemplate("YYYYMMdd");
+        setElasticsearchBulkMaxBytes(5 * 1024 * 1024);
+        setElasticsearchBulkMaxDocuments(5000);
+        setElasticsearchBulkParallelism(2);
+        setElasticsearchBulkPipelineDepth(1);
+
+        setPrometheusPort(9464);
+        setPrometheusPath("/metrics");
+
+        setStatsdMaxPacketSize(1432);
+
+        setFileMaxSize(64L * 1024 * 1024);
+        setFileRotationInterval(Duration.ofHours(1));
+        setFileMaxFiles(10);
+        setFileBufferSize(1024 * 1024);
+
+        additionalReporters = new LinkedHashMap<>();
+        setAdditionalReporterQueueCapacity(10000);
     }
 
     public Function<Instant, StatusReporter> build() {
+        if (additionalReporters.isEmpty()) {
+            return buildStatusReporter();
+        }
+        Map<String, Function<Instant, StatusReporter>> reporters = new LinkedHashMap<>();
+        reporters.put("default", buildStatusReporter());
+        additionalReporters.forEach((name, factory) -> reporters.put(name, factory.buildStatusReporter()));
+        loggerInfo.accept("Reporting request tagging data to '" + reporters.size() + "' status reporters: " + reporters.keySet() + ".");
+        return CompositeStatusReporter.transport(reporters, additionalReporterQueueCapacity, loggerWarn);
+    }
 
+    private Function<Instant, StatusReporter> buildStatusReporter() {
         if (hostId == null) {
             try {
                 hostId = InetAddress.getLocalHost()
@@ -76,26 +159,140 @@ public class StatusReporterFactory {
             }
         }
 
+        if (reportFormat == ReportFormat.PROMETHEUS) {
+            return PrometheusStatusReporter.endpoint(new InetSocketAddress(prometheusPort), prometheusPath, hostId, instanceId, loggerInfo);
+        }
         BiFunction<Instant, Consumer<String>, StatusReporter> reporters = reporters();
+        if (fileDirectory != null) {
+            loggerInfo.accept("Writing request tagging data to files in: '" + fileDirectory + "'.");
+            return FileStatusReporter.transport(fileDirectory,
+                                                reportFormat.name()
+                                                            .toLowerCase(Locale.ROOT),
+                                                fileMaxSize,
+                                                fileRotationInterval,
+                                                fileMaxFiles,
+                                                fileBufferSize,
+                                                Clock.systemUTC(),
+                                                loggerWarn,
+                                                reporters);
+        }
         if (sendData) {
-            return HttpStatusReporter.statusReporter(buildURL(), connectionTimeout, readTimeout, reporters);
+            if (reportFormat == ReportFormat.ELASTICSEARCH) {
+                return elasticsearchBulkTransport(reporters);
+            }
+            if (reportFormat == ReportFormat.BINARY) {
+                if (httpTransport == HttpTransport.NIO) {
+                    loggerInfo.accept("NIO transport does not support report format: 'BINARY'. Falling back to HttpURLConnection transport.");
+                }
+                return HttpStatusReporter.binaryStatusReporter(buildURL(),
+                                                               connectionTimeout,
+                                                               readTimeout,
+                                                               gzipEnabled ? Optional.of(gzipLevel) : Optional.empty(),
+                                                               transferStatisticsListener(),
+                                                               (instant, out) -> new BinaryStatusReporter(instant, hostId, instanceId, out));
+            }
+            if (reportFormat == ReportFormat.STATSD) {
+                return StatsDStatusReporter.transport(new InetSocketAddress(hostName, port), statsdMaxPacketSize, reporters);
+            }
+            if (nioTransport()) {
+                return NioHttpStatusReporter.transport(buildURL(),
+                                                       connectionTimeout,
+                                                       readTimeout,
+                                                       keepAliveConnections,
+                                                       gzipEnabled ? Optional.of(gzipLevel) : Optional.empty(),
+                                                       transferStatisticsListener(),
+                                                       reporters);
+            }
+            return HttpStatusReporter.statusReporter(buildURL(),
+                                                     connectionTimeout,
+                                                     readTimeout,
+                                                     gzipEnabled ? Optional.of(gzipLevel) : Optional.empty(),
+                                                     transferStatisticsListener(),
+                                                     reporters);
         } else {
             return LoggingStatusReporter.statusReporter(loggerInfo, reporters);
         }
     }
 
+    private Function<Instant, StatusReporter> elasticsearchBulkTransport(BiFunction<Instant, Consumer<String>, StatusReporter> reporters) {
+        if (nioTransport()) {
+            NioHttpStatusReporter.Transport connections = NioHttpStatusReporter.transport(buildURL(),
+                                                                                          connectionTimeout,
+                                                                                          readTimeout,
+                                                                                          Math.max(keepAliveConnections, elasticsearchBulkParallelism),
+                                                                                          gzipEnabled ? Optional.of(gzipLevel) : Optional.empty(),
+                                                                                          transferStatisticsListener(),
+                                                                                          reporters);
+            return ElasticsearchBulkStatusReporter.transport(elasticsearchBulkMaxBytes,
+                                                             elasticsearchBulkMaxDocuments,
+                                                             elasticsearchBulkParallelism,
+                                                             elasticsearchBulkPipelineDepth,
+                                                             connections::send,
+                                                             connections,
+                                                             reporters);
+        }
+        if (elasticsearchBulkPipelineDepth > 1) {
+            loggerInfo.accept("Elasticsearch bulk request pipelining needs the NIO transport. Sending one bulk request per connection.");
+        }
+        return ElasticsearchBulkStatusReporter.transport(elasticsearchBulkMaxBytes,
+                                                         elasticsearchBulkMaxDocuments,
+                                                         elasticsearchBulkParallelism,
+                                                         HttpStatusReporter.requests(buildURL(),
+                                                                                     connectionTimeout,
+                                                                                     readTimeout,
+                                                                                     gzipEnabled ? Optional.of(gzipLevel) : Optional.empty(),
+                                                                                     transferStatisticsListener()),
+                                                         reporters);
+    }
+
+    /**
+     * @return True if the NIO transport is configured and supports the
+     *         configured protocol.
+     */
+    private boolean nioTransport() {
+        if (httpTransport != HttpTransport.NIO) {
+            return false;
+        }
+        if ("http".equalsIgnoreCase(protocol)) {
+            return true;
+        }
+        loggerInfo.accept("NIO transport does not support protocol: '" + protocol + "'. Falling back to HttpURLConnection transport.");
+        return false;
+    }
+
     private URL buildURL() {
         try {
-            return new URI(protocol, null, hostName, port, pathPart, queryPart, null).toURL();
+            return new URI(protocol, null, hostName, port, pathPart, buildQuery(), null).toURL();
         } catch (NumberFormatException | URISyntaxException | MalformedURLException e) {
             throw new IllegalArgumentException("Can not create url!", e);
         }
     }
 
+    private Consumer<TransferStatistics> transferStatisticsListener() {
+        Consumer<TransferStatistics> listener = transferStatisticsListener;
+        if (gzipEnabled) {
+            Consumer<String> logger = loggerInfo;
+            return statistics -> {
+                logger.accept("Sent request tagging data with " + statistics.getTransferredBytes() + " compressed bytes ("
+                        + statistics.getPayloadBytes() + " bytes uncompressed). Compression took: " + statistics.getCompressionTime() + ".");
+                listener.accept(statistics);
+            };
+        }
+        return listener;
+    }
+
+    private String buildQuery() {
+        if (reportFormat == ReportFormat.INFLUX_DB && influxDBAggregateDurations) {
+            String precision = "precision=" + InfluxDBStatusReporter.Precision.MILLISECONDS.getQueryParameterValue();
+            return queryPart == null ? precision : queryPart + "&" + precision;
+        }
+        return queryPart;
+    }
+
     private BiFunction<Instant, Consumer<String>, StatusReporter> reporters() {
         switch (reportFormat) {
         case INFLUX_DB:
-            return (instant, writer) -> new InfluxDBStatusReporter(instant, hostId, instanceId, writer);
+            return (instant, writer) -> new InfluxDBStatusReporter(instant, hostId, instanceId, writer, influxDBAggregateDurations);
         case ELASTICSEARCH:
             return (instant, writer) -> new ElasticsearchStatusReporter(instant,
                                                                         hostId,
@@ -105,6 +302,14 @@ public class StatusReporterFactory {
                                                                         elasticsearchDocumentType);
         case JSON:
             return (instant, writer) -> new JSONStatusReporter(instant, hostId, instanceId, writer);
+        case JSON_NESTED:
+            return (instant, writer) -> new JSONNestedStatusReporter(instant, hostId, instanceId, writer);
+        case BINARY:
+            return (instant, writer) -> BinaryStatusReporter.base64(instant, hostId, instanceId, writer);
+        case NDJSON:
+            return (instant, writer) -> new NDJSONStatusReporter(instant, hostId, instanceId, writer);
+        case STATSD:
+            return (instant, writer) -> new StatsDStatusReporter(hostId, instanceId, writer);
         default:
             throw new IllegalStateException("Unknown reporting format: '" + reportFormat + "'!");
         }
@@ -114,6 +319,31 @@ public class StatusReporterFactory {
         this.loggerInfo = Objects.requireNonNull(loggerInfo, "Can not set info logger to null.");
     }
 
+    public void setLoggerWarn(BiConsumer<String, Throwable> loggerWarn) {
+        this.loggerWarn = Objects.requireNonNull(loggerWarn, "Can not set warn logger to null.");
+    }
+
+    /**
+     * Create a factory for an additional status reporter which receives the
+     * same data as the status reporter of this factory. Every additional status
+     * reporter runs on its own worker, see {@link CompositeStatusReporter}.
+     *
+     * @param name The unique name of the additional status reporter.
+     * @return The factory of the additional status reporter.
+     */
+    public StatusReporterFactory addAdditionalReporter(String name) {
+        Objects.requireNonNull(name, "Can not add additional reporter without name!");
+        if ("default".equals(name) || additionalReporters.containsKey(name)) {
+            throw new IllegalArgumentException("Additional reporter: '" + name + "' already exists!");
+        }
+        StatusReporterFactory factory = new StatusReporterFactory();
+        factory.setLoggerInfo(loggerInfo);
+        factory.setLoggerWarn(loggerWarn);
+        factory.setTransferStatisticsListener(transferStatisticsListener);
+        additionalReporters.put(name, factory);
+        return factory;
+    }
+
     public void setHostId(String hostId) {
         this.hostId = hostId;
     }
@@ -166,6 +396,29 @@ public class StatusReporterFactory {
         this.readTimeout = readTimeout;
     }
 
+    public void setHttpTransport(HttpTransport httpTransport) {
+        this.httpTransport = Objects.requireNonNull(httpTransport, "Can not set httpTransport to null!");
+    }
+
+    public void setKeepAliveConnections(int keepAliveConnections) {
+        this.keepAliveConnections = keepAliveConnections;
+    }
+
+    public void setGzipEnabled(boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    public void setGzipLevel(int gzipLevel) {
+        if (gzipLevel < Deflater.DEFAULT_COMPRESSION || gzipLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid gzip level: '" + gzipLevel + "'. Expected a value between -1 and 9!");
+        }
+        this.gzipLevel = gzipLevel;
+    }
+
+    public void setTransferStatisticsListener(Consumer<TransferStatistics> transferStatisticsListener) {
+        this.transferStatisticsListener = Objects.requireNonNull(transferStatisticsListener, "Can not set transferStatisticsListener to null!");
+    }
+
     public void setElasticsearchDocumentType(String elasticsearchDocumentType) {
         this.elasticsearchDocumentType = Objects.requireNonNull(elasticsearchDocumentType, "Can not set elasticsearchDocumentType to null!");
     }
@@ -175,4 +428,60 @@ public class StatusReporterFactory {
                                                                  .withZone(ZoneOffset.UTC);
     }
 
-}
\ No newline at end of file
+    public void setElasticsearchBulkMaxBytes(int elasticsearchBulkMaxBytes) {
+        this.elasticsearchBulkMaxBytes = elasticsearchBulkMaxBytes;
+    }
+
+    public void setElasticsearchBulkMaxDocuments(int elasticsearchBulkMaxDocuments) {
+        this.elasticsearchBulkMaxDocuments = elasticsearchBulkMaxDocuments;
+    }
+
+    public void setElasticsearchBulkParallelism(int elasticsearchBulkParallelism) {
+        this.elasticsearchBulkParallelism = elasticsearchBulkParallelism;
+    }
+
+    public void setElasticsearchBulkPipelineDepth(int elasticsearchBulkPipelineDepth) {
+        this.elasticsearchBulkPipelineDepth = elasticsearchBulkPipelineDepth;
+    }
+
+    public void setInfluxDBAggregateDurations(boolean influxDBAggregateDurations) {
+        this.influxDBAggregateDurations = influxDBAggregateDurations;
+    }
+
+    public void setPrometheusPort(int prometheusPort) {
+        this.prometheusPort = prometheusPort;
+    }
+
+    public void setPrometheusPath(String prometheusPath) {
+        this.prometheusPath = Objects.requireNonNull(prometheusPath, "Can not set prometheusPath to null!");
+    }
+
+    public void setStatsdMaxPacketSize(int statsdMaxPacketSize) {
+        this.statsdMaxPacketSize = statsdMaxPacketSize;
+    }
+
+    public void setAdditionalReporterQueueCapacity(int additionalReporterQueueCapacity) {
+        this.additionalReporterQueueCapacity = additionalReporterQueueCapacity;
+    }
+
+    public void setFileDirectory(Path fileDirectory) {
+        this.fileDirectory = fileDirectory;
+    }
+
+    public void setFileMaxSize(long fileMaxSize) {
+        this.fileMaxSize = fileMaxSize;
+    }
+
+    public void setFileRotationInterval(Duration fileRotationInterval) {
+        this.fileRotationInterval = Objects.requireNonNull(fileRotationInterval, "Can not set fileRotationInterval to null!");
+    }
+
+    public void setFileMaxFiles(int fileMaxFiles) {
+        this.fileMaxFiles = fileMaxFiles;
+    }
+
+    public void setFileBufferSize(int fileBufferSize) {
+        this.fileBufferSize = fileBufferSize;
+    }
+
+}
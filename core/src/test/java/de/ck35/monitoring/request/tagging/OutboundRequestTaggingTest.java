@@ -0,0 +1,154 @@
+package de.ck35.monitoring.request.tagging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus;
+
+public class OutboundRequestTaggingTest {
+
+    private HttpServer server;
+    private AtomicReference<String> requestId;
+    private DefaultRequestTaggingStatus status;
+
+    @Before
+    public void before() throws IOException {
+        requestId = new AtomicReference<>();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requestId.set(exchange.getRequestHeaders()
+                                  .getFirst("X-Request-ID"));
+            String path = exchange.getRequestURI()
+                                  .getPath();
+            int responseCode = path.endsWith("/missing") ? 404 : path.endsWith("/error") ? 500 : 200;
+            exchange.sendResponseHeaders(responseCode, -1);
+            exchange.close();
+        });
+        server.start();
+        status = new DefaultRequestTaggingStatus(consumed -> {
+        });
+        status.withRequestId("X-Request-ID", "my-request");
+        RequestTagging.init(status);
+    }
+
+    @After
+    public void after() {
+        RequestTagging.remove();
+        server.stop(0);
+    }
+
+    @Test
+    public void testExchange() throws IOException {
+        int responseCode = OutboundRequestTagging.exchange(connection("/ok"), HttpURLConnection::getResponseCode);
+        assertEquals(200, responseCode);
+        assertEquals("my-request", requestId.get());
+        assertEquals("2xx", status.getMetaData()
+                                  .get("downstream_localhost_status"));
+        assertTrue(durations().containsKey("downstream_localhost"));
+    }
+
+    @Test
+    public void testExchangeWithClientError() throws IOException {
+        OutboundRequestTagging.exchange(connection("/missing"), HttpURLConnection::getResponseCode);
+        assertEquals("4xx", status.getMetaData()
+                                  .get("downstream_localhost_status"));
+    }
+
+    @Test
+    public void testExchangeWithErrorWhileReading() throws IOException {
+        try {
+            OutboundRequestTagging.exchange(connection("/error"), HttpURLConnection::getInputStream);
+            fail();
+        } catch (IOException e) {
+            assertEquals("5xx", status.getMetaData()
+                                      .get("downstream_localhost_status"));
+        }
+        try {
+            OutboundRequestTagging.exchange(connection("/missing"), HttpURLConnection::getInputStream);
+            fail();
+        } catch (IOException e) {
+            assertEquals("4xx", status.getMetaData()
+                                      .get("downstream_localhost_status"));
+        }
+    }
+
+    @Test
+    public void testRepeatedCallsAreAccumulated() throws IOException {
+        Instant start = Instant.ofEpochSecond(0);
+        AtomicInteger ticks = new AtomicInteger();
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenAnswer(invocation -> start.plusSeconds(ticks.getAndIncrement()));
+        status = new DefaultRequestTaggingStatus(consumed -> {
+        }, value -> value, clock);
+        RequestTagging.init(status);
+
+        OutboundRequestTagging.exchange(connection("/ok"), HttpURLConnection::getResponseCode);
+        OutboundRequestTagging.exchange(connection("/ok"), HttpURLConnection::getResponseCode);
+        assertEquals("2", status.getMetaData()
+                                .get("downstream_localhost_calls"));
+        assertEquals(Duration.ofSeconds(2), durations().get("downstream_localhost"));
+    }
+
+    @Test
+    public void testFailedCall() {
+        try {
+            OutboundRequestTagging.call("db.example.com:5432", () -> {
+                throw new IOException("Connection refused");
+            }, (InputStream result) -> 200);
+            fail();
+        } catch (IOException e) {
+            assertEquals("failed", status.getMetaData()
+                                         .get("downstream_db_example_com_5432_status"));
+            assertTrue(durations().containsKey("downstream_db_example_com_5432"));
+        }
+    }
+
+    @Test
+    public void testWithoutStatus() throws IOException {
+        RequestTagging.remove();
+        assertEquals(200, (int) OutboundRequestTagging.exchange(connection("/ok"), HttpURLConnection::getResponseCode));
+        assertEquals(null, requestId.get());
+    }
+
+    @Test
+    public void testStatusClass() {
+        assertEquals("1xx", OutboundRequestTagging.statusClass(100));
+        assertEquals("3xx", OutboundRequestTagging.statusClass(304));
+        assertEquals("5xx", OutboundRequestTagging.statusClass(503));
+        assertEquals("failed", OutboundRequestTagging.statusClass(-1));
+    }
+
+    private Map<String, Duration> durations() {
+        Map<String, Duration> result = new HashMap<>();
+        status.visitDurations(result::put);
+        return result;
+    }
+
+    private HttpURLConnection connection(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getAddress()
+                                                                       .getPort()
+                                           + path).openConnection();
+    }
+}
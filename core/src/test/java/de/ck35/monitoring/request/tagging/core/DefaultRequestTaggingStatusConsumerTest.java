@@ -2,6 +2,7 @@ package de.ck35.monitoring.request.tagging.core;
 
 import static de.ck35.monitoring.request.tagging.core.ExpectedMeasurement.measurement;
 import static de.ck35.monitoring.request.tagging.core.ExpectedResource.resource;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -15,6 +16,13 @@ import static org.mockito.Mockito.when;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -23,6 +31,9 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 import de.ck35.monitoring.request.tagging.RequestTagging;
 import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatusConsumer.MetaDataPair;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
@@ -247,4 +258,304 @@ public class DefaultRequestTaggingStatusConsumerTest {
         assertTrue(pair.toString()
                        .contains("value=a1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMemoryBudgetExceeded() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        AtomicInteger exceeded = new AtomicInteger();
+        consumer.setMemoryBudget(2_000);
+        consumer.setMemoryBudgetExceededHandler(exceeded::incrementAndGet);
+
+        for (int index = 0; index < 20; index++) {
+            String value = "value-" + index;
+            new RequestTaggingRunnable(() -> {
+                RequestTagging.get()
+                              .withMetaData("key", value);
+            }, new DefaultRequestTaggingStatus(consumer)).run();
+        }
+        assertEquals(1, exceeded.get());
+        assertTrue(consumer.getEstimatedTreeSize() > 2_000);
+
+        consumer.report(reporter);
+        assertEquals(0, consumer.getEstimatedTreeSize());
+
+        for (int index = 0; index < 20; index++) {
+            String value = "value-" + index;
+            new RequestTaggingRunnable(() -> {
+                RequestTagging.get()
+                              .withMetaData("key", value);
+            }, new DefaultRequestTaggingStatus(consumer)).run();
+        }
+        assertEquals(2, exceeded.get());
+    }
+
+    @Test
+    public void testEstimatedTreeSizeOnlyGrowsWithNewData() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        consumer.setMaxDurationsPerNode(2);
+        Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+        long[] sizes = new long[4];
+        for (int index = 0; index < sizes.length; index++) {
+            DefaultRequestTaggingStatus status = new DefaultRequestTaggingStatus(consumer, x -> x, clock);
+            new RequestTaggingRunnable(() -> {
+                RequestTagging.get()
+                              .withMetaData("key", "value")
+                              .startTimer("timer")
+                              .stopTimer("timer");
+            }, status).run();
+            sizes[index] = consumer.getEstimatedTreeSize();
+        }
+        assertTrue(sizes[1] > sizes[0]);
+        assertEquals(0, (sizes[1] - sizes[0]) % DefaultRequestTaggingStatusConsumer.DURATION_SIZE);
+        assertEquals(sizes[1], sizes[2]);
+        assertEquals(sizes[2], sizes[3]);
+    }
+
+    @Test
+    public void testSampledInvocationsAreWeighted() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        consumer.setSampleRate(0.5);
+        consumer.setResourceSampleRates(ImmutableMap.of("sampled", 0.2));
+
+        for (int index = 0; index < 100_000; index++) {
+            if (!consumer.sample()) {
+                continue;
+            }
+            String resourceName = index % 2 == 0 ? "sampled" : "default";
+            new RequestTaggingRunnable(() -> {
+                RequestTagging.get()
+                              .withResourceName(resourceName);
+            }, new DefaultRequestTaggingStatus(consumer)).run();
+        }
+        consumer.report(reporter);
+        verify(reporter, times(2)).accept(resourceCaptor.capture());
+
+        Map<String, Resource> resources = new HashMap<>();
+        resourceCaptor.getAllValues()
+                      .forEach(resource -> resources.put(resource.getName(), resource));
+        assertEquals("0.5", resources.get("default")
+                                     .getMetaData()
+                                     .get(DefaultRequestTaggingStatusConsumer.SAMPLE_RATE_KEY));
+        assertEquals("0.1", resources.get("sampled")
+                                     .getMetaData()
+                                     .get(DefaultRequestTaggingStatusConsumer.SAMPLE_RATE_KEY));
+        assertEquals(50_000, resources.get("default")
+                                      .getMeasurements()
+                                      .get(0)
+                                      .getTotalNumberOfInvocations(),
+                     2_500);
+        assertEquals(50_000, resources.get("sampled")
+                                      .getMeasurements()
+                                      .get(0)
+                                      .getTotalNumberOfInvocations(),
+                     5_000);
+    }
+
+    @Test
+    public void testSampleRateChangesWithNextInterval() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        new RequestTaggingRunnable(() -> {
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+        consumer.setSampleRate(0.5);
+        assertEquals(0.5, consumer.getSampleRate(), 0);
+        assertTrue(consumer.sample());
+
+        consumer.report(reporter);
+        verify(reporter).accept(resourceCaptor.capture());
+        assertEquals(1, resourceCaptor.getValue()
+                                      .getMeasurements()
+                                      .get(0)
+                                      .getTotalNumberOfInvocations());
+        assertFalse(resourceCaptor.getValue()
+                                  .getMetaData()
+                                  .containsKey(DefaultRequestTaggingStatusConsumer.SAMPLE_RATE_KEY));
+
+        new RequestTaggingRunnable(() -> {
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+        consumer.report(reporter);
+        verify(reporter, times(2)).accept(resourceCaptor.capture());
+        assertEquals(2, resourceCaptor.getValue()
+                                      .getMeasurements()
+                                      .get(0)
+                                      .getTotalNumberOfInvocations());
+        assertEquals("0.5", resourceCaptor.getValue()
+                                          .getMetaData()
+                                          .get(DefaultRequestTaggingStatusConsumer.SAMPLE_RATE_KEY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate() {
+        defaultRequestTaggingStatusConsumer().setSampleRate(0);
+    }
+
+    @Test
+    public void testSlowRequestDurationsReplaceFastOnes() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        consumer.setMaxDurationsPerNode(3);
+        consumer.setSlowRequestThreshold(Duration.ofMillis(100));
+        SteppingClock clock = new SteppingClock();
+
+        clock.step = Duration.ofMillis(10);
+        for (int index = 0; index < 5; index++) {
+            new RequestTaggingRunnable(() -> {
+            }, new DefaultRequestTaggingStatus(consumer, x -> x, clock)).run();
+        }
+        clock.step = Duration.ofMillis(200);
+        for (int index = 0; index < 2; index++) {
+            new RequestTaggingRunnable(() -> {
+            }, new DefaultRequestTaggingStatus(consumer, x -> x, clock)).run();
+        }
+
+        consumer.report(reporter);
+        verify(reporter).accept(resourceCaptor.capture());
+        assertEquals(ImmutableList.of(Duration.ofMillis(10), Duration.ofMillis(200), Duration.ofMillis(200)),
+                     resourceCaptor.getValue()
+                                   .getMeasurements()
+                                   .get(0)
+                                   .getDurations()
+                                   .get("total_request_duration"));
+    }
+
+    @Test
+    public void testFastSuccessDurationsAreSampled() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        consumer.setMaxDurationsPerNode(10);
+        consumer.setResourceSlowRequestThresholds(ImmutableMap.of("default", Duration.ofMillis(100)));
+        consumer.setFastDurationSampleRate(0);
+        SteppingClock clock = new SteppingClock();
+
+        clock.step = Duration.ofMillis(10);
+        new RequestTaggingRunnable(() -> {
+        }, new DefaultRequestTaggingStatus(consumer, x -> x, clock)).run();
+        new RequestTaggingRunnable(() -> {
+            RequestTagging.get()
+                          .clientError();
+        }, new DefaultRequestTaggingStatus(consumer, x -> x, clock)).run();
+        clock.step = Duration.ofMillis(200);
+        new RequestTaggingRunnable(() -> {
+        }, new DefaultRequestTaggingStatus(consumer, x -> x, clock)).run();
+
+        consumer.report(reporter);
+        verify(reporter).accept(resourceCaptor.capture());
+        Map<String, List<Duration>> durations = new HashMap<>();
+        resourceCaptor.getValue()
+                      .getMeasurements()
+                      .forEach(measurement -> durations.put(measurement.getStatusCodeName(), measurement.getDurations()
+                                                                                                        .get("total_request_duration")));
+        assertEquals(ImmutableList.of(Duration.ofMillis(200)), durations.get("SUCCESS"));
+        assertEquals(ImmutableList.of(Duration.ofMillis(10)), durations.get("CLIENT_ERROR"));
+    }
+
+    @Test
+    public void testSnapshotDoesNotResetData() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        consumer.setMaxDurationsPerNode(10);
+        new RequestTaggingRunnable(() -> {
+            RequestTagging.get()
+                          .withResourceName("a");
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+        new RequestTaggingRunnable(() -> {
+            RequestTagging.get()
+                          .withResourceName("a")
+                          .serverError();
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+        assertEquals(ImmutableMap.of("a", 2L), consumer.getSeriesCounts());
+
+        consumer.snapshot(reporter);
+        consumer.report(reporter);
+        verify(reporter, times(2)).accept(resourceCaptor.capture());
+        List<Resource> resources = resourceCaptor.getAllValues();
+        assertEquals(2, resources.get(0)
+                                 .getMeasurements()
+                                 .size());
+        assertEquals(resources.get(0)
+                              .getMeasurements()
+                              .size(),
+                     resources.get(1)
+                              .getMeasurements()
+                              .size());
+        assertEquals(1, resources.get(1)
+                                 .getMeasurements()
+                                 .get(0)
+                                 .getDurations()
+                                 .get("total_request_duration")
+                                 .size());
+
+        reset(reporter);
+        consumer.report(reporter);
+        verifyZeroInteractions(reporter);
+    }
+
+    @Test
+    public void testSnapshotStreamDoesNotBlockWriters() {
+        DefaultRequestTaggingStatusConsumer consumer = defaultRequestTaggingStatusConsumer();
+        new RequestTaggingRunnable(() -> {
+            RequestTagging.get()
+                          .withResourceName("a")
+                          .withMetaData("key", "value");
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+        new RequestTaggingRunnable(() -> {
+            RequestTagging.get()
+                          .withResourceName("b");
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+
+        Iterator<Resource> snapshot = consumer.snapshot()
+                                              .iterator();
+        assertTrue(snapshot.hasNext());
+        snapshot.next();
+        new RequestTaggingRunnable(() -> {
+            RequestTagging.get()
+                          .withResourceName("b");
+        }, new DefaultRequestTaggingStatus(consumer)).run();
+        while (snapshot.hasNext()) {
+            snapshot.next();
+        }
+
+        Map<String, Long> invocations = new HashMap<>();
+        consumer.snapshot()
+                .forEach(resource -> invocations.put(resource.getName(), resource.getMeasurements()
+                                                                                 .get(0)
+                                                                                 .getTotalNumberOfInvocations()));
+        assertEquals(ImmutableMap.of("a", 1L, "b", 2L), invocations);
+
+        consumer.report(reporter);
+        verify(reporter, times(2)).accept(resourceCaptor.capture());
+        assertEquals(2L, resourceCaptor.getAllValues()
+                                       .stream()
+                                       .filter(resource -> resource.getName()
+                                                                   .equals("b"))
+                                       .findFirst()
+                                       .get()
+                                       .getMeasurements()
+                                       .get(0)
+                                       .getTotalNumberOfInvocations());
+        assertEquals(0, consumer.snapshot()
+                                .count());
+    }
+
+    private static class SteppingClock extends Clock {
+
+        private Instant instant = Instant.EPOCH;
+        private Duration step = Duration.ZERO;
+        private boolean started;
+
+        @Override
+        public Instant instant() {
+            if (started) {
+                instant = instant.plus(step);
+            }
+            started = !started;
+            return instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
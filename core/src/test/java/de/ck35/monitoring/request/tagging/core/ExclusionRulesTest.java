@@ -0,0 +1,68 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ExclusionRulesTest {
+
+    private static final Function<String, String> NO_HEADERS = name -> null;
+
+    private final ExclusionRules rules = ExclusionRules.compile(ImmutableList.of("/health", "/static/", "/stat"),
+                                                                ImmutableList.of("options"),
+                                                                ImmutableList.of("X-Health-Check", "User-Agent=kube-probe/1.18"));
+
+    @Test
+    public void testPathPrefixes() {
+        assertTrue(rules.isExcluded("/health", 0, "GET", NO_HEADERS));
+        assertTrue(rules.isExcluded("/healthz", 0, "GET", NO_HEADERS));
+        assertTrue(rules.isExcluded("/static/app.js", 0, "GET", NO_HEADERS));
+        assertTrue(rules.isExcluded("/stats", 0, "GET", NO_HEADERS));
+        assertFalse(rules.isExcluded("/sta", 0, "GET", NO_HEADERS));
+        assertFalse(rules.isExcluded("/users/health", 0, "GET", NO_HEADERS));
+        assertFalse(rules.isExcluded(null, 0, "GET", NO_HEADERS));
+    }
+
+    @Test
+    public void testPathPrefixesBehindContextPath() {
+        String requestUri = "/shop/health";
+        assertTrue(rules.isExcluded(requestUri, RouteTemplates.pathStart(requestUri, "/shop"), "GET", NO_HEADERS));
+        assertFalse(rules.isExcluded(requestUri, 0, "GET", NO_HEADERS));
+    }
+
+    @Test
+    public void testMethods() {
+        assertTrue(rules.isExcluded("/users", 0, "OPTIONS", NO_HEADERS));
+        assertFalse(rules.isExcluded("/users", 0, "POST", NO_HEADERS));
+        assertFalse(rules.isExcluded("/users", 0, null, NO_HEADERS));
+    }
+
+    @Test
+    public void testHeaders() {
+        Map<String, String> healthCheck = ImmutableMap.of("X-Health-Check", "");
+        Map<String, String> probe = ImmutableMap.of("User-Agent", "kube-probe/1.18");
+        Map<String, String> browser = ImmutableMap.of("User-Agent", "Mozilla/5.0");
+        assertTrue(rules.isExcluded("/users", 0, "GET", healthCheck::get));
+        assertTrue(rules.isExcluded("/users", 0, "GET", probe::get));
+        assertFalse(rules.isExcluded("/users", 0, "GET", browser::get));
+    }
+
+    @Test
+    public void testNone() {
+        assertTrue(ExclusionRules.none()
+                                 .isEmpty());
+        assertFalse(rules.isEmpty());
+        assertFalse(ExclusionRules.none()
+                                  .isExcluded("/health", 0, "OPTIONS", NO_HEADERS));
+        assertFalse(ExclusionRules.compile(Collections.emptyList(), Collections.emptyList(), Collections.emptyList())
+                                  .isExcluded("/health", 0, "GET", NO_HEADERS));
+    }
+}
@@ -0,0 +1,114 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TransferStatistics;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class InternalMetricsTest {
+
+    private static Map<String, Long> report(InternalMetrics metrics) {
+        Map<String, Long> result = new HashMap<>();
+        metrics.report(resource -> {
+            assertEquals(InternalMetrics.RESOURCE_NAME, resource.getName());
+            Measurement measurement = resource.getMeasurements()
+                                              .get(0);
+            String metric = resource.getMetaData()
+                                    .get(InternalMetrics.METRIC_KEY);
+            result.put(metric, measurement.getTotalNumberOfInvocations());
+            measurement.getDurations()
+                       .forEach((key, durations) -> result.put(metric + "_" + key, durations.get(0)
+                                                                                    .toNanos()));
+        });
+        return result;
+    }
+
+    @Test
+    public void testReportAndReset() {
+        InternalMetrics metrics = new InternalMetrics();
+        for (int index = 0; index < 98; index++) {
+            metrics.accepted(100);
+        }
+        metrics.accepted(1_000);
+        metrics.accepted(5_000);
+        metrics.nodeCreated();
+        metrics.seriesCreated();
+        metrics.seriesCreated();
+        metrics.durationDropped();
+        metrics.swapped(10);
+        metrics.reported(20);
+        metrics.sent(30);
+        metrics.sendFailed();
+        metrics.transferred(new TransferStatistics(100, 50, true, Duration.ZERO));
+
+        Map<String, Long> values = report(metrics);
+        assertEquals(Long.valueOf(100), values.get("accepted"));
+        assertEquals(Long.valueOf(127), values.get("accepted_latency_p50"));
+        assertEquals(Long.valueOf(1_023), values.get("accepted_latency_p99"));
+        assertEquals(Long.valueOf(5_000), values.get("accepted_latency_max"));
+        assertEquals(Long.valueOf(1), values.get("nodes"));
+        assertEquals(Long.valueOf(2), values.get("series"));
+        assertEquals(Long.valueOf(1), values.get("dropped_durations"));
+        assertEquals(Long.valueOf(10), values.get("swap_pause_nanos"));
+        assertEquals(Long.valueOf(20), values.get("report_nanos"));
+        assertEquals(Long.valueOf(30), values.get("send_nanos"));
+        assertEquals(Long.valueOf(1), values.get("send_failures"));
+        assertEquals(Long.valueOf(50), values.get("bytes_sent"));
+
+        Map<String, Long> empty = report(metrics);
+        assertEquals(12, values.size());
+        assertEquals(9, empty.size());
+        empty.values()
+             .forEach(value -> assertEquals(Long.valueOf(0), value));
+    }
+
+    @Test
+    public void testLatenciesAreNoCounters() {
+        InternalMetrics metrics = new InternalMetrics();
+        metrics.accepted(100);
+        List<Resource> resources = new ArrayList<>();
+        metrics.report(resources::add);
+        Measurement accepted = resources.get(0)
+                                        .getMeasurements()
+                                        .get(0);
+        assertEquals("accepted", resources.get(0)
+                                          .getMetaData()
+                                          .get(InternalMetrics.METRIC_KEY));
+        assertEquals(1, accepted.getTotalNumberOfInvocations());
+        assertEquals(Collections.singletonList(Duration.ofNanos(100)), accepted.getDurations()
+                                                                              .get("latency_max"));
+    }
+
+    @Test
+    public void testCollectedByStatusConsumer() {
+        InternalMetrics metrics = new InternalMetrics();
+        DefaultRequestTaggingStatusConsumer consumer = new DefaultRequestTaggingStatusConsumer();
+        consumer.setInternalMetrics(metrics);
+        consumer.setMaxDurationsPerNode(1);
+        for (int index = 0; index < 3; index++) {
+            new RequestTaggingRunnable(() -> {
+                RequestTagging.get()
+                              .withMetaData("key", "value");
+            }, new DefaultRequestTaggingStatus(consumer)).run();
+        }
+        consumer.report((Resource resource) -> {
+        });
+
+        Map<String, Long> values = report(metrics);
+        assertEquals(Long.valueOf(3), values.get("accepted"));
+        assertEquals(Long.valueOf(2), values.get("nodes"));
+        assertEquals(Long.valueOf(1), values.get("series"));
+        assertEquals(Long.valueOf(2), values.get("dropped_durations"));
+    }
+}
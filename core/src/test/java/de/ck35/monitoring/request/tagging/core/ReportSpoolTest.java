@@ -0,0 +1,167 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.Report;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class ReportSpoolTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportSpoolTest.class);
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Report report(int second) {
+        Measurement measurement = new Measurement("SUCCESS", 2, ImmutableMap.of("total_request_duration", ImmutableList.of(Duration.ofMillis(10), Duration.ofMillis(11))));
+        Resource resource = new Resource("resource-" + second, ImmutableSortedMap.of("key", "value"), ImmutableList.of(measurement));
+        return new Report(Instant.ofEpochSecond(second), Collections.singletonList(resource));
+    }
+
+    private ReportSpool spool(Path directory, int segmentSize, long maxSize) {
+        return new ReportSpool(directory, segmentSize, maxSize, LOG::info);
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        ReportCodec codec = new ReportCodec();
+        Report report = report(1);
+        assertEquals(report.toString(), codec.decode(codec.encode(report))
+                                             .toString());
+    }
+
+    @Test
+    public void testAcknowledgedReportIsNotReplayed() throws IOException {
+        Path directory = folder.newFolder()
+                               .toPath();
+        try (ReportSpool spool = spool(directory, 1024, 4096)) {
+            Report report = report(1);
+            assertTrue(spool.append(report));
+            assertEquals(1, spool.getPendingReports());
+            spool.acknowledge(report);
+            assertEquals(0, spool.getPendingReports());
+            assertFalse(spool.nextReplay()
+                             .isPresent());
+        }
+        try (ReportSpool spool = spool(directory, 1024, 4096)) {
+            assertFalse(spool.hasReplayableReports());
+        }
+    }
+
+    @Test
+    public void testReleasedReportIsReplayed() throws IOException {
+        try (ReportSpool spool = spool(folder.newFolder()
+                                             .toPath(),
+                                       1024, 4096)) {
+            Report report = report(1);
+            spool.append(report);
+            spool.release(report);
+            Report replayed = spool.nextReplay()
+                                   .get();
+            assertEquals(report.toString(), replayed.toString());
+            spool.acknowledge(replayed);
+            assertEquals(0, spool.getPendingReports());
+        }
+    }
+
+    @Test
+    public void testFailedReplayIsReplayedBeforeNewerReports() throws IOException {
+        try (ReportSpool spool = spool(folder.newFolder()
+                                             .toPath(),
+                                       1024, 4096)) {
+            Report first = report(1);
+            Report second = report(2);
+            spool.append(first);
+            spool.append(second);
+            spool.release(first);
+            spool.release(second);
+            Report replayed = spool.nextReplay()
+                                   .get();
+            assertEquals(Instant.ofEpochSecond(1), replayed.getInstant());
+            spool.release(replayed);
+            assertEquals(Instant.ofEpochSecond(1), spool.nextReplay()
+                                                        .get()
+                                                        .getInstant());
+        }
+    }
+
+    @Test
+    public void testAppendAfterClose() throws IOException {
+        Path directory = folder.newFolder()
+                               .toPath();
+        ReportSpool spool = spool(directory, 1024, 4096);
+        Report report = report(1);
+        spool.append(report);
+        spool.close();
+        assertFalse(spool.append(report(2)));
+        spool.acknowledge(report);
+        try (ReportSpool reopened = spool(directory, 1024, 4096)) {
+            assertEquals(1, reopened.getPendingReports());
+        }
+    }
+
+    @Test
+    public void testUnsentReportsSurviveRestart() throws IOException {
+        Path directory = folder.newFolder()
+                               .toPath();
+        try (ReportSpool spool = spool(directory, 1024, 4096)) {
+            spool.append(report(1));
+            spool.append(report(2));
+            spool.acknowledge(report(3));
+        }
+        try (ReportSpool spool = spool(directory, 1024, 4096)) {
+            assertEquals(2, spool.getPendingReports());
+            assertEquals(Instant.ofEpochSecond(1), spool.nextReplay()
+                                                        .get()
+                                                        .getInstant());
+            assertEquals(Instant.ofEpochSecond(2), spool.nextReplay()
+                                                        .get()
+                                                        .getInstant());
+            assertFalse(spool.nextReplay()
+                             .isPresent());
+        }
+    }
+
+    @Test
+    public void testEvictOldestSegment() throws IOException {
+        int recordSize = new ReportCodec().encode(report(1)).length + 5;
+        try (ReportSpool spool = spool(folder.newFolder()
+                                             .toPath(),
+                                       recordSize, 2L * recordSize)) {
+            spool.append(report(1));
+            spool.append(report(2));
+            spool.append(report(3));
+            assertEquals(1, spool.getEvictedReports());
+            assertEquals(2, spool.getPendingReports());
+            assertEquals(2L * recordSize, spool.getSize());
+        }
+    }
+
+    @Test
+    public void testOversizedReportIsNotSpooled() throws IOException {
+        try (ReportSpool spool = spool(folder.newFolder()
+                                             .toPath(),
+                                       16, 16)) {
+            assertFalse(spool.append(report(1)));
+            assertEquals(0, spool.getPendingReports());
+        }
+    }
+}
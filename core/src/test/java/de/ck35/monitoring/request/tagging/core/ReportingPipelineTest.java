@@ -0,0 +1,225 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.DropPolicy;
+import de.ck35.monitoring.request.tagging.core.ReportingPipeline.Report;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class ReportingPipelineTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportingPipelineTest.class);
+
+    private static Report report(int second) {
+        Resource resource = new Resource("resource-" + second, null, ImmutableList.of(new Measurement("SUCCESS", 1, null)));
+        return new Report(Instant.ofEpochSecond(second), Collections.singletonList(resource));
+    }
+
+    private static ReportingPipeline pipeline(Function<Instant, StatusReporter> reporters, int capacity, int maxRetries, DropPolicy dropPolicy) {
+        return new ReportingPipeline(ReportingPipeline.sender(reporters), capacity, 1, maxRetries, Duration.ofMillis(1), dropPolicy, report -> {
+        }, LOG::warn);
+    }
+
+    @Test
+    public void testSendReports() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        try (ReportingPipeline pipeline = pipeline(instant -> resource -> {
+            sent.add(instant.getEpochSecond() + ":" + resource.getName());
+            latch.countDown();
+        }, 2, 0, DropPolicy.DROP_OLDEST)) {
+            assertTrue(pipeline.submit(report(1)));
+            assertTrue(pipeline.submit(report(2)));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(ImmutableList.of("1:resource-1", "2:resource-2"), sent);
+            assertEquals(2, pipeline.getSubmittedReports());
+        }
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        try (ReportingPipeline pipeline = pipeline(instant -> new StatusReporter() {
+            @Override
+            public void accept(Resource resource) {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new RuntimeException("test");
+                }
+            }
+            @Override
+            public void close() {
+                if (attempts.get() >= 3) {
+                    latch.countDown();
+                }
+            }
+        }, 1, 3, DropPolicy.DROP_OLDEST)) {
+            pipeline.submit(report(1));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            waitFor(() -> pipeline.getSentReports() == 1);
+            assertEquals(2, pipeline.getRetries());
+            assertEquals(0, pipeline.getFailedReports());
+        }
+    }
+
+    @Test
+    public void testFailAfterMaxRetries() throws InterruptedException {
+        try (ReportingPipeline pipeline = pipeline(instant -> resource -> {
+            throw new RuntimeException("test");
+        }, 1, 2, DropPolicy.DROP_OLDEST)) {
+            pipeline.submit(report(1));
+            waitFor(() -> pipeline.getFailedReports() == 1);
+            assertEquals(2, pipeline.getRetries());
+            assertEquals(0, pipeline.getSentReports());
+        }
+    }
+
+    @Test
+    public void testBackoffIsExponential() {
+        try (ReportingPipeline pipeline = new ReportingPipeline(report -> {
+        }, 1, 1, 3, Duration.ofMillis(100), DropPolicy.DROP_OLDEST, report -> {
+        }, LOG::warn)) {
+            assertEquals(Duration.ofMillis(100), pipeline.backoff(0));
+            assertEquals(Duration.ofMillis(200), pipeline.backoff(1));
+            assertEquals(Duration.ofMillis(400), pipeline.backoff(2));
+        }
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> sent = new CopyOnWriteArrayList<>();
+        try (ReportingPipeline pipeline = pipeline(blockingReporter(blocked, release, sent), 1, 0, DropPolicy.DROP_OLDEST)) {
+            pipeline.submit(report(1));
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+            assertTrue(pipeline.submit(report(2)));
+            assertTrue(pipeline.submit(report(3)));
+            assertEquals(1, pipeline.getQueueDepth());
+            assertEquals(1, pipeline.getDroppedReports());
+            release.countDown();
+            waitFor(() -> pipeline.getSentReports() == 2);
+            assertEquals(ImmutableList.of(1L, 3L), sent);
+        }
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> sent = new CopyOnWriteArrayList<>();
+        try (ReportingPipeline pipeline = pipeline(blockingReporter(blocked, release, sent), 1, 0, DropPolicy.DROP_NEWEST)) {
+            pipeline.submit(report(1));
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+            assertTrue(pipeline.submit(report(2)));
+            assertFalse(pipeline.submit(report(3)));
+            assertEquals(1, pipeline.getDroppedReports());
+            assertEquals(2, pipeline.getSubmittedReports());
+            release.countDown();
+            waitFor(() -> pipeline.getSentReports() == 2);
+            assertEquals(ImmutableList.of(1L, 2L), sent);
+        }
+    }
+
+    @Test
+    public void testDiscardListenerReceivesFailedReports() throws InterruptedException {
+        List<Report> discarded = new CopyOnWriteArrayList<>();
+        Report report = report(1);
+        try (ReportingPipeline pipeline = new ReportingPipeline(failed -> {
+            throw new RuntimeException("test");
+        }, 1, 1, 0, Duration.ofMillis(1), DropPolicy.DROP_OLDEST, discarded::add, LOG::warn)) {
+            pipeline.submit(report);
+            waitFor(() -> discarded.size() == 1);
+            assertEquals(report, discarded.get(0));
+            assertEquals(1, pipeline.getFailedReports());
+        }
+    }
+
+    @Test
+    public void testCloseSendsQueuedReports() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> sent = new CopyOnWriteArrayList<>();
+        ReportingPipeline pipeline = pipeline(blockingReporter(blocked, release, sent), 2, 0, DropPolicy.DROP_OLDEST);
+        pipeline.submit(report(1));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        pipeline.submit(report(2));
+        release.countDown();
+        pipeline.close(Duration.ofSeconds(10));
+        assertEquals(ImmutableList.of(1L, 2L), sent);
+        assertEquals(2, pipeline.getSentReports());
+        assertEquals(0, pipeline.getDroppedReports());
+    }
+
+    @Test
+    public void testCloseDiscardsReportsAfterTimeout() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Report> discarded = new CopyOnWriteArrayList<>();
+        ReportingPipeline pipeline = new ReportingPipeline(report -> {
+            blocked.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, 1, 1, 0, Duration.ofMillis(1), DropPolicy.DROP_OLDEST, discarded::add, LOG::warn);
+        pipeline.submit(report(1));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        pipeline.submit(report(2));
+        pipeline.close(Duration.ofMillis(50));
+        assertEquals(2, discarded.size());
+        assertEquals(0, pipeline.getSentReports());
+    }
+
+    @Test
+    public void testSubmitAfterClose() {
+        ReportingPipeline pipeline = pipeline(instant -> resource -> {
+        }, 1, 0, DropPolicy.DROP_OLDEST);
+        pipeline.close();
+        assertFalse(pipeline.submit(report(1)));
+        assertEquals(1, pipeline.getDroppedReports());
+    }
+
+    private static Function<Instant, StatusReporter> blockingReporter(CountDownLatch blocked, CountDownLatch release, List<Long> sent) {
+        return instant -> resource -> {
+            sent.add(instant.getEpochSecond());
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                throw new AssertionError("Condition not reached in time!");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -2,8 +2,10 @@ package de.ck35.monitoring.request.tagging.core;
 
 import static org.junit.Assert.*;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.junit.Test;
 
@@ -23,4 +25,74 @@ public class RequestTaggingContextConfigurerTest {
         assertEquals(ImmutableMap.of("requestTagging.statusReporter.hostId", "B"), target);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLoadAdditionalReporterKeys() {
+        Map<String, String> source = new HashMap<>();
+        source.put("additionalReporters", "influx");
+        source.put("requestTagging.statusReporter.influx.port", "8086");
+        source.put("influx.reportFormat", "INFLUX_DB");
+
+        Map<String, String> target = new HashMap<>();
+
+        RequestTaggingContextConfigurer.load(source::get, target::put);
+        assertEquals(ImmutableMap.of("requestTagging.statusReporter.additionalReporters", "influx",
+                                     "requestTagging.statusReporter.influx.port", "8086",
+                                     "requestTagging.statusReporter.influx.reportFormat", "INFLUX_DB"),
+                     target);
+    }
+
+    @Test
+    public void testAdditionalReporterUsesOnlySharedDefaultKeys() {
+        Map<String, String> properties = ImmutableMap.of("requestTagging.statusReporter.hostId", "my-host",
+                                                         "requestTagging.statusReporter.port", "9200",
+                                                         "requestTagging.statusReporter.fileDirectory", "/tmp/request-data",
+                                                         "requestTagging.statusReporter.influx.readTimeout", "1000");
+        Function<String, String> influx = RequestTaggingContextConfigurer.additionalReporterProperties(properties::get, "influx");
+        assertEquals("my-host", influx.apply("requestTagging.statusReporter.hostId"));
+        assertEquals("1000", influx.apply("requestTagging.statusReporter.readTimeout"));
+        assertNull(influx.apply("requestTagging.statusReporter.port"));
+        assertNull(influx.apply("requestTagging.statusReporter.fileDirectory"));
+    }
+
+    @Test
+    public void testConfigureSendJitter() {
+        Map<String, String> properties = ImmutableMap.of("requestTagging.context.collectorSendJitter", "PT30s",
+                                                         "requestTagging.statusReporter.hostId", "my-host",
+                                                         "requestTagging.statusReporter.instanceId", "my-instance");
+        try (RequestTaggingContext context = new RequestTaggingContext()) {
+            new RequestTaggingContextConfigurer(properties::get, message -> {
+            }).configure(context);
+            assertEquals(Duration.ofSeconds(30), context.getCollectorSendJitter());
+            assertEquals("my-host/my-instance", context.getCollectorSendJitterSeed());
+        }
+    }
+
+    @Test
+    public void testConfigureResourceNameTemplates() {
+        Map<String, String> properties = ImmutableMap.of("requestTagging.context.resourceNameTemplates", "/users/{id}, /health");
+        try (RequestTaggingContext context = new RequestTaggingContext()) {
+            new RequestTaggingContextConfigurer(properties::get, message -> {
+            }).configure(context);
+            assertEquals("/users/{id}", context.getResourceNameTemplates()
+                                               .match("/users/42"));
+            assertEquals("/health", context.getResourceNameTemplates()
+                                           .match("/health"));
+        }
+    }
+
+    @Test
+    public void testConfigureExclusionRules() {
+        Map<String, String> properties = ImmutableMap.of("requestTagging.context.excludedPathPrefixes", "/health, /static/",
+                                                         "requestTagging.context.excludedMethods", "OPTIONS",
+                                                         "requestTagging.context.excludedHeaders", "X-Health-Check");
+        try (RequestTaggingContext context = new RequestTaggingContext()) {
+            new RequestTaggingContextConfigurer(properties::get, message -> {
+            }).configure(context);
+            assertTrue(context.isExcluded("/static/app.js", 0, "GET", name -> null));
+            assertTrue(context.isExcluded("/users", 0, "OPTIONS", name -> null));
+            assertTrue(context.isExcluded("/users", 0, "GET", name -> "X-Health-Check".equals(name) ? "true" : null));
+            assertFalse(context.isExcluded("/users", 0, "GET", name -> null));
+        }
+    }
+
+}
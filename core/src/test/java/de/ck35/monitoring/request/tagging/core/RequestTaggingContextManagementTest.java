@@ -0,0 +1,96 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+
+public class RequestTaggingContextManagementTest {
+
+    @Test
+    public void testRegisterAndUnregister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = RequestTaggingContextManagement.objectName("test-register");
+        RequestTaggingContext context = new RequestTaggingContext();
+        context.setJmxEnabled(true);
+        context.setJmxName("test-register");
+        try {
+            context.initialize();
+            assertTrue(server.isRegistered(objectName));
+            assertEquals("NONE", server.getAttribute(objectName, "LastSendStatus"));
+            assertEquals(-1L, server.getAttribute(objectName, "LastSendDurationMillis"));
+            assertEquals("PT1M", server.getAttribute(objectName, "CollectorSendDelayDuration"));
+        } finally {
+            context.close();
+        }
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    @Test
+    public void testNotRegisteredByDefault() throws Exception {
+        try (RequestTaggingContext context = new RequestTaggingContext()) {
+            context.initialize();
+            assertFalse(ManagementFactory.getPlatformMBeanServer()
+                                         .isRegistered(RequestTaggingContextManagement.objectName(context.getJmxName())));
+        }
+    }
+
+    @Test
+    public void testTuneAndSnapshot() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = RequestTaggingContextManagement.objectName("test-tune");
+        try (RequestTaggingContext context = new RequestTaggingContext()) {
+            context.setJmxEnabled(true);
+            context.setJmxName("test-tune");
+            context.initialize();
+
+            server.setAttribute(objectName, new Attribute("CollectorSendDelayDuration", "PT2M"));
+            server.setAttribute(objectName, new Attribute("MaxDurationsPerNode", 5));
+            server.setAttribute(objectName, new Attribute("SampleRate", 0.5d));
+            assertEquals(Duration.ofMinutes(2), context.getCollectorSendDelayDuration());
+            assertEquals(5, context.getStatusConsumer()
+                                   .getMaxDurationsPerNode());
+            assertEquals(0.5d, context.getStatusConsumer()
+                                      .getSampleRate(),
+                         0d);
+            server.setAttribute(objectName, new Attribute("SampleRate", 1d));
+
+            context.taggingRunnable(name -> null, () -> RequestTagging.get()
+                                                                      .withResourceName("a"))
+                   .run();
+            TabularData seriesCounts = (TabularData) server.getAttribute(objectName, "SeriesCounts");
+            CompositeData row = seriesCounts.get(new Object[] { "a" });
+            assertEquals(1L, row.get("value"));
+
+            String snapshot = (String) server.invoke(objectName, "snapshot", new Object[0], new String[0]);
+            assertTrue(snapshot, snapshot.contains("\"resource_name\":\"a\""));
+            snapshot = (String) server.invoke(objectName, "snapshot", new Object[0], new String[0]);
+            assertTrue(snapshot, snapshot.contains("\"resource_name\":\"a\""));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSendDelay() {
+        try (RequestTaggingContext context = new RequestTaggingContext()) {
+            RequestTaggingContextManagement management = RequestTaggingContextManagement.register(context, "test-invalid", (message, error) -> {
+            });
+            try {
+                management.setCollectorSendDelayDuration("PT0S");
+            } finally {
+                management.unregister();
+            }
+        }
+    }
+}
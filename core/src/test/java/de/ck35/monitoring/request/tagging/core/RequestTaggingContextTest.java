@@ -7,24 +7,36 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoField;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -49,6 +61,7 @@ public class RequestTaggingContextTest {
     @Mock Function<Instant, StatusReporter> defaultRequestTaggingStatusReporter;
     @Mock Function<String, String> parameters;
     @Captor ArgumentCaptor<Resource> resourceCaptor;
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
 
     @Before
     public void before() {
@@ -228,11 +241,191 @@ public class RequestTaggingContextTest {
         }
     }
 
+    @Test
+    public void testFailedCollectIsRecorded() {
+        try (RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier)) {
+            context.setCollectorSendDelayDuration(Duration.ofHours(1));
+            context.setLoggerWarn((message, error) -> {
+            });
+            context.initialize();
+            doThrow(new RuntimeException("test")).when(requestTaggingStatusReporter)
+                                                 .accept(any(Resource.class));
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("error-while-collecting");
+            })
+                   .run();
+            context.send();
+            assertTrue(context.getLastSendTime()
+                              .isPresent());
+            assertFalse(context.isLastSendSucceeded());
+        }
+    }
+
+    @Test
+    public void testFailedSendWithSpoolIsRecordedOnce() throws Exception {
+        List<Resource> resources = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> resources.add(invocation.getArgumentAt(0, Resource.class))).when(requestTaggingStatusReporter)
+                                                                                          .accept(any());
+        doThrow(new RuntimeException("test")).doNothing()
+                                             .when(requestTaggingStatusReporter)
+                                             .close();
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(Duration.ofHours(1));
+        context.setInternalMetricsEnabled(true);
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn((message, error) -> {
+        });
+        context.setSpoolDirectory(folder.newFolder()
+                                        .toPath());
+        context.initialize();
+        try {
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource");
+            })
+                   .run();
+            context.send();
+            assertFalse(context.isLastSendSucceeded());
+            context.send();
+        } finally {
+            context.close();
+        }
+        assertEquals(1, resources.stream()
+                                 .filter(resource -> "send_failures".equals(resource.getMetaData()
+                                                                                   .get(InternalMetrics.METRIC_KEY)))
+                                 .mapToLong(resource -> resource.getMeasurements()
+                                                                .get(0)
+                                                                .getTotalNumberOfInvocations())
+                                 .sum());
+    }
+
+    @Test
+    public void testAsyncReporting() {
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(collectorSendDelayDuration);
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn(LOG::warn);
+        context.setAsyncReporting(true);
+        context.initialize();
+        try {
+            assertTrue(context.getReportingPipeline()
+                              .isPresent());
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource");
+            })
+                   .run();
+            verify(requestTaggingStatusReporter, timeout(10_000)).accept(resourceCaptor.capture());
+            verify(requestTaggingStatusReporter, timeout(10_000)).close();
+            assertThat(resourceCaptor.getValue(), resource().withName("test-resource")
+                                                            .withMeasurement(measurement().withStatusCodeName("SUCCESS")
+                                                                                          .withTotalNumberOfInvocations(1))
+                                                            .matches());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testCloseSendsUnfinishedInterval() {
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(Duration.ofHours(1));
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn(LOG::warn);
+        context.setAsyncReporting(true);
+        context.initialize();
+        context.taggingRunnable(parameters, () -> {
+            RequestTagging.get()
+                          .withResourceName("test-resource");
+        })
+               .run();
+        context.close();
+        verify(requestTaggingStatusReporter).accept(resourceCaptor.capture());
+        verify(requestTaggingStatusReporter).close();
+        assertThat(resourceCaptor.getValue(), resource().withName("test-resource")
+                                                        .withMeasurement(measurement().withStatusCodeName("SUCCESS")
+                                                                                      .withTotalNumberOfInvocations(1))
+                                                        .matches());
+        assertEquals(1, context.getReportingPipeline()
+                               .get()
+                               .getSentReports());
+    }
+
+    @Test
+    public void testSpoolReplaysFailedReport() throws Exception {
+        doThrow(new RuntimeException("test")).doNothing()
+                                             .when(requestTaggingStatusReporter)
+                                             .accept(any());
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(collectorSendDelayDuration);
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn(LOG::warn);
+        context.setSpoolDirectory(folder.newFolder()
+                                        .toPath());
+        context.setSpoolReplayInterval(Duration.ofMillis(10));
+        context.initialize();
+        try {
+            ReportSpool spool = context.getReportSpool()
+                                       .get();
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource");
+            })
+                   .run();
+            verify(requestTaggingStatusReporter, timeout(10_000)).accept(any());
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource");
+            })
+                   .run();
+            verify(requestTaggingStatusReporter, timeout(10_000).times(3)).accept(any());
+            long end = System.currentTimeMillis() + 10_000;
+            while (spool.getPendingReports() > 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, spool.getPendingReports());
+            assertEquals(2, spool.getAppendedReports());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testReportIsSentWhenSpoolFails() throws Exception {
+        Path directory = folder.newFolder()
+                               .toPath();
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(Duration.ofHours(1));
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn(LOG::warn);
+        context.setSpoolDirectory(directory);
+        context.initialize();
+        try {
+            Files.delete(directory);
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource");
+            })
+                   .run();
+            context.send();
+            verify(requestTaggingStatusReporter).accept(any());
+            verify(requestTaggingStatusReporter).close();
+            assertEquals(0, context.getReportSpool()
+                                   .get()
+                                   .getAppendedReports());
+        } finally {
+            context.close();
+        }
+    }
+
     @Test
     public void testDefaultSettings() {
         try (RequestTaggingContext context = new RequestTaggingContext()) {
             context.initialize();
             assertEquals(Duration.ofMinutes(1), context.getCollectorSendDelayDuration());
+            assertEquals(Duration.ZERO, context.getCollectorSendJitter());
+            assertEquals(Duration.ZERO, context.getCollectorSendOffset());
 
             LocalDateTime timestamp = LocalDateTime.now(context.getSendIntervalClock());
             assertEquals(0, timestamp.get(ChronoField.SECOND_OF_MINUTE));
@@ -241,9 +434,156 @@ public class RequestTaggingContextTest {
             assertFalse(context.isRequestIdEnabled());
             assertFalse(context.isForceRequestIdOverwrite());
             assertEquals("X-Request-ID", context.getRequestIdParameterName());
+            assertFalse(context.isAsyncReporting());
+            assertFalse(context.getReportingPipeline().isPresent());
+            assertEquals(null, context.getSpoolDirectory());
+            assertEquals(4 * 1024 * 1024, context.getSpoolSegmentSize());
+            assertEquals(64L * 1024 * 1024, context.getSpoolMaxSize());
+            assertEquals(Duration.ofSeconds(1), context.getSpoolReplayInterval());
+            assertFalse(context.getReportSpool().isPresent());
         }
     }
     
+    @Test
+    public void testSendEarlyWhenMemoryBudgetIsExceeded() {
+        collectorSendDelayDuration = Duration.ofHours(1);
+        try (RequestTaggingContext context = requestTaggingContext()) {
+            context.getStatusConsumer()
+                   .setMemoryBudget(1);
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource")
+                              .withMetaData("test-key", "test-value");
+            })
+                   .run();
+            verify(requestTaggingStatusReporter, timeout(10_000)).accept(resourceCaptor.capture());
+            assertThat(resourceCaptor.getValue(), resource().withName("test-resource")
+                                                            .withMetaData("test-key", "test-value")
+                                                            .withMeasurement(measurement().withStatusCodeName("SUCCESS")
+                                                                                          .withTotalNumberOfInvocations(1))
+                                                            .matches());
+            assertEquals(0, context.getStatusConsumer()
+                                   .getEstimatedTreeSize());
+            ArgumentCaptor<Instant> timestamp = ArgumentCaptor.forClass(Instant.class);
+            verify(defaultRequestTaggingStatusReporter).apply(timestamp.capture());
+            assertEquals(1, timestamp.getValue()
+                                     .toEpochMilli()
+                    % Duration.ofHours(1)
+                              .toMillis());
+            assertTrue(timestamp.getValue()
+                                .isAfter(Instant.now()));
+        }
+    }
+
+    @Test
+    public void testRequestIsNotTaggedWhenNotSampled() {
+        try (RequestTaggingContext context = requestTaggingContext()) {
+            context.getStatusConsumer()
+                   .setSampleRate(Double.MIN_VALUE);
+            context.taggingRunnable(parameters, () -> {
+                assertEquals(RequestTagging.EMPTY_STATUS, RequestTagging.get());
+            })
+                   .run();
+            context.send();
+            verify(requestTaggingStatusReporter, never()).accept(any());
+        }
+    }
+
+    @Test
+    public void testReportInternalMetrics() {
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(Duration.ofHours(1));
+        context.setInternalMetricsEnabled(true);
+        context.setLoggerInfo(LOG::info);
+        context.initialize();
+        try {
+            context.taggingRunnable(parameters, () -> {
+                RequestTagging.get()
+                              .withResourceName("test-resource");
+            })
+                   .run();
+            context.send();
+            verify(requestTaggingStatusReporter, atLeastOnce()).accept(resourceCaptor.capture());
+            assertThat(resourceCaptor.getAllValues()
+                                     .get(0),
+                       resource().withName("test-resource")
+                                 .withMeasurement(measurement().withStatusCodeName("SUCCESS")
+                                                               .withTotalNumberOfInvocations(1))
+                                 .matches());
+            Resource accepted = resourceCaptor.getAllValues()
+                                              .get(1);
+            assertEquals(InternalMetrics.RESOURCE_NAME, accepted.getName());
+            assertEquals("accepted", accepted.getMetaData()
+                                             .get(InternalMetrics.METRIC_KEY));
+            assertEquals(1, accepted.getMeasurements()
+                                    .get(0)
+                                    .getTotalNumberOfInvocations());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testSendOffsetIsDerivedFromSeed() {
+        Duration offset;
+        try (RequestTaggingContext context = requestTaggingContextWithJitter(Duration.ofMillis(500), "my-host/my-instance")) {
+            offset = context.getCollectorSendOffset();
+        }
+        try (RequestTaggingContext context = requestTaggingContextWithJitter(Duration.ofMillis(500), "my-host/my-instance")) {
+            assertEquals(offset, context.getCollectorSendOffset());
+        }
+        assertFalse(offset.isNegative());
+        assertTrue(offset.compareTo(Duration.ofMillis(500)) < 0);
+
+        Set<Duration> offsets = new HashSet<>();
+        for (int index = 0; index < 100; index++) {
+            try (RequestTaggingContext context = requestTaggingContextWithJitter(Duration.ofMillis(500), "my-host-" + index)) {
+                offsets.add(context.getCollectorSendOffset());
+            }
+        }
+        assertTrue(offsets.size() > 80);
+    }
+
+    @Test
+    public void testSendOffsetIsLimitedByInterval() {
+        try (RequestTaggingContext context = requestTaggingContextWithJitter(Duration.ofMinutes(5), null)) {
+            assertTrue(context.getCollectorSendOffset()
+                              .compareTo(collectorSendDelayDuration) < 0);
+        }
+    }
+
+    @Test
+    public void testEveryIntervalIsSentWithItsBoundary() throws InterruptedException {
+        List<Instant> timestamps = new CopyOnWriteArrayList<>();
+        when(defaultRequestTaggingStatusReporter.apply(any())).thenAnswer(invocation -> {
+            timestamps.add(invocation.getArgumentAt(0, Instant.class));
+            return requestTaggingStatusReporter;
+        });
+        collectorSendDelayDuration = Duration.ofMillis(200);
+        try (RequestTaggingContext context = requestTaggingContextWithJitter(Duration.ofMillis(100), "my-host/my-instance")) {
+            Thread.sleep(1_500);
+        }
+        assertTrue(timestamps.size() >= 5);
+        for (int index = 0; index < timestamps.size(); index++) {
+            assertEquals(0, timestamps.get(index)
+                                      .toEpochMilli()
+                    % 200);
+            if (index > 0) {
+                assertEquals(Duration.ofMillis(200), Duration.between(timestamps.get(index - 1), timestamps.get(index)));
+            }
+        }
+    }
+
+    private RequestTaggingContext requestTaggingContextWithJitter(Duration jitter, String seed) {
+        RequestTaggingContext context = new RequestTaggingContext(defaultRequestTaggingStatusReporterSupplier);
+        context.setCollectorSendDelayDuration(collectorSendDelayDuration);
+        context.setCollectorSendJitter(jitter);
+        context.setCollectorSendJitterSeed(seed);
+        context.setLoggerInfo(LOG::info);
+        context.initialize();
+        return context;
+    }
+
     @Test
     public void testRequestIdIsGenerated() {
         try (RequestTaggingContext context = requestTaggingContext()) {
@@ -0,0 +1,76 @@
+package de.ck35.monitoring.request.tagging.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class RouteTemplatesTest {
+
+    private final RouteTemplates templates = RouteTemplates.compile(ImmutableList.of("/users/{id}/orders",
+                                                                                     "/users/{id}",
+                                                                                     "/users/me",
+                                                                                     "/users/me/settings",
+                                                                                     "/health",
+                                                                                     "/"));
+
+    @Test
+    public void testMatchVariableSegments() {
+        assertEquals("/users/{id}", templates.match("/users/42"));
+        assertEquals("/users/{id}/orders", templates.match("/users/42/orders"));
+        assertNull(templates.match("/users/42/payments"));
+        assertNull(templates.match("/orders"));
+    }
+
+    @Test
+    public void testLiteralSegmentsTakePrecedence() {
+        assertEquals("/users/me", templates.match("/users/me"));
+        assertEquals("/users/me/settings", templates.match("/users/me/settings"));
+        assertEquals("/users/{id}/orders", templates.match("/users/me/orders"));
+    }
+
+    @Test
+    public void testEmptySegmentsAreIgnored() {
+        assertEquals("/health", templates.match("/health/"));
+        assertEquals("/users/{id}/orders", templates.match("//users/42//orders"));
+        assertEquals("/", templates.match("/"));
+        assertEquals("/", templates.match(""));
+    }
+
+    @Test
+    public void testMatchBehindContextPath() {
+        String requestUri = "/shop/users/42";
+        assertEquals("/users/{id}", templates.match(requestUri, RouteTemplates.pathStart(requestUri, "/shop")));
+        assertEquals(0, RouteTemplates.pathStart(requestUri, "/other"));
+        assertEquals(0, RouteTemplates.pathStart(requestUri, null));
+    }
+
+    @Test
+    public void testWithoutPathParameters() {
+        assertEquals("/users/42", RouteTemplates.withoutPathParameters("/users/42"));
+        assertEquals("/users/42", RouteTemplates.withoutPathParameters("/users/42;jsessionid=abc"));
+        assertEquals("/shop/users/42/", RouteTemplates.withoutPathParameters("/shop;v=1/users;a=b;c=d/42/"));
+        assertNull(RouteTemplates.withoutPathParameters(null));
+        String requestUri = RouteTemplates.withoutPathParameters("/users;jsessionid=abc/42");
+        assertEquals("/users/{id}", templates.match(requestUri));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(RouteTemplates.empty()
+                                 .isEmpty());
+        assertFalse(templates.isEmpty());
+        assertNull(RouteTemplates.empty()
+                                 .match("/users/42"));
+        assertNull(templates.match(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAmbiguousTemplates() {
+        RouteTemplates.compile(ImmutableList.of("/users/{id}", "/users/{name}"));
+    }
+}
@@ -0,0 +1,142 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.BinaryReportDecoder.DecodedReport;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class BinaryStatusReporterTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryStatusReporterTest.class);
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.123Z");
+
+    private static List<Resource> resources(int count) {
+        List<Resource> resources = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            Measurement success = new Measurement("SUCCESS", 10 + index, ImmutableMap.of("total_request_duration", ImmutableList.of(Duration.ofMillis(12),
+                                                                                                                                  Duration.ofMillis(130),
+                                                                                                                                  Duration.ofMillis(4000))));
+            Measurement serverError = new Measurement("SERVER_ERROR", 1, null);
+            resources.add(new Resource("resource-" + (index % 50),
+                                       ImmutableSortedMap.of("cacheHit", Boolean.toString(index % 2 == 0), "client", "client-" + (index % 10), "region", "eu-west-1"),
+                                       ImmutableList.of(success, serverError)));
+        }
+        return resources;
+    }
+
+    private static byte[] binary(List<Resource> resources) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StatusReporter reporter = new BinaryStatusReporter(TIMESTAMP, "my-host", "a", out)) {
+            resources.forEach(reporter::accept);
+        }
+        return out.toByteArray();
+    }
+
+    private static long json(List<Resource> resources) {
+        AtomicLong length = new AtomicLong();
+        try (StatusReporter reporter = new JSONStatusReporter(TIMESTAMP, "my-host", "a", token -> length.addAndGet(token.length()))) {
+            resources.forEach(reporter::accept);
+        }
+        return length.get();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Resource> resources = resources(100);
+        DecodedReport report = BinaryReportDecoder.decode(binary(resources));
+        assertEquals(TIMESTAMP, report.getInstant());
+        assertEquals("my-host", report.getHostId());
+        assertEquals("a", report.getInstanceId());
+        assertEquals(resources.size(), report.getResources()
+                                             .size());
+        for (int index = 0; index < resources.size(); index++) {
+            Resource expected = resources.get(index);
+            Resource actual = report.getResources()
+                                    .get(index);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getMetaData(), actual.getMetaData());
+            assertEquals(expected.getMeasurements()
+                                 .size(),
+                         actual.getMeasurements()
+                               .size());
+            for (int measurement = 0; measurement < expected.getMeasurements()
+                                                            .size(); measurement++) {
+                Measurement expectedMeasurement = expected.getMeasurements()
+                                                          .get(measurement);
+                Measurement actualMeasurement = actual.getMeasurements()
+                                                      .get(measurement);
+                assertEquals(expectedMeasurement.getStatusCodeName(), actualMeasurement.getStatusCodeName());
+                assertEquals(expectedMeasurement.getTotalNumberOfInvocations(), actualMeasurement.getTotalNumberOfInvocations());
+                assertEquals(expectedMeasurement.getDurations(), actualMeasurement.getDurations());
+            }
+        }
+    }
+
+    @Test
+    public void testNullInstanceIdAndEmptyReport() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryStatusReporter(TIMESTAMP, "my-host", null, out).close();
+        DecodedReport report = BinaryReportDecoder.decode(out.toByteArray());
+        assertNull(report.getInstanceId());
+        assertTrue(report.getResources()
+                         .isEmpty());
+    }
+
+    @Test
+    public void testBase64() throws IOException {
+        StringBuilder result = new StringBuilder();
+        try (StatusReporter reporter = BinaryStatusReporter.base64(TIMESTAMP, "my-host", "a", result::append)) {
+            resources(3).forEach(reporter::accept);
+        }
+        assertEquals(3, BinaryReportDecoder.decodeBase64(result.toString())
+                                           .getResources()
+                                           .size());
+    }
+
+    @Test
+    public void testSizeAndSerializationTimeComparedToJSON() {
+        List<Resource> resources = resources(10_000);
+        for (int warmup = 0; warmup < 5; warmup++) {
+            binary(resources);
+            json(resources);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long binaryNanos = Long.MAX_VALUE;
+        long jsonNanos = Long.MAX_VALUE;
+        int binarySize = 0;
+        long jsonSize = 0;
+        for (int run = 0; run < 10; run++) {
+            long start = threads.getCurrentThreadCpuTime();
+            binarySize = binary(resources).length;
+            binaryNanos = Math.min(binaryNanos, threads.getCurrentThreadCpuTime() - start);
+            start = threads.getCurrentThreadCpuTime();
+            jsonSize = json(resources);
+            jsonNanos = Math.min(jsonNanos, threads.getCurrentThreadCpuTime() - start);
+        }
+        LOG.info("Binary: {} bytes in {} ms CPU, JSON: {} bytes in {} ms CPU (best of 10 runs with 10000 resources).", binarySize, binaryNanos / 1_000_000, jsonSize,
+                 jsonNanos / 1_000_000);
+        assertTrue("Expected at least 5x size reduction but was: " + (double) jsonSize / binarySize, binarySize * 5L <= jsonSize);
+        assertTrue("Expected at least 2x less serialization CPU time but was: " + (double) jsonNanos / binaryNanos, binaryNanos * 2 <= jsonNanos);
+    }
+}
@@ -0,0 +1,152 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.CompositeStatusReporter.Transport;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.HttpTransferException;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class CompositeStatusReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+
+    private final List<String> warnings = new CopyOnWriteArrayList<>();
+
+    private static Resource resource(String name) {
+        return new Resource(name, ImmutableSortedMap.of(), ImmutableList.of(new Measurement("SUCCESS", 1, null)));
+    }
+
+    private static Function<Instant, StatusReporter> collecting(List<String> target, Consumer<Resource> onAccept) {
+        return instant -> new StatusReporter() {
+            @Override
+            public void accept(Resource resource) {
+                target.add(resource.getName());
+                onAccept.accept(resource);
+            }
+        };
+    }
+
+    private Transport transport(Map<String, Function<Instant, StatusReporter>> reporters, int queueCapacity) {
+        return CompositeStatusReporter.transport(reporters, queueCapacity, (message, throwable) -> warnings.add(message));
+    }
+
+    private static void report(Transport transport, int resources) {
+        try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+            for (int index = 0; index < resources; index++) {
+                reporter.accept(resource("resource-" + index));
+            }
+        }
+    }
+
+    @Test
+    public void testAllReportersReceiveAllResources() throws InterruptedException {
+        List<String> primary = new CopyOnWriteArrayList<>();
+        List<String> secondary = new CopyOnWriteArrayList<>();
+        CountDownLatch secondaryDone = new CountDownLatch(100);
+        Map<String, Function<Instant, StatusReporter>> reporters = new LinkedHashMap<>();
+        reporters.put("default", collecting(primary, resource -> {
+        }));
+        reporters.put("secondary", collecting(secondary, resource -> secondaryDone.countDown()));
+        try (Transport transport = transport(reporters, 1000)) {
+            report(transport, 100);
+            assertEquals(100, primary.size());
+            assertTrue(secondaryDone.await(5, TimeUnit.SECONDS));
+            assertEquals(primary, secondary);
+            assertEquals(ImmutableMap.of("default", 0L, "secondary", 0L), transport.getDroppedResources());
+        }
+    }
+
+    @Test
+    public void testSlowReporterDoesNotHoldUpOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> primary = new CopyOnWriteArrayList<>();
+        List<String> slow = new CopyOnWriteArrayList<>();
+        Map<String, Function<Instant, StatusReporter>> reporters = new LinkedHashMap<>();
+        reporters.put("default", collecting(primary, resource -> {
+        }));
+        reporters.put("slow", collecting(slow, resource -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+        }));
+        try (Transport transport = transport(reporters, 5)) {
+            report(transport, 20);
+            assertEquals(20, primary.size());
+            assertTrue(transport.getDroppedResources()
+                                .get("slow") > 0);
+
+            report(transport, 20);
+            assertEquals(40, primary.size());
+            assertEquals(Long.valueOf(1), transport.getSkippedReports()
+                                                   .get("slow"));
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testFailureOfAdditionalReporterIsIsolated() throws InterruptedException {
+        CountDownLatch failed = new CountDownLatch(1);
+        List<String> primary = new CopyOnWriteArrayList<>();
+        Map<String, Function<Instant, StatusReporter>> reporters = new LinkedHashMap<>();
+        reporters.put("default", collecting(primary, resource -> {
+        }));
+        reporters.put("broken", instant -> new StatusReporter() {
+            @Override
+            public void accept(Resource resource) {
+                failed.countDown();
+                throw new HttpTransferException("test");
+            }
+        });
+        try (Transport transport = transport(reporters, 10)) {
+            report(transport, 3);
+            assertEquals(3, primary.size());
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+            while (transport.getFailedReports()
+                            .get("broken") == 0) {
+                Thread.sleep(10);
+            }
+            assertEquals(Long.valueOf(0), transport.getFailedReports()
+                                                   .get("default"));
+            assertEquals(ImmutableList.of("Error while sending request tagging data with status reporter: 'broken'!"), warnings);
+        }
+    }
+
+    @Test
+    public void testFailureOfPrimaryReporterIsThrown() {
+        Map<String, Function<Instant, StatusReporter>> reporters = new LinkedHashMap<>();
+        reporters.put("default", instant -> new StatusReporter() {
+            @Override
+            public void accept(Resource resource) {
+                throw new HttpTransferException("test");
+            }
+        });
+        try (Transport transport = transport(reporters, 1)) {
+            report(transport, 10);
+            fail("Expected HttpTransferException!");
+        } catch (HttpTransferException e) {
+            assertEquals("test", e.getMessage());
+        }
+    }
+}
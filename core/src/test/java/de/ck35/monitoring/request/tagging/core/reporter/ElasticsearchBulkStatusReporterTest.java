@@ -0,0 +1,185 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.ElasticsearchBulkStatusReporter.Transport;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.HttpTransferException;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class ElasticsearchBulkStatusReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+    private static final String SUCCESS = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+    private final List<String> bulkRequests = new CopyOnWriteArrayList<>();
+
+    private Transport transport(int maxBytes, int maxDocuments, int parallelism, Function<String, String> bulkSender) {
+        return ElasticsearchBulkStatusReporter.transport(maxBytes, maxDocuments, parallelism, body -> {
+            bulkRequests.add(body);
+            return bulkSender.apply(body);
+        }, (instant, writer) -> new ElasticsearchStatusReporter(instant, "my-host", "a", writer, "my-index", "my-type") {
+            @Override
+            protected String generateMeasurementId(Resource resource, Measurement measurement) {
+                return "123";
+            }
+        });
+    }
+
+    private static void report(Transport transport, int documents) {
+        try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+            for (int index = 0; index < documents; index++) {
+                reporter.accept(new Resource("resource-" + index, ImmutableSortedMap.of("key", "value"), ImmutableList.of(new Measurement("SUCCESS", index, null))));
+            }
+        }
+    }
+
+    private static int documents(String body) {
+        return body.split("\r\n").length;
+    }
+
+    @Test
+    public void testSplitByDocuments() {
+        try (Transport transport = transport(Integer.MAX_VALUE, 3, 2, body -> SUCCESS)) {
+            report(transport, 10);
+            assertEquals(4, bulkRequests.size());
+            List<Integer> sizes = new ArrayList<>();
+            bulkRequests.forEach(body -> sizes.add(documents(body)));
+            Collections.sort(sizes);
+            assertEquals(ImmutableList.of(1, 3, 3, 3), sizes);
+            assertEquals(4, transport.getBulkRequests());
+        }
+    }
+
+    @Test
+    public void testSplitByBytes() {
+        int maxBytes = 1024;
+        try (Transport transport = transport(maxBytes, Integer.MAX_VALUE, 1, body -> SUCCESS)) {
+            report(transport, 100);
+            assertTrue(bulkRequests.size() > 1);
+            int total = 0;
+            for (String body : bulkRequests) {
+                assertTrue(body.getBytes(StandardCharsets.UTF_8).length <= maxBytes);
+                assertTrue(body.endsWith("\r\n"));
+                total += documents(body);
+            }
+            assertEquals(100, total);
+        }
+    }
+
+    @Test
+    public void testParallelSendsAreBounded() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try (Transport transport = transport(Integer.MAX_VALUE, 1, 2, body -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return SUCCESS;
+        })) {
+            report(transport, 10);
+            assertEquals(10, bulkRequests.size());
+            assertTrue(maxInFlight.get() <= 2);
+        }
+    }
+
+    @Test
+    public void testPartialFailure() {
+        AtomicInteger counter = new AtomicInteger();
+        try (Transport transport = transport(Integer.MAX_VALUE, 2, 2, body -> {
+            int request = counter.incrementAndGet();
+            if (request == 1) {
+                throw new HttpTransferException("test");
+            }
+            if (request == 2) {
+                return "{\"took\":1,\"errors\":true,\"items\":[{\"index\":{\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}},{\"index\":{\"status\":201}}]}";
+            }
+            return SUCCESS;
+        })) {
+            try {
+                report(transport, 6);
+                fail("Expected HttpTransferException!");
+            } catch (HttpTransferException e) {
+                assertEquals("'2' of '3' bulk request(s) failed!", e.getMessage());
+                assertEquals(1, e.getSuppressed().length);
+            }
+            assertEquals(3, bulkRequests.size());
+            assertEquals(2, transport.getFailedBulkRequests());
+            assertEquals(3, transport.getFailedDocuments());
+        }
+    }
+
+    @Test
+    public void testWaitingBulkRequestsArePipelined() throws InterruptedException {
+        List<Integer> pipelines = new CopyOnWriteArrayList<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        try (Transport transport = ElasticsearchBulkStatusReporter.transport(Integer.MAX_VALUE, 1, 1, 3, bodies -> {
+            pipelines.add(bodies.size());
+            bulkRequests.addAll(bodies);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Collections.nCopies(bodies.size(), SUCCESS);
+        }, closed::countDown, (instant, writer) -> new ElasticsearchStatusReporter(instant, "my-host", "a", writer, "my-index", "my-type"))) {
+            report(transport, 10);
+            assertEquals(10, bulkRequests.size());
+            assertEquals(10, transport.getBulkRequests());
+            assertTrue(pipelines.stream()
+                                .allMatch(size -> size <= 3));
+            assertTrue(pipelines.stream()
+                                .anyMatch(size -> size > 1));
+        }
+        assertTrue(closed.await(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailedPipelineFailsAllBulkRequests() {
+        AtomicInteger bodies = new AtomicInteger();
+        try (Transport transport = ElasticsearchBulkStatusReporter.transport(Integer.MAX_VALUE, 1, 1, 3, pipeline -> {
+            bodies.addAndGet(pipeline.size());
+            throw new HttpTransferException("test");
+        }, () -> {
+        }, (instant, writer) -> new ElasticsearchStatusReporter(instant, "my-host", "a", writer, "my-index", "my-type"))) {
+            try {
+                report(transport, 4);
+                fail("Expected HttpTransferException!");
+            } catch (HttpTransferException e) {
+                assertEquals("'4' of '4' bulk request(s) failed!", e.getMessage());
+            }
+            assertEquals(4, bodies.get());
+            assertEquals(4, transport.getFailedBulkRequests());
+            assertEquals(4, transport.getFailedDocuments());
+        }
+    }
+
+    @Test
+    public void testUtf8Length() {
+        String value = "a\u00e4\u20ac\ud83d\ude00";
+        assertEquals(value.getBytes(StandardCharsets.UTF_8).length, ElasticsearchBulkStatusReporter.utf8Length(value));
+    }
+}
@@ -4,13 +4,20 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
@@ -40,7 +47,7 @@ public class ElasticsearchStatusReporterTest {
     public ElasticsearchStatusReporter elasticsearchStatusReporter() {
         return new ElasticsearchStatusReporter(instant, hostId, instanceId, writer, index, type) {
             @Override
-            protected String generateMeasurementId() {
+            protected String generateMeasurementId(Resource resource, Measurement measurement) {
                 return "123";
             }
         };
@@ -63,4 +70,40 @@ public class ElasticsearchStatusReporterTest {
         assertEquals(expected, actual);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMeasurementIdIsDeterministic() {
+        Resource resource = new Resource("test-resource", ImmutableSortedMap.of("key", "value"), Collections.singletonList(new Measurement("SUCCESS", 5, null)));
+        Measurement success = resource.getMeasurements()
+                                      .get(0);
+        ElasticsearchStatusReporter reporter = new ElasticsearchStatusReporter(instant, hostId, instanceId, writer, index, type);
+        String id = reporter.generateMeasurementId(resource, success);
+        assertEquals(22, id.length());
+        assertEquals(id, new ElasticsearchStatusReporter(instant, hostId, instanceId, writer, index, type).generateMeasurementId(resource, new Measurement("SUCCESS", 7, null)));
+
+        Set<String> ids = new HashSet<>();
+        ids.add(id);
+        ids.add(reporter.generateMeasurementId(resource, new Measurement("SERVER_ERROR", 5, null)));
+        ids.add(reporter.generateMeasurementId(new Resource("test-resource", ImmutableSortedMap.of("key", "other"), resource.getMeasurements()), success));
+        ids.add(reporter.generateMeasurementId(new Resource("test-resource", ImmutableSortedMap.of("keyv", "alue"), resource.getMeasurements()), success));
+        ids.add(new ElasticsearchStatusReporter(instant.plusSeconds(60), hostId, instanceId, writer, index, type).generateMeasurementId(resource, success));
+        ids.add(new ElasticsearchStatusReporter(instant, hostId, null, writer, index, type).generateMeasurementId(resource, success));
+        assertEquals(6, ids.size());
+    }
+
+    @Test
+    public void testMurmur3MatchesReferenceImplementation() {
+        Random random = new Random(42);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            long[] hash = Murmur3.hash128(data, length, 0);
+            ByteBuffer expected = ByteBuffer.wrap(Hashing.murmur3_128()
+                                                         .hashBytes(data)
+                                                         .asBytes())
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(expected.getLong(0), hash[0]);
+            assertEquals(expected.getLong(8), hash[1]);
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.FileStatusReporter.Transport;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class FileStatusReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private Transport transport(Path directory, long maxFileSize, Duration rotationInterval, int maxFiles, Clock clock) {
+        return FileStatusReporter.transport(directory,
+                                            "ndjson",
+                                            maxFileSize,
+                                            rotationInterval,
+                                            maxFiles,
+                                            64,
+                                            clock,
+                                            (message, throwable) -> warnings.add(message),
+                                            (instant, writer) -> new NDJSONStatusReporter(instant, "my-host", null, writer));
+    }
+
+    private static void report(Transport transport, int resources) {
+        try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+            for (int index = 0; index < resources; index++) {
+                reporter.accept(new Resource("resource-ä-" + index, ImmutableSortedMap.of("key", "value"), ImmutableList.of(new Measurement("SUCCESS", index, null))));
+            }
+        }
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    @Test
+    public void testWriteNDJSON() throws Exception {
+        Path directory = folder.getRoot()
+                               .toPath()
+                               .resolve("reports");
+        try (Transport transport = transport(directory, Long.MAX_VALUE, Duration.ofHours(1), 10, Clock.systemUTC())) {
+            report(transport, 3);
+            report(transport, 2);
+            List<Path> files = files(directory);
+            assertEquals(1, files.size());
+            assertTrue(files.get(0)
+                            .getFileName()
+                            .toString()
+                            .matches("request-tagging-\\d{8}T\\d{6}\\.\\d{3}Z-000000\\.ndjson"));
+            List<String> lines = Files.readAllLines(files.get(0), StandardCharsets.UTF_8);
+            assertEquals(5, lines.size());
+            assertEquals("{\"timestamp\":\"2007-12-03T10:15:30Z\",\"key\":\"request_data\",\"resource_name\":\"resource-ä-0\",\"host\":\"my-host\",\"key\":\"value\",\"statusCodeName\":\"SUCCESS\",\"totalNumberOfInvocations\":0}",
+                         lines.get(0));
+            assertEquals(0, transport.getRotations());
+        }
+    }
+
+    @Test
+    public void testRotateBySizeAndDeleteOldestFiles() throws Exception {
+        Path directory = folder.getRoot()
+                               .toPath();
+        try (Transport transport = transport(directory, 100, Duration.ofHours(1), 3, Clock.systemUTC())) {
+            for (int index = 0; index < 5; index++) {
+                report(transport, 2);
+            }
+            transport.awaitRotations();
+            assertEquals(5, transport.getRotations());
+            List<Path> files = files(directory);
+            assertEquals(3, files.size());
+            for (Path file : files) {
+                assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8)
+                                     .size());
+            }
+            assertTrue(files.get(2)
+                            .toString()
+                            .endsWith("-000004.ndjson"));
+        }
+        assertTrue(warnings.isEmpty());
+    }
+
+    @Test
+    public void testRotateByTime() throws Exception {
+        Path directory = folder.getRoot()
+                               .toPath();
+        MutableClock clock = new MutableClock(TIMESTAMP);
+        try (Transport transport = transport(directory, Long.MAX_VALUE, Duration.ofMinutes(10), 10, clock)) {
+            report(transport, 1);
+            clock.instant = TIMESTAMP.plus(Duration.ofMinutes(5));
+            report(transport, 1);
+            assertEquals(0, transport.getRotations());
+            clock.instant = TIMESTAMP.plus(Duration.ofMinutes(10));
+            report(transport, 1);
+            assertEquals(1, transport.getRotations());
+            clock.instant = TIMESTAMP.plus(Duration.ofMinutes(11));
+            report(transport, 1);
+            transport.awaitRotations();
+            List<Path> files = files(directory);
+            assertEquals(2, files.size());
+            assertEquals(3, Files.readAllLines(files.get(0), StandardCharsets.UTF_8)
+                                 .size());
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
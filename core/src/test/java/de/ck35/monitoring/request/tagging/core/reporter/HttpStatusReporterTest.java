@@ -0,0 +1,157 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.ck35.monitoring.request.tagging.core.reporter.BinaryReportDecoder.DecodedReport;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TransferStatistics;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class HttpStatusReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+
+    private HttpServer server;
+    private volatile String contentEncoding;
+    private volatile String contentType;
+    private volatile byte[] receivedBody;
+    private List<TransferStatistics> statistics;
+
+    @Before
+    public void before() throws IOException {
+        statistics = new ArrayList<>();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/write", this::handle);
+        server.start();
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        contentEncoding = exchange.getRequestHeaders()
+                                  .getFirst("Content-Encoding");
+        contentType = exchange.getRequestHeaders()
+                              .getFirst("Content-Type");
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(contentEncoding)) {
+            in = new GZIPInputStream(in);
+        }
+        receivedBody = ByteStreams.toByteArray(in);
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    private StatusReporter reporter(Optional<Integer> gzipLevel) throws IOException {
+        URL url = new URL("http", "localhost", server.getAddress()
+                                                      .getPort(),
+                          "/write");
+        return HttpStatusReporter.statusReporter(url, 5000, 5000, gzipLevel, statistics::add, (instant, writer) -> new InfluxDBStatusReporter(instant, "my-host", "a", writer))
+                                 .apply(TIMESTAMP);
+    }
+
+    private static Resource resource(int index) {
+        return new Resource("my-test-resource", ImmutableSortedMap.of("my-key", "my-value-" + index), ImmutableList.of(new Measurement("SUCCESS", index, null)));
+    }
+
+    private static String expectedBody(int resources) {
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < resources; index++) {
+            builder.append("request_data,resource_name=my-test-resource,host=my-host,instanceId=a,my-key=my-value-")
+                   .append(index)
+                   .append(" SUCCESS=")
+                   .append(index)
+                   .append(" 1196676930000000000\n");
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testSendCompressed() throws IOException {
+        try (StatusReporter reporter = reporter(Optional.of(9))) {
+            for (int index = 0; index < 1000; index++) {
+                reporter.accept(resource(index));
+            }
+        }
+        assertEquals("gzip", contentEncoding);
+        String expected = expectedBody(1000);
+        assertEquals(expected, new String(receivedBody, StandardCharsets.UTF_8));
+
+        assertEquals(1, statistics.size());
+        TransferStatistics transfer = statistics.get(0);
+        assertTrue(transfer.isCompressed());
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, transfer.getPayloadBytes());
+        assertTrue(transfer.getTransferredBytes() * 5 < transfer.getPayloadBytes());
+        assertFalse(transfer.getCompressionTime()
+                            .isNegative());
+    }
+
+    @Test
+    public void testSendUncompressed() throws IOException {
+        try (StatusReporter reporter = reporter(Optional.empty())) {
+            reporter.accept(resource(0));
+        }
+        assertNull(contentEncoding);
+        String expected = expectedBody(1);
+        assertEquals(expected, new String(receivedBody, StandardCharsets.UTF_8));
+
+        assertEquals(1, statistics.size());
+        TransferStatistics transfer = statistics.get(0);
+        assertFalse(transfer.isCompressed());
+        assertEquals(expected.length(), transfer.getPayloadBytes());
+        assertEquals(expected.length(), transfer.getTransferredBytes());
+        assertEquals(Duration.ZERO, transfer.getCompressionTime());
+    }
+
+    @Test
+    public void testSendBinary() throws IOException {
+        URL url = new URL("http", "localhost", server.getAddress()
+                                                      .getPort(),
+                          "/write");
+        try (StatusReporter reporter = HttpStatusReporter.binaryStatusReporter(url, 5000, 5000, Optional.of(1), statistics::add, (instant, out) -> new BinaryStatusReporter(instant, "my-host", "a", out))
+                                                         .apply(TIMESTAMP)) {
+            reporter.accept(resource(0));
+            reporter.accept(resource(1));
+        }
+        assertEquals("application/octet-stream", contentType);
+        assertEquals("gzip", contentEncoding);
+        DecodedReport report = BinaryReportDecoder.decode(receivedBody);
+        assertEquals(TIMESTAMP, report.getInstant());
+        assertEquals(2, report.getResources()
+                              .size());
+        assertEquals("my-value-1", report.getResources()
+                                         .get(1)
+                                         .getMetaData()
+                                         .get("my-key"));
+        assertEquals(receivedBody.length, statistics.get(0)
+                                                    .getPayloadBytes());
+    }
+
+}
@@ -74,6 +74,41 @@ public class InfluxDBStatusReporterTest {
         assertEqualsContent("/InfluxDBStatusReporterTest_Expected_with_durations.txt", result.toString());
     }
     
+    @Test
+    public void testWriteWithAggregatedDurations() throws Exception {
+        Measurement m1 = new Measurement("SUCCESS", 5, ImmutableMap.of("total_request_duration", ImmutableList.of(Duration.ofMillis(12), Duration.ofMillis(10), Duration.ofMillis(11))));
+        Measurement m2 = new Measurement("CLIENT_ERROR", 6, ImmutableMap.of("total_request_duration", ImmutableList.of(Duration.ofMillis(13), Duration.ofMillis(14))));
+        List<Measurement> measurements = ImmutableList.of(m1, m2);
+        SortedMap<String, String> metaData = ImmutableSortedMap.of("my-meta-data-key", "my-meta-data-value");
+        String name = "my-test-resource";
+        Resource resource = new Resource(name, metaData, measurements);
+        
+        new InfluxDBStatusReporter(instant, hostId, instanceId, result::append, true).accept(resource);
+
+        assertEqualsContent("/InfluxDBStatusReporterTest_Expected_with_aggregated_durations.txt", result.toString());
+    }
+    
+    @Test
+    public void testWriteWithAggregatedEmptyDurations() throws Exception {
+        Measurement m1 = new Measurement("SUCCESS", 5, ImmutableMap.of("total_request_duration", Collections.emptyList()));
+        Measurement m2 = new Measurement("CLIENT_ERROR", 6, Collections.emptyMap());
+        List<Measurement> measurements = ImmutableList.of(m1, m2);
+        SortedMap<String, String> metaData = ImmutableSortedMap.of("my-meta-data-key", "my-meta-data-value");
+        Resource resource = new Resource("my-test-resource", metaData, measurements);
+        
+        new InfluxDBStatusReporter(instant, hostId, instanceId, result::append, true).accept(resource);
+        
+        assertEquals("request_data,resource_name=my-test-resource,host=my-host,instanceId=my-instance,my-meta-data-key=my-meta-data-value SUCCESS=5,CLIENT_ERROR=6 1196676930000\n", result.toString());
+    }
+    
+    @Test
+    public void testPercentile() {
+        long[] values = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        assertEquals(5, InfluxDBStatusReporter.percentile(values, 50));
+        assertEquals(10, InfluxDBStatusReporter.percentile(values, 99));
+        assertEquals(7, InfluxDBStatusReporter.percentile(new long[] {7}, 50));
+    }
+    
     @Test
     public void testEscaping() {
         Line line = new Line(instant);
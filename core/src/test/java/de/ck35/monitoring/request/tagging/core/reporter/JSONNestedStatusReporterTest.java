@@ -0,0 +1,64 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class JSONNestedStatusReporterTest {
+
+    private String hostId;
+    private String instanceId;
+    private Instant instant;
+    private StringBuilder result;
+
+    public JSONNestedStatusReporterTest() {
+        this.hostId = "my-host";
+        this.instanceId = "my-instance";
+        this.instant = Instant.parse("2007-12-03T10:15:30.00Z");
+        this.result = new StringBuilder();
+    }
+
+    public JSONNestedStatusReporter jsonNestedStatusReporter() {
+        return new JSONNestedStatusReporter(instant, hostId, instanceId, result::append);
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        Measurement m1 = new Measurement("SUCCESS", 5, ImmutableMap.of("total_request_duration", ImmutableList.of(Duration.ofMillis(10), Duration.ofMillis(11))));
+        Measurement m2 = new Measurement("CLIENT_ERROR", 6, Collections.emptyMap());
+        List<Measurement> measurements = ImmutableList.of(m1, m2);
+        SortedMap<String, String> metaData = ImmutableSortedMap.of("my-meta-data-key", "my-meta-data-value");
+        Resource resource = new Resource("my-test-resource", metaData, measurements);
+
+        try (JSONNestedStatusReporter reporter = jsonNestedStatusReporter()) {
+            reporter.accept(resource);
+            reporter.accept(resource);
+        }
+
+        String expectedResource = "{\"timestamp\":\"2007-12-03T10:15:30Z\",\"key\":\"request_data\",\"resource_name\":\"my-test-resource\",\"host\":\"my-host\",\"instanceId\":\"my-instance\",\"my-meta-data-key\":\"my-meta-data-value\","
+                + "\"measurements\":[{\"statusCodeName\":\"SUCCESS\",\"totalNumberOfInvocations\":5,\"total_request_duration\":[10,11]},{\"statusCodeName\":\"CLIENT_ERROR\",\"totalNumberOfInvocations\":6}]}";
+        assertEquals("[" + expectedResource + "," + expectedResource + "]", result.toString());
+    }
+
+    @Test
+    public void testWriteEmpty() throws Exception {
+        try (JSONNestedStatusReporter reporter = jsonNestedStatusReporter()) {
+            reporter.accept(new Resource("my-test-resource", ImmutableSortedMap.of(), ImmutableList.of()));
+        }
+        assertEquals("[{\"timestamp\":\"2007-12-03T10:15:30Z\",\"key\":\"request_data\",\"resource_name\":\"my-test-resource\",\"host\":\"my-host\",\"instanceId\":\"my-instance\",\"measurements\":[]}]",
+                     result.toString());
+    }
+}
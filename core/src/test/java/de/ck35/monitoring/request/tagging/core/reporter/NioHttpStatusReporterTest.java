@@ -0,0 +1,282 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.io.ByteStreams;
+
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.HttpTransferException;
+import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.TransferStatistics;
+import de.ck35.monitoring.request.tagging.core.reporter.NioHttpStatusReporter.Transport;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class NioHttpStatusReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private AtomicInteger acceptedConnections;
+    private List<String> receivedBodies;
+    private List<TransferStatistics> statistics;
+    private volatile String response;
+
+    @Before
+    public void before() throws IOException {
+        acceptedConnections = new AtomicInteger();
+        receivedBodies = new CopyOnWriteArrayList<>();
+        statistics = new CopyOnWriteArrayList<>();
+        response = "HTTP/1.1 204 No Content\r\n\r\n";
+        serverSocket = new ServerSocket(0);
+        acceptor = new Thread(this::accept);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                acceptedConnections.incrementAndGet();
+                Thread handler = new Thread(() -> handle(socket));
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket closeable = socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null) {
+                    return;
+                }
+                int contentLength = 0;
+                boolean gzip = false;
+                for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+                    String lower = header.toLowerCase(Locale.ROOT);
+                    if (lower.startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(header.substring(15)
+                                                               .trim());
+                    } else if (lower.startsWith("content-encoding:") && lower.contains("gzip")) {
+                        gzip = true;
+                    }
+                }
+                byte[] body = new byte[contentLength];
+                in.readFully(body);
+                InputStream bodyStream = new ByteArrayInputStream(body);
+                if (gzip) {
+                    bodyStream = new GZIPInputStream(bodyStream);
+                }
+                receivedBodies.add(new String(ByteStreams.toByteArray(bodyStream), StandardCharsets.UTF_8));
+                out.write(response.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Connection closed by client.
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int next;
+        while ((next = in.read()) != '\n') {
+            if (next == -1) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (next != '\r') {
+                line.append((char) next);
+            }
+        }
+        return line.toString();
+    }
+
+    private Transport transport(Optional<Integer> gzipLevel) throws IOException {
+        URL url = new URL("http", "localhost", serverSocket.getLocalPort(), "/write?db=request_data");
+        return NioHttpStatusReporter.transport(url, 5000, 5000, 2, gzipLevel, statistics::add, (instant, writer) -> new InfluxDBStatusReporter(instant, "my-host", "a", writer));
+    }
+
+    private static Resource resource(int index) {
+        return new Resource("my-test-resource", ImmutableSortedMap.of("my-key", "my-value-" + index), ImmutableList.of(new Measurement("SUCCESS", index, null)));
+    }
+
+    private static String expectedLine(int index) {
+        return "request_data,resource_name=my-test-resource,host=my-host,instanceId=a,my-key=my-value-" + index + " SUCCESS=" + index + " 1196676930000000000\n";
+    }
+
+    @Test
+    public void testConnectionIsReused() throws IOException {
+        try (Transport transport = transport(Optional.empty())) {
+            for (int index = 0; index < 3; index++) {
+                try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+                    reporter.accept(resource(index));
+                }
+            }
+            assertEquals(ImmutableList.of(expectedLine(0), expectedLine(1), expectedLine(2)), receivedBodies);
+            assertEquals(1, transport.getOpenedConnections());
+            assertEquals(2, transport.getReusedConnections());
+            assertEquals(3, transport.getRequests());
+            assertEquals(1, acceptedConnections.get());
+            assertEquals(3, statistics.size());
+        }
+    }
+
+    @Test
+    public void testSendCompressed() throws IOException {
+        try (Transport transport = transport(Optional.of(9))) {
+            try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+                for (int index = 0; index < 1000; index++) {
+                    reporter.accept(resource(index));
+                }
+            }
+            StringBuilder expected = new StringBuilder();
+            for (int index = 0; index < 1000; index++) {
+                expected.append(expectedLine(index));
+            }
+            assertEquals(ImmutableList.of(expected.toString()), receivedBodies);
+            TransferStatistics transfer = statistics.get(0);
+            assertTrue(transfer.isCompressed());
+            assertTrue(transfer.getTransferredBytes() * 5 < transfer.getPayloadBytes());
+        }
+    }
+
+    @Test
+    public void testPipelinedRequests() throws IOException {
+        try (Transport transport = transport(Optional.empty())) {
+            List<byte[]> bodies = new ArrayList<>();
+            for (int index = 0; index < 5; index++) {
+                bodies.add(expectedLine(index).getBytes(StandardCharsets.UTF_8));
+            }
+            transport.post(bodies);
+            transport.post(bodies.subList(0, 1));
+            assertEquals(6, receivedBodies.size());
+            assertEquals(expectedLine(4), receivedBodies.get(4));
+            assertEquals(1, transport.getOpenedConnections());
+            assertEquals(1, transport.getReusedConnections());
+        }
+    }
+
+    @Test
+    public void testConnectionIsNotReusedAfterClose() throws IOException {
+        response = "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\nok";
+        try (Transport transport = transport(Optional.empty())) {
+            transport.post(ImmutableList.of(expectedLine(0).getBytes(StandardCharsets.UTF_8)));
+            transport.post(ImmutableList.of(expectedLine(1).getBytes(StandardCharsets.UTF_8)));
+            assertEquals(2, transport.getOpenedConnections());
+            assertEquals(0, transport.getReusedConnections());
+            assertEquals(0, transport.getIdleConnections());
+        }
+    }
+
+    @Test
+    public void testChunkedResponseIsConsumed() throws IOException {
+        response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n2\r\nok\r\n0\r\n\r\n";
+        try (Transport transport = transport(Optional.empty())) {
+            transport.post(ImmutableList.of(expectedLine(0).getBytes(StandardCharsets.UTF_8)));
+            transport.post(ImmutableList.of(expectedLine(1).getBytes(StandardCharsets.UTF_8)));
+            assertEquals(1, transport.getOpenedConnections());
+            assertEquals(1, transport.getReusedConnections());
+        }
+    }
+
+    @Test
+    public void testSendReturnsResponseBodies() throws IOException {
+        response = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok";
+        try (Transport transport = transport(Optional.of(9))) {
+            List<String> responses = transport.send(ImmutableList.of(expectedLine(0), expectedLine(1), expectedLine(2)));
+            assertEquals(ImmutableList.of("ok", "ok", "ok"), responses);
+            assertEquals(ImmutableList.of(expectedLine(0), expectedLine(1), expectedLine(2)), receivedBodies);
+            assertEquals(1, transport.getOpenedConnections());
+            assertEquals(1, transport.getIdleConnections());
+            assertEquals(3, statistics.size());
+            assertTrue(statistics.get(0)
+                                 .isCompressed());
+        }
+    }
+
+    @Test
+    public void testChunkedResponseBody() throws IOException {
+        response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n2\r\nok\r\n3\r\n!!!\r\n0\r\n\r\n";
+        try (Transport transport = transport(Optional.empty())) {
+            assertEquals(ImmutableList.of("ok!!!"), transport.send(ImmutableList.of(expectedLine(0))));
+        }
+    }
+
+    @Test
+    public void testInvalidResponseCode() throws IOException {
+        response = "HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n\r\n";
+        try (Transport transport = transport(Optional.empty())) {
+            try {
+                transport.post(ImmutableList.of(expectedLine(0).getBytes(StandardCharsets.UTF_8)));
+                fail("Expected HttpTransferException!");
+            } catch (HttpTransferException e) {
+                assertEquals(0, transport.getIdleConnections());
+            }
+        }
+    }
+
+    @Test
+    public void testConnectionIsClosedAfterInvalidContentLength() throws IOException {
+        response = "HTTP/1.1 200 OK\r\nContent-Length: 2x\r\n\r\nok";
+        assertInvalidResponseClosesConnection();
+    }
+
+    @Test
+    public void testConnectionIsClosedAfterInvalidChunkSize() throws IOException {
+        response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n-2\r\nok\r\n0\r\n\r\n";
+        assertInvalidResponseClosesConnection();
+    }
+
+    private void assertInvalidResponseClosesConnection() throws IOException {
+        try (Transport transport = transport(Optional.empty())) {
+            try {
+                transport.post(ImmutableList.of(expectedLine(0).getBytes(StandardCharsets.UTF_8)));
+                fail("Expected HttpTransferException!");
+            } catch (HttpTransferException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertEquals(0, transport.getIdleConnections());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHttpsIsNotSupported() throws IOException {
+        NioHttpStatusReporter.transport(new URL("https://localhost/write"), 5000, 5000, 2, Optional.empty(), statistics::add, (instant, writer) -> null);
+    }
+}
@@ -0,0 +1,164 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.io.ByteStreams;
+
+import de.ck35.monitoring.request.tagging.core.reporter.PrometheusStatusReporter.Endpoint;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class PrometheusStatusReporterTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrometheusStatusReporterTest.class);
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+
+    private static Resource resource(String name, long invocations, Duration... durations) {
+        return new Resource(name,
+                            ImmutableSortedMap.of("client-id", "a\"b"),
+                            ImmutableList.of(new Measurement("SUCCESS", invocations, ImmutableMap.of("total_request_duration", ImmutableList.copyOf(durations)))));
+    }
+
+    private static String render(PrometheusRegistry registry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.write(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCumulativeValues() throws IOException {
+        PrometheusRegistry registry = new PrometheusRegistry("my-host", "a");
+        try (StatusReporter reporter = new PrometheusStatusReporter(registry)) {
+            reporter.accept(resource("my-resource", 2, Duration.ofMillis(3), Duration.ofMillis(200)));
+        }
+        try (StatusReporter reporter = new PrometheusStatusReporter(registry)) {
+            reporter.accept(resource("my-resource", 1, Duration.ofMillis(20000)));
+        }
+        String labels = "resource_name=\"my-resource\",host=\"my-host\",instanceId=\"a\",client_id=\"a\\\"b\",statusCodeName=\"SUCCESS\"";
+        String expected = "# HELP request_data_invocations_total Total number of invocations per resource and status code.\n"
+                + "# TYPE request_data_invocations_total counter\n"
+                + "request_data_invocations_total{" + labels + "} 3\n"
+                + "# HELP request_data_duration_seconds Durations per resource, status code and timer.\n"
+                + "# TYPE request_data_duration_seconds histogram\n"
+                + bucket(labels, "0.005", 1) + bucket(labels, "0.01", 1) + bucket(labels, "0.025", 1) + bucket(labels, "0.05", 1)
+                + bucket(labels, "0.1", 1) + bucket(labels, "0.25", 2) + bucket(labels, "0.5", 2) + bucket(labels, "1", 2)
+                + bucket(labels, "2.5", 2) + bucket(labels, "5", 2) + bucket(labels, "10", 2) + bucket(labels, "+Inf", 3)
+                + "request_data_duration_seconds_sum{" + labels + ",timer=\"total_request_duration\"} 20.203\n"
+                + "request_data_duration_seconds_count{" + labels + ",timer=\"total_request_duration\"} 3\n";
+        assertEquals(expected, render(registry));
+        assertEquals(1, registry.getSeries());
+    }
+
+    private static String bucket(String labels, String le, long value) {
+        return "request_data_duration_seconds_bucket{" + labels + ",timer=\"total_request_duration\",le=\"" + le + "\"} " + value + "\n";
+    }
+
+    @Test
+    public void testScrape() throws IOException {
+        try (Endpoint endpoint = PrometheusStatusReporter.endpoint(new InetSocketAddress("localhost", 0), "/metrics", "my-host", null, LOG::info)) {
+            try (StatusReporter reporter = endpoint.apply(TIMESTAMP)) {
+                reporter.accept(resource("my-resource", 5));
+            }
+            URL url = new URL("http://localhost:" + endpoint.getAddress()
+                                                             .getPort()
+                    + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(PrometheusStatusReporter.CONTENT_TYPE, connection.getContentType());
+            String body = new String(ByteStreams.toByteArray(connection.getInputStream()), StandardCharsets.UTF_8);
+            assertTrue(body, body.contains("request_data_invocations_total{resource_name=\"my-resource\",host=\"my-host\",client_id=\"a\\\"b\",statusCodeName=\"SUCCESS\"} 5\n"));
+
+            HttpURLConnection gzipConnection = (HttpURLConnection) url.openConnection();
+            gzipConnection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals("gzip", gzipConnection.getContentEncoding());
+            try (InputStream in = new GZIPInputStream(gzipConnection.getInputStream())) {
+                assertEquals(body, new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testMetaDataKeysDoNotCollideWithLabels() throws IOException {
+        List<String> messages = new ArrayList<>();
+        PrometheusRegistry registry = new PrometheusRegistry("my-host", "a", messages::add);
+        Resource resource = new Resource("my-resource",
+                                         ImmutableSortedMap.of("a.b", "1", "a_b", "2", "host", "3", "le", "4", "meta_host", "5"),
+                                         ImmutableList.of(new Measurement("SUCCESS", 1, null)));
+        try (StatusReporter reporter = new PrometheusStatusReporter(registry)) {
+            reporter.accept(resource);
+            reporter.accept(resource);
+        }
+        assertEquals("request_data_invocations_total{resource_name=\"my-resource\",host=\"my-host\",instanceId=\"a\",a_b=\"1\",a_b_2=\"2\",meta_host=\"3\","
+                + "meta_le=\"4\",meta_host_2=\"5\",statusCodeName=\"SUCCESS\"} 2", render(registry).split("\n")[2]);
+        assertEquals(4, messages.size());
+    }
+
+    @Test
+    public void testRenamedMetaDataKeyWithDefaultLoggers() throws IOException {
+        StatusReporterFactory factory = new StatusReporterFactory();
+        factory.setReportFormat(StatusReporterFactory.ReportFormat.PROMETHEUS);
+        factory.setPrometheusPort(0);
+        factory.setHostId("my-host");
+        try (Endpoint endpoint = (Endpoint) factory.build()) {
+            try (StatusReporter reporter = endpoint.apply(TIMESTAMP)) {
+                reporter.accept(new Resource("my-resource", ImmutableSortedMap.of("host", "a"), ImmutableList.of(new Measurement("SUCCESS", 1, null))));
+            }
+            URL url = new URL("http://localhost:" + endpoint.getAddress()
+                                                             .getPort()
+                    + "/metrics");
+            String body = new String(ByteStreams.toByteArray(url.openStream()), StandardCharsets.UTF_8);
+            assertTrue(body, body.contains("request_data_invocations_total{resource_name=\"my-resource\",host=\"my-host\",meta_host=\"a\",statusCodeName=\"SUCCESS\"} 1\n"));
+        }
+    }
+
+    @Test
+    public void testMetaDataKeysWithSameLabelNameShareSeries() throws IOException {
+        PrometheusRegistry registry = new PrometheusRegistry("my-host", "a");
+        try (StatusReporter reporter = new PrometheusStatusReporter(registry)) {
+            reporter.accept(new Resource("my-resource", ImmutableSortedMap.of("a.b", "1"), ImmutableList.of(new Measurement("SUCCESS", 1, null))));
+            reporter.accept(new Resource("my-resource", ImmutableSortedMap.of("a-b", "1"), ImmutableList.of(new Measurement("SUCCESS", 2, null))));
+        }
+        assertEquals(1, registry.getSeries());
+        assertTrue(render(registry).contains("a_b=\"1\",statusCodeName=\"SUCCESS\"} 3\n"));
+    }
+
+    @Test
+    public void testRender100kSeries() throws IOException {
+        PrometheusRegistry registry = new PrometheusRegistry("my-host", "a");
+        try (StatusReporter reporter = new PrometheusStatusReporter(registry)) {
+            for (int index = 0; index < 100_000; index++) {
+                reporter.accept(resource("resource-" + index, index, Duration.ofMillis(index % 1000)));
+            }
+        }
+        assertEquals(100_000, registry.getSeries());
+        OutputStream discard = ByteStreams.nullOutputStream();
+        registry.write(discard);
+        long start = System.nanoTime();
+        registry.write(discard);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        LOG.info("Rendered 100000 series with 15 samples each in {} ms.", millis);
+        assertTrue("Rendering took: " + millis + " ms.", millis < 1000);
+    }
+}
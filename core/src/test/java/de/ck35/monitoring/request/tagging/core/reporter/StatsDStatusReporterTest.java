@@ -0,0 +1,127 @@
+package de.ck35.monitoring.request.tagging.core.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+import de.ck35.monitoring.request.tagging.core.reporter.StatsDStatusReporter.Transport;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
+public class StatsDStatusReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2007-12-03T10:15:30.00Z");
+
+    private DatagramSocket agent;
+
+    @Before
+    public void before() throws IOException {
+        agent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        agent.setSoTimeout(5000);
+    }
+
+    @After
+    public void after() {
+        agent.close();
+    }
+
+    private Transport transport(int maxPacketSize) {
+        return StatsDStatusReporter.transport(new InetSocketAddress(InetAddress.getLoopbackAddress(), agent.getLocalPort()),
+                                              maxPacketSize,
+                                              (instant, writer) -> new StatsDStatusReporter("my-host", null, writer));
+    }
+
+    private String receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+        agent.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    }
+
+    private static Resource resource(String name, int durations) {
+        List<Duration> values = new ArrayList<>();
+        for (int index = 0; index < durations; index++) {
+            values.add(Duration.ofMillis(index));
+        }
+        return new Resource(name,
+                            ImmutableSortedMap.of("client", "a|b,c"),
+                            ImmutableList.of(new Measurement("SUCCESS", 3, ImmutableMap.of("total_request_duration", values)),
+                                             new Measurement("SERVER_ERROR", 1, null)));
+    }
+
+    @Test
+    public void testWriteLines() {
+        List<String> lines = new ArrayList<>();
+        try (StatusReporter reporter = new StatsDStatusReporter("my-host", "a", lines::add)) {
+            reporter.accept(resource("my:resource", 2));
+        }
+        String tags = "|#resource_name:my:resource,host:my-host,instanceId:a,client:a_b_c";
+        assertEquals(Arrays.asList("request_data.invocations:3|c" + tags + ",statusCodeName:SUCCESS",
+                                   "request_data.total_request_duration:0|ms" + tags + ",statusCodeName:SUCCESS",
+                                   "request_data.total_request_duration:1|ms" + tags + ",statusCodeName:SUCCESS",
+                                   "request_data.invocations:1|c" + tags + ",statusCodeName:SERVER_ERROR"),
+                     lines);
+    }
+
+    @Test
+    public void testSendSinglePacket() throws IOException {
+        try (Transport transport = transport(1432)) {
+            try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+                reporter.accept(resource("my-resource", 1));
+            }
+            String packet = receive();
+            assertEquals("request_data.invocations:3|c|#resource_name:my-resource,host:my-host,client:a_b_c,statusCodeName:SUCCESS\n"
+                    + "request_data.total_request_duration:0|ms|#resource_name:my-resource,host:my-host,client:a_b_c,statusCodeName:SUCCESS\n"
+                    + "request_data.invocations:1|c|#resource_name:my-resource,host:my-host,client:a_b_c,statusCodeName:SERVER_ERROR", packet);
+            assertEquals(1, transport.getPackets());
+        }
+    }
+
+    @Test
+    public void testPackToMaxPacketSize() throws IOException {
+        int maxPacketSize = 512;
+        try (Transport transport = transport(maxPacketSize)) {
+            try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+                reporter.accept(resource("my-resource", 50));
+            }
+            int lines = 0;
+            for (int packet = 0; packet < transport.getPackets(); packet++) {
+                String received = receive();
+                assertTrue(received.getBytes(StandardCharsets.UTF_8).length <= maxPacketSize);
+                lines += received.split("\n").length;
+            }
+            assertTrue(transport.getPackets() > 1);
+            assertEquals(52, lines);
+            assertEquals(0, transport.getDroppedPackets());
+        }
+    }
+
+    @Test
+    public void testDropLineLargerThanPacket() throws IOException {
+        try (Transport transport = transport(64)) {
+            try (StatusReporter reporter = transport.apply(TIMESTAMP)) {
+                reporter.accept(resource("my-resource", 1));
+            }
+            assertEquals(3, transport.getDroppedLines());
+            assertEquals(0, transport.getPackets());
+        }
+    }
+}
@@ -3,14 +3,21 @@ package de.ck35.monitoring.request.tagging.core.reporter;
 import static com.xebialabs.restito.builder.stub.StubHttp.whenHttp;
 import static com.xebialabs.restito.builder.verify.VerifyHttp.verifyHttp;
 import static com.xebialabs.restito.semantics.Action.noContent;
+import static com.xebialabs.restito.semantics.Action.ok;
 import static com.xebialabs.restito.semantics.Action.status;
+import static com.xebialabs.restito.semantics.Action.stringContent;
 import static com.xebialabs.restito.semantics.Condition.method;
 import static com.xebialabs.restito.semantics.Condition.parameter;
 import static com.xebialabs.restito.semantics.Condition.post;
 import static com.xebialabs.restito.semantics.Condition.uri;
 import static com.xebialabs.restito.semantics.Condition.withPostBodyContaining;
+import static org.junit.Assert.assertTrue;
 
+import java.io.Closeable;
 import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.util.HttpStatus;
@@ -27,6 +34,7 @@ import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Measurement;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory.HttpTransport;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory.ReportFormat;
 import de.ck35.monitoring.request.tagging.core.reporter.HttpStatusReporter.HttpTransferException;
 
@@ -81,6 +89,23 @@ public class StatusReporterFactoryTest {
                                 withPostBodyContaining("request_data,resource_name=my-test-resource,host=my-test-host,instanceId=a,my-key=my-value SUCCESS=10 1196676930000000000"));
     }
 
+    @Test
+    public void testSendToInfluxDBWithAggregatedDurations() throws Exception {
+        whenHttp(server).match(post("/write"))
+                        .then(noContent());
+        requestTaggingStatusReporterFactory.setInfluxDBAggregateDurations(true);
+
+        try (StatusReporter reporter = reporter()) {
+            reporter.accept(new Resource("my-test-resource", ImmutableSortedMap.of("my-key", "my-value"), ImmutableList.of(new Measurement("SUCCESS", 10L, null))));
+        }
+
+        verifyHttp(server).once(method(Method.POST),
+                                uri("/write"),
+                                parameter("db", "request_data"),
+                                parameter("precision", "ms"),
+                                withPostBodyContaining("request_data,resource_name=my-test-resource,host=my-test-host,instanceId=a,my-key=my-value SUCCESS=10 1196676930000\n"));
+    }
+
     @Test(expected = HttpTransferException.class)
     public void testSendToInfluxDBWrongReturnCode() throws Exception {
         whenHttp(server).match(post("/write"))
@@ -91,4 +116,64 @@ public class StatusReporterFactoryTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSendToInfluxDBWithNioTransport() throws Exception {
+        whenHttp(server).match(post("/write"))
+                        .then(noContent());
+        requestTaggingStatusReporterFactory.setHttpTransport(HttpTransport.NIO);
+
+        Function<Instant, StatusReporter> reporters = requestTaggingStatusReporterFactory.build();
+        try (StatusReporter reporter = reporters.apply(TIMESTAMP)) {
+            reporter.accept(new Resource("my-test-resource", ImmutableSortedMap.of("my-key", "my-value"), ImmutableList.of(new Measurement("SUCCESS", 10L, null))));
+        }
+        ((Closeable) reporters).close();
+
+        verifyHttp(server).once(method(Method.POST),
+                                uri("/write"),
+                                parameter("db", "request_data"),
+                                withPostBodyContaining("request_data,resource_name=my-test-resource,host=my-test-host,instanceId=a,my-key=my-value SUCCESS=10 1196676930000000000"));
+    }
+
+    @Test
+    public void testSendToElasticsearchWithNioTransport() throws Exception {
+        whenHttp(server).match(post("/_bulk"))
+                        .then(ok(), stringContent("{\"took\":1,\"errors\":false,\"items\":[]}"));
+        requestTaggingStatusReporterFactory.setReportFormat(ReportFormat.ELASTICSEARCH);
+        requestTaggingStatusReporterFactory.setPathPart("/_bulk");
+        requestTaggingStatusReporterFactory.setHttpTransport(HttpTransport.NIO);
+
+        Function<Instant, StatusReporter> reporters = requestTaggingStatusReporterFactory.build();
+        try (StatusReporter reporter = reporters.apply(TIMESTAMP)) {
+            reporter.accept(new Resource("my-test-resource", ImmutableSortedMap.of("my-key", "my-value"), ImmutableList.of(new Measurement("SUCCESS", 10L, null))));
+        }
+        ((Closeable) reporters).close();
+
+        verifyHttp(server).once(method(Method.POST), uri("/_bulk"), withPostBodyContaining("my-test-resource"));
+    }
+
+    @Test
+    public void testSendToAdditionalReporter() throws Exception {
+        whenHttp(server).match(post("/write"))
+                        .then(noContent());
+        whenHttp(server).match(post("/json"))
+                        .then(noContent());
+        CountDownLatch sent = new CountDownLatch(2);
+        requestTaggingStatusReporterFactory.setTransferStatisticsListener(statistics -> sent.countDown());
+        StatusReporterFactory additionalReporter = requestTaggingStatusReporterFactory.addAdditionalReporter("json");
+        additionalReporter.setSendData(true);
+        additionalReporter.setHostId("my-test-host");
+        additionalReporter.setPort(server.getPort());
+        additionalReporter.setPathPart("/json");
+
+        Function<Instant, StatusReporter> reporters = requestTaggingStatusReporterFactory.build();
+        try (StatusReporter reporter = reporters.apply(TIMESTAMP)) {
+            reporter.accept(new Resource("my-test-resource", ImmutableSortedMap.of("my-key", "my-value"), ImmutableList.of(new Measurement("SUCCESS", 10L, null))));
+        }
+        assertTrue(sent.await(10, TimeUnit.SECONDS));
+        ((Closeable) reporters).close();
+
+        verifyHttp(server).once(method(Method.POST), uri("/write"));
+        verifyHttp(server).once(method(Method.POST), uri("/json"), withPostBodyContaining("\"resource_name\":\"my-test-resource\""));
+    }
+
+}
@@ -19,6 +19,7 @@ import de.ck35.monitoring.request.tagging.core.HashAlgorithm;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingContextConfigurer;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingRunnable.WrappedException;
+import de.ck35.monitoring.request.tagging.core.RouteTemplates;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
 
 /**
@@ -39,17 +40,26 @@ public class RequestTaggingFilter implements Filter {
     public RequestTaggingFilter() {
         statusReporterFactory = new StatusReporterFactory();
         statusReporterFactory.setLoggerInfo(LOG::info);
+        statusReporterFactory.setLoggerWarn(LOG::warn);
         hashAlgorithm = new HashAlgorithm();
         stopWatchClock = Clock.systemUTC();
         context = new RequestTaggingContext(statusReporterFactory::build, hashAlgorithm::hash, stopWatchClock);
         context.setLoggerInfo(LOG::info);
         context.setLoggerWarn(LOG::warn);
+        statusReporterFactory.setTransferStatisticsListener(context.getInternalMetrics()::transferred);
     }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        String requestUri = requestUri(request);
+        int pathStart = pathStart(requestUri, request);
+        Function<String, String> header = header(request);
+        if (context.isExcluded(requestUri, pathStart, method(request), header)) {
+            chain.doFilter(request, response);
+            return;
+        }
         try {
-            context.runWithinContext(header(request), () -> {
+            context.runWithinContext(requestUri, pathStart, header, () -> {
                 try {
                     chain.doFilter(request, response);
                 } catch (IOException e) {
@@ -83,7 +93,35 @@ public class RequestTaggingFilter implements Filter {
     public void destroy() {
         context.close();
     }
+
+    public RequestTaggingContext getContext() {
+        return context;
+    }
     
+    private String requestUri(ServletRequest request) {
+        if (request instanceof HttpServletRequest) {
+            return RouteTemplates.withoutPathParameters(((HttpServletRequest) request).getRequestURI());
+        } else {
+            return null;
+        }
+    }
+
+    private String method(ServletRequest request) {
+        if (request instanceof HttpServletRequest) {
+            return ((HttpServletRequest) request).getMethod();
+        } else {
+            return null;
+        }
+    }
+
+    private int pathStart(String requestUri, ServletRequest request) {
+        if (request instanceof HttpServletRequest) {
+            return RouteTemplates.pathStart(requestUri, RouteTemplates.withoutPathParameters(((HttpServletRequest) request).getContextPath()));
+        } else {
+            return 0;
+        }
+    }
+
     private Function<String, String> header(ServletRequest request) {
         if(request instanceof HttpServletRequest) {
             return ((HttpServletRequest) request)::getHeader;
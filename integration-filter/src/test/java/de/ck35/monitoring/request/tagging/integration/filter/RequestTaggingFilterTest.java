@@ -7,18 +7,28 @@ import static com.xebialabs.restito.semantics.Condition.post;
 import static com.xebialabs.restito.semantics.Condition.uri;
 import static com.xebialabs.restito.semantics.Condition.withPostBodyContainingJsonPath;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
 import javax.servlet.FilterRegistration;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRegistration;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.util.HttpStatus;
@@ -39,10 +49,13 @@ import org.springframework.core.env.Environment;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.context.support.HttpRequestHandlerServlet;
 
+import com.google.common.collect.ImmutableList;
 import com.xebialabs.restito.semantics.Action;
 import com.xebialabs.restito.server.StubServer;
 
+import de.ck35.monitoring.request.tagging.RequestTagging;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingContextConfigurer;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @WebIntegrationTest(randomPort=true)
@@ -100,6 +113,58 @@ public class RequestTaggingFilterTest {
                                     withPostBodyContainingJsonPath("[0].totalNumberOfInvocations", 1));
     }
 
+    @Test
+    public void testResourceNameTemplateIgnoresPathParameters() throws Exception {
+        RequestTaggingFilter filter = new RequestTaggingFilter();
+        filter.getContext()
+              .setResourceNameTemplates(ImmutableList.of("/users/{id}"));
+        HttpServletRequest request = request("/shop;v=1/users;jsessionid=4711/42", "/shop;v=1");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        FilterChain chain = mock(FilterChain.class);
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        assertEquals(ImmutableList.of("/users/{id}"), resourceNames(filter));
+    }
+
+    @Test
+    public void testExcludedRequestIsNotTagged() throws Exception {
+        RequestTaggingFilter filter = new RequestTaggingFilter();
+        filter.getContext()
+              .setExcludedPathPrefixes(ImmutableList.of("/health"));
+        HttpServletRequest request = request("/shop/health;jsessionid=4711", "/shop");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        FilterChain chain = mock(FilterChain.class);
+        doAnswer(invocation -> {
+            assertFalse(RequestTagging.getOptional()
+                                      .isPresent());
+            return null;
+        }).when(chain)
+          .doFilter(request, response);
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        assertEquals(ImmutableList.of(), resourceNames(filter));
+    }
+
+    private static HttpServletRequest request(String requestUri, String contextPath) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn(requestUri);
+        when(request.getContextPath()).thenReturn(contextPath);
+        when(request.getMethod()).thenReturn("GET");
+        return request;
+    }
+
+    private static List<String> resourceNames(RequestTaggingFilter filter) {
+        return filter.getContext()
+                     .getStatusConsumer()
+                     .snapshot()
+                     .map(Resource::getName)
+                     .collect(Collectors.toList());
+    }
+
     
     @Configuration
     @EnableAutoConfiguration
@@ -0,0 +1,231 @@
+package de.ck35.monitoring.request.tagging.integration.netty;
+
+import java.io.Closeable;
+import java.nio.channels.ClosedChannelException;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.core.AsyncRequestTagging;
+import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus;
+import de.ck35.monitoring.request.tagging.core.HashAlgorithm;
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContextConfigurer;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Netty handler which adds the request tagging mechanism to all HTTP requests
+ * of a channel. Add it behind the <code>HttpServerCodec</code> and in front of
+ * the handlers which process the requests. On an event loop one thread
+ * interleaves many requests, so the status of a request is stored as channel
+ * attribute. It is made available through {@link RequestTagging#get()} only
+ * while a message of the request is passed to the following handlers or a
+ * message of its response is written. The status is consumed as soon as the
+ * last content of the response has been written.
+ * <p>
+ * The response status code decides between success, client error and server
+ * error unless the request has been tagged as error before. Requests whose
+ * channel is closed before the response has been written are tagged as
+ * server error. Pipelined requests are supported, because responses are
+ * written in the order of the requests.
+ * <p>
+ * The handler is {@link Sharable}, so one instance can be used for all
+ * channels.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+@Sharable
+public class RequestTaggingHandler extends ChannelDuplexHandler implements Closeable {
+
+    private static final InternalLogger LOG = InternalLoggerFactory.getInstance(RequestTaggingHandler.class);
+
+    /**
+     * The statuses of the requests of a channel which have not been responded
+     * yet. The last element belongs to the request which is currently read.
+     * Requests which are excluded or not sampled have an empty status.
+     */
+    public static final AttributeKey<Deque<Optional<DefaultRequestTaggingStatus>>> STATUS = AttributeKey.valueOf(RequestTaggingHandler.class, "status");
+
+    private final RequestTaggingContext context;
+
+    public RequestTaggingHandler(RequestTaggingContext context) {
+        this.context = Objects.requireNonNull(context);
+    }
+
+    /**
+     * Create a handler with its own context which has been configured and
+     * initialized with the given properties. The properties are the same as
+     * for the servlet filter and the Tomcat valve.
+     */
+    public static RequestTaggingHandler create(Function<String, String> properties) {
+        StatusReporterFactory statusReporterFactory = new StatusReporterFactory();
+        statusReporterFactory.setLoggerInfo(LOG::info);
+        statusReporterFactory.setLoggerWarn(LOG::warn);
+        HashAlgorithm hashAlgorithm = new HashAlgorithm();
+        RequestTaggingContext context = new RequestTaggingContext(statusReporterFactory::build, hashAlgorithm::hash, Clock.systemUTC());
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn(LOG::warn);
+        statusReporterFactory.setTransferStatisticsListener(context.getInternalMetrics()::transferred);
+
+        RequestTaggingContextConfigurer configurer = new RequestTaggingContextConfigurer(properties, LOG::info);
+        configurer.configure(hashAlgorithm);
+        configurer.configure(context);
+        configurer.configure(statusReporterFactory);
+        context.initialize();
+        return new RequestTaggingHandler(context);
+    }
+
+    public RequestTaggingContext getContext() {
+        return context;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            received(ctx, (HttpRequest) msg);
+        }
+        DefaultRequestTaggingStatus status = current(ctx);
+        if (status == null) {
+            ctx.fireChannelRead(msg);
+        } else {
+            AsyncRequestTagging.runWithin(status, () -> ctx.fireChannelRead(msg));
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        Deque<Optional<DefaultRequestTaggingStatus>> pending = ctx.channel()
+                                                                  .attr(STATUS)
+                                                                  .get();
+        if (pending == null || pending.isEmpty() || isInformational(msg)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (!pending.peekFirst()
+                    .isPresent()) {
+            if (msg instanceof LastHttpContent) {
+                pending.pollFirst();
+            }
+            ctx.write(msg, promise);
+            return;
+        }
+        DefaultRequestTaggingStatus status = pending.peekFirst()
+                                                    .get();
+        if (msg instanceof HttpResponse) {
+            AsyncRequestTagging.responded(status, ((HttpResponse) msg).status()
+                                                                      .code());
+        }
+        ChannelPromise writePromise = promise;
+        if (msg instanceof LastHttpContent) {
+            pending.pollFirst();
+            writePromise = promise.unvoid();
+            writePromise.addListener(future -> {
+                if (!future.isSuccess()) {
+                    AsyncRequestTagging.failed(status, future.cause());
+                }
+                AsyncRequestTagging.finish(status);
+            });
+        }
+        ChannelPromise finalPromise = writePromise;
+        AsyncRequestTagging.runWithin(status, () -> ctx.write(msg, finalPromise));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        DefaultRequestTaggingStatus status = oldest(ctx);
+        if (status == null) {
+            ctx.fireExceptionCaught(cause);
+        } else {
+            AsyncRequestTagging.failed(status, cause);
+            AsyncRequestTagging.runWithin(status, () -> ctx.fireExceptionCaught(cause));
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Deque<Optional<DefaultRequestTaggingStatus>> pending = ctx.channel()
+                                                                  .attr(STATUS)
+                                                                  .getAndSet(null);
+        if (pending != null) {
+            ClosedChannelException cause = new ClosedChannelException();
+            pending.forEach(status -> status.ifPresent(value -> {
+                AsyncRequestTagging.failed(value, cause);
+                AsyncRequestTagging.finish(value);
+            }));
+        }
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private void received(ChannelHandlerContext ctx, HttpRequest request) {
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        Optional<DefaultRequestTaggingStatus> status = context.createStatus(path, 0, request.method()
+                                                                                       .name(),
+                                                                            request.headers()::get);
+        status.ifPresent(AsyncRequestTagging::start);
+        Deque<Optional<DefaultRequestTaggingStatus>> pending = ctx.channel()
+                                                                  .attr(STATUS)
+                                                                  .get();
+        if (pending == null) {
+            pending = new ArrayDeque<>(1);
+            ctx.channel()
+               .attr(STATUS)
+               .set(pending);
+        }
+        pending.addLast(status);
+    }
+
+    /**
+     * @return The status of the request which is currently read.
+     */
+    private static DefaultRequestTaggingStatus current(ChannelHandlerContext ctx) {
+        return pending(ctx, Deque::peekLast);
+    }
+
+    /**
+     * @return The status of the oldest request which still waits for its
+     *         response. With pipelining an error belongs to this request, not
+     *         to the one which has been read last.
+     */
+    private static DefaultRequestTaggingStatus oldest(ChannelHandlerContext ctx) {
+        return pending(ctx, Deque::peekFirst);
+    }
+
+    private static DefaultRequestTaggingStatus pending(ChannelHandlerContext ctx, Function<Deque<Optional<DefaultRequestTaggingStatus>>, Optional<DefaultRequestTaggingStatus>> element) {
+        Deque<Optional<DefaultRequestTaggingStatus>> pending = ctx.channel()
+                                                                  .attr(STATUS)
+                                                                  .get();
+        if (pending == null || pending.isEmpty()) {
+            return null;
+        }
+        return element.apply(pending)
+                      .orElse(null);
+    }
+
+    private static boolean isInformational(Object msg) {
+        return msg instanceof HttpResponse && ((HttpResponse) msg).status()
+                                                                  .codeClass() == HttpStatusClass.INFORMATIONAL;
+    }
+}
@@ -0,0 +1,102 @@
+package de.ck35.monitoring.request.tagging.integration.netty;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Compares a tagged pipeline with a bare one. It is not part of the default
+ * build, run it with
+ * <code>mvn test -pl integration-netty -Dtest=RequestTaggingHandlerOverheadIT</code>.
+ */
+public class RequestTaggingHandlerOverheadIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestTaggingHandlerOverheadIT.class);
+    private static final int REQUESTS = 100_000;
+
+    private RequestTaggingContext context;
+    private RequestTaggingHandler handler;
+
+    @Before
+    public void before() {
+        context = new RequestTaggingContext();
+        context.setResourceNameTemplates(ImmutableList.of("/users/{id}"));
+        handler = new RequestTaggingHandler(context);
+    }
+
+    @After
+    public void after() {
+        handler.close();
+    }
+
+    @Test
+    public void testOverhead() {
+        EmbeddedChannel bare = new EmbeddedChannel(new Application());
+        EmbeddedChannel tagged = new EmbeddedChannel(handler, new Application());
+        run(bare, REQUESTS);
+        run(tagged, REQUESTS);
+        context.getStatusConsumer()
+               .report(resource -> {
+               });
+
+        long bareNanos = run(bare, REQUESTS);
+        long taggedNanos = run(tagged, REQUESTS);
+        LOG.info("Bare pipeline: {} ns per request, tagged pipeline: {} ns per request, overhead: {} ns per request.",
+                 bareNanos / REQUESTS, taggedNanos / REQUESTS, (taggedNanos - bareNanos) / REQUESTS);
+        long[] collected = new long[1];
+        context.getStatusConsumer()
+               .snapshot()
+               .forEach(resource -> resource.getMeasurements()
+                                            .forEach(measurement -> collected[0] += measurement.getTotalNumberOfInvocations()));
+        assertEquals(REQUESTS, collected[0]);
+    }
+
+    private static long run(EmbeddedChannel channel, int requests) {
+        List<FullHttpRequest> messages = new ArrayList<>(requests);
+        for (int index = 0; index < requests; index++) {
+            messages.add(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/users/" + index));
+        }
+        long start = System.nanoTime();
+        for (FullHttpRequest message : messages) {
+            channel.writeInbound(message);
+            Object response;
+            while ((response = channel.readOutbound()) != null) {
+                ReferenceCountUtil.release(response);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static class Application extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            try {
+                ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package de.ck35.monitoring.request.tagging.integration.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.RequestTagging.Status;
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ReferenceCountUtil;
+
+public class RequestTaggingHandlerTest {
+
+    private RequestTaggingContext context;
+    private RequestTaggingHandler handler;
+    private List<Status> statuses;
+
+    @Before
+    public void before() {
+        context = new RequestTaggingContext();
+        context.setResourceNameTemplates(ImmutableList.of("/users/{id}"));
+        context.setExcludedPathPrefixes(ImmutableList.of("/health"));
+        handler = new RequestTaggingHandler(context);
+        statuses = new ArrayList<>();
+    }
+
+    @After
+    public void after() {
+        handler.close();
+    }
+
+    @Test
+    public void testTagRequest() {
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new Application(true));
+        channel.writeInbound(request("/users/42?status=200"));
+        channel.writeInbound(request("/users/43?status=404"));
+        channel.writeInbound(request("/other?status=503"));
+
+        assertEquals(3, statuses.size());
+        assertFalse(RequestTagging.getOptional()
+                                  .isPresent());
+        assertTrue(channel.attr(RequestTaggingHandler.STATUS)
+                          .get()
+                          .isEmpty());
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("SUCCESS", 1L, "CLIENT_ERROR", 1L),
+                                     "default", ImmutableMap.of("SERVER_ERROR", 1L)),
+                     collected());
+    }
+
+    @Test
+    public void testExcludedRequestIsNotTagged() {
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new Application(true));
+        channel.writeInbound(request("/health?status=200"));
+        assertEquals(1, statuses.size());
+        assertSame(RequestTagging.EMPTY_STATUS, statuses.get(0));
+        assertTrue(collected().isEmpty());
+    }
+
+    @Test
+    public void testInterleavedRequestsOfDifferentChannels() {
+        EmbeddedChannel first = new EmbeddedChannel(handler, new Application(false));
+        EmbeddedChannel second = new EmbeddedChannel(handler, new Application(false));
+        first.writeInbound(request("/users/1?status=500"));
+        second.writeInbound(request("/users/2?status=200"));
+
+        second.writeOutbound(response(200));
+        first.writeOutbound(response(500));
+
+        assertEquals(2, statuses.size());
+        assertFalse(statuses.get(0) == statuses.get(1));
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("SUCCESS", 1L, "SERVER_ERROR", 1L)), collected());
+    }
+
+    @Test
+    public void testPipelinedRequests() {
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new Application(false));
+        channel.writeInbound(request("/users/1"));
+        channel.writeInbound(request("/health"));
+        channel.writeInbound(request("/other"));
+
+        channel.writeOutbound(response(404));
+        channel.writeOutbound(response(500));
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("CLIENT_ERROR", 1L)), collected());
+        channel.writeOutbound(response(200));
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("CLIENT_ERROR", 1L),
+                                     "default", ImmutableMap.of("SUCCESS", 1L)),
+                     collected());
+    }
+
+    @Test
+    public void testClosedBeforeResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new Application(false));
+        channel.writeInbound(request("/users/1"));
+        channel.close();
+        assertNull(channel.attr(RequestTaggingHandler.STATUS)
+                          .get());
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("SERVER_ERROR", 1L)), collected());
+    }
+
+    @Test
+    public void testExceptionBlamesOldestPendingRequest() {
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new Application(false));
+        channel.writeInbound(request("/users/1"));
+        channel.writeInbound(request("/other"));
+        channel.pipeline()
+               .fireExceptionCaught(new IllegalStateException("test"));
+        try {
+            channel.checkException();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("test", e.getMessage());
+        }
+
+        channel.writeOutbound(response(200));
+        channel.writeOutbound(response(200));
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("SERVER_ERROR", 1L),
+                                     "default", ImmutableMap.of("SUCCESS", 1L)),
+                     collected());
+    }
+
+    private Map<String, Map<String, Long>> collected() {
+        Map<String, Map<String, Long>> result = new TreeMap<>();
+        context.getStatusConsumer()
+               .snapshot()
+               .forEach(resource -> resource.getMeasurements()
+                                            .forEach(measurement -> result.computeIfAbsent(resource.getName(), name -> new TreeMap<>())
+                                                                          .merge(measurement.getStatusCodeName(), measurement.getTotalNumberOfInvocations(), Long::sum)));
+        return result;
+    }
+
+    private static FullHttpRequest request(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    private static DefaultFullHttpResponse response(int status) {
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(status));
+    }
+
+    private class Application extends ChannelInboundHandlerAdapter {
+
+        private final boolean respond;
+
+        private Application(boolean respond) {
+            this.respond = respond;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            FullHttpRequest request = (FullHttpRequest) msg;
+            try {
+                if (statuses != null) {
+                    statuses.add(RequestTagging.get());
+                }
+                if (respond) {
+                    List<String> status = new QueryStringDecoder(request.uri()).parameters()
+                                                                               .get("status");
+                    ctx.writeAndFlush(response(status == null ? 200 : Integer.parseInt(status.get(0))));
+                }
+            } finally {
+                ReferenceCountUtil.release(request);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingContextConfigurer;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingContextConfigurer.ConfigKey;
 import de.ck35.monitoring.request.tagging.core.RequestTaggingRunnable.WrappedException;
+import de.ck35.monitoring.request.tagging.core.RouteTemplates;
 import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
 
 /**
@@ -41,12 +42,14 @@ public class RequestTaggingValve extends ValveBase {
         super(true);
         statusReporterFactory = new StatusReporterFactory();
         statusReporterFactory.setLoggerInfo(LOG::info);
+        statusReporterFactory.setLoggerWarn(LOG::warn);
         hashAlgorithm = new HashAlgorithm();
         stopWatchClock = Clock.systemUTC();
         properties = new HashMap<>();
         context = new RequestTaggingContext(statusReporterFactory::build, hashAlgorithm::hash, stopWatchClock);
         context.setLoggerInfo(LOG::info);
         context.setLoggerWarn(LOG::warn);
+        statusReporterFactory.setTransferStatisticsListener(context.getInternalMetrics()::transferred);
     }
 
     @Override
@@ -65,10 +68,20 @@ public class RequestTaggingValve extends ValveBase {
         context.close();
     }
 
+    public RequestTaggingContext getContext() {
+        return context;
+    }
+
     @Override
     public void invoke(Request request, Response response) throws IOException, ServletException {
+        String requestUri = RouteTemplates.withoutPathParameters(request.getRequestURI());
+        int pathStart = RouteTemplates.pathStart(requestUri, RouteTemplates.withoutPathParameters(request.getContextPath()));
+        if (context.isExcluded(requestUri, pathStart, request.getMethod(), request::getHeader)) {
+            next.invoke(request, response);
+            return;
+        }
         try {
-            context.runWithinContext(request::getHeader, () -> {
+            context.runWithinContext(requestUri, pathStart, request::getHeader, () -> {
                 try {
                     next.invoke(request, response);
                 } catch (IOException e) {
@@ -97,6 +110,30 @@ public class RequestTaggingValve extends ValveBase {
     public void setCollectorSendDelayDuration(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
+    public void setCollectorSendJitter(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setInternalMetricsEnabled(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setJmxEnabled(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setJmxName(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setResourceNameTemplates(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setExcludedPathPrefixes(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setExcludedMethods(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setExcludedHeaders(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
     public void setRequestIdEnabled(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
@@ -106,6 +143,36 @@ public class RequestTaggingValve extends ValveBase {
     public void setRequestIdParameterName(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
+    public void setAsyncReporting(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setReportQueueCapacity(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setReportWorkers(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setReportMaxRetries(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setReportRetryBackoff(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setReportDropPolicy(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setSpoolDirectory(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setSpoolSegmentSize(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setSpoolMaxSize(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setSpoolReplayInterval(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
     public void setIgnored(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
@@ -118,6 +185,24 @@ public class RequestTaggingValve extends ValveBase {
     public void setMaxDurationsPerNode(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
+    public void setMemoryBudget(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setSampleRate(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setResourceSampleRates(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setSlowRequestThreshold(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setResourceSlowRequestThresholds(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setFastDurationSampleRate(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
     public void setHostId(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
@@ -151,10 +236,80 @@ public class RequestTaggingValve extends ValveBase {
     public void setReadTimeout(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
+    public void setHttpTransport(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setKeepAliveConnections(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setGzipEnabled(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setGzipLevel(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setElasticsearchBulkMaxBytes(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setElasticsearchBulkMaxDocuments(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setElasticsearchBulkParallelism(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setElasticsearchBulkPipelineDepth(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setInfluxDBAggregateDurations(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setPrometheusPort(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setPrometheusPath(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setStatsdMaxPacketSize(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setFileDirectory(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setFileMaxSize(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setFileRotationInterval(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setFileMaxFiles(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setFileBufferSize(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setAdditionalReporters(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
+    public void setAdditionalReporterQueueCapacity(String value) {
+        putPropertyWithNameFromStackTrace(value);
+    }
     public void setAlgorithmName(String value) {
         putPropertyWithNameFromStackTrace(value);
     }
     
+    /**
+     * Called by Tomcat for attributes without a setter. Attributes of
+     * additional status reporters are prefixed with the name of the reporter
+     * e.g. <code>influx.reportFormat</code>.
+     */
+    public boolean setProperty(String name, String value) {
+        if (name.indexOf('.') <= 0) {
+            return false;
+        }
+        properties.put("requestTagging.statusReporter." + name, value);
+        return true;
+    }
+
     private void putPropertyWithNameFromStackTrace(String value) {
         StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
         String methodName = stackTrace[2].getMethodName().substring("set".length());
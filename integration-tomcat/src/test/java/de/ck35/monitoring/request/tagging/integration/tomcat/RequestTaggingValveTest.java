@@ -6,14 +6,25 @@ import static com.xebialabs.restito.semantics.Condition.method;
 import static com.xebialabs.restito.semantics.Condition.post;
 import static com.xebialabs.restito.semantics.Condition.uri;
 import static com.xebialabs.restito.semantics.Condition.withPostBodyContainingJsonPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Field;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.concurrent.CountDownLatch;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import org.apache.catalina.Valve;
 import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
 import org.apache.catalina.core.StandardService;
 import org.apache.catalina.startup.Catalina;
 import org.apache.coyote.AbstractProtocol;
@@ -25,9 +36,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
+import com.google.common.collect.ImmutableList;
 import com.xebialabs.restito.semantics.Action;
 import com.xebialabs.restito.server.StubServer;
 
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporter.Resource;
+
 public class RequestTaggingValveTest {
 
     static {
@@ -86,6 +101,60 @@ public class RequestTaggingValveTest {
         catalina.stop();
     }
 
+    @Test
+    public void testResourceNameTemplateIgnoresPathParameters() throws Exception {
+        RequestTaggingValve valve = new RequestTaggingValve();
+        valve.getContext()
+             .setResourceNameTemplates(ImmutableList.of("/users/{id}"));
+        Valve next = mock(Valve.class);
+        valve.setNext(next);
+        Request request = request("/shop;v=1/users;jsessionid=4711/42", "/shop;v=1");
+        Response response = mock(Response.class);
+
+        valve.invoke(request, response);
+
+        verify(next).invoke(request, response);
+        assertEquals(ImmutableList.of("/users/{id}"), resourceNames(valve));
+    }
+
+    @Test
+    public void testExcludedRequestIsNotTagged() throws Exception {
+        RequestTaggingValve valve = new RequestTaggingValve();
+        valve.getContext()
+             .setExcludedPathPrefixes(ImmutableList.of("/health"));
+        Valve next = mock(Valve.class);
+        valve.setNext(next);
+        Request request = request("/shop/health;jsessionid=4711", "/shop");
+        Response response = mock(Response.class);
+        doAnswer(invocation -> {
+            assertFalse(RequestTagging.getOptional()
+                                      .isPresent());
+            return null;
+        }).when(next)
+          .invoke(request, response);
+
+        valve.invoke(request, response);
+
+        verify(next).invoke(request, response);
+        assertEquals(ImmutableList.of(), resourceNames(valve));
+    }
+
+    private static Request request(String requestUri, String contextPath) {
+        Request request = mock(Request.class);
+        when(request.getRequestURI()).thenReturn(requestUri);
+        when(request.getContextPath()).thenReturn(contextPath);
+        when(request.getMethod()).thenReturn("GET");
+        return request;
+    }
+
+    private static List<String> resourceNames(RequestTaggingValve valve) {
+        return valve.getContext()
+                    .getStatusConsumer()
+                    .snapshot()
+                    .map(Resource::getName)
+                    .collect(Collectors.toList());
+    }
+
     private int getPort(Catalina catalina) throws NoSuchFieldException, IllegalAccessException {
         StandardService service = (StandardService) catalina.getServer()
                                                             .findService("Catalina");
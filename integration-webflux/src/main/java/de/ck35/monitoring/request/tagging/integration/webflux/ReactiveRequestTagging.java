@@ -0,0 +1,103 @@
+package de.ck35.monitoring.request.tagging.integration.webflux;
+
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.RequestTagging.Status;
+import de.ck35.monitoring.request.tagging.core.AsyncRequestTagging;
+import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+/**
+ * Access to the request tagging status of a reactive pipeline. The
+ * {@link RequestTaggingWebFilter} writes the status of a request into the
+ * subscriber {@link Context}. Code which runs inside operators can read it
+ * with {@link #status()}. {@link RequestTagging#get()} is only available
+ * while the filter subscribes to the rest of the chain and behind operators
+ * which have been marked with {@link #restore()}. The thread local is not set
+ * for every operator, because this would be done for every signal of every
+ * operator of every request.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class ReactiveRequestTagging {
+
+    /**
+     * The key of the status inside the subscriber {@link Context}.
+     */
+    public static final String STATUS_KEY = ReactiveRequestTagging.class.getName() + ".status";
+
+    private ReactiveRequestTagging() {
+    }
+
+    /**
+     * @return The status of the current request or
+     *         {@link RequestTagging#EMPTY_STATUS} if the request is not tagged.
+     */
+    public static Mono<Status> status() {
+        return Mono.deferContextual(context -> Mono.just(context.getOrDefault(STATUS_KEY, RequestTagging.EMPTY_STATUS)));
+    }
+
+    /**
+     * Make the status of the current request available through
+     * {@link RequestTagging#get()} for all signals which are passed to the
+     * following operators, e.g. behind a <code>publishOn</code>:
+     *
+     * <pre>
+     * flux.publishOn(scheduler)
+     *     .transform(ReactiveRequestTagging.restore())
+     *     .map(value -&gt; ... RequestTagging.get() ...)
+     * </pre>
+     */
+    public static <T> Function<Publisher<T>, Publisher<T>> restore() {
+        Function<? super Publisher<T>, ? extends Publisher<T>> lifter = Operators.liftPublisher((publisher, subscriber) -> {
+            DefaultRequestTaggingStatus status = subscriber.currentContext()
+                                                           .getOrDefault(STATUS_KEY, null);
+            return status == null ? subscriber : new RestoringSubscriber<>(subscriber, status);
+        });
+        return lifter::apply;
+    }
+
+    private static class RestoringSubscriber<T> implements CoreSubscriber<T> {
+
+        private final CoreSubscriber<? super T> actual;
+        private final DefaultRequestTaggingStatus status;
+
+        private RestoringSubscriber(CoreSubscriber<? super T> actual, DefaultRequestTaggingStatus status) {
+            this.actual = actual;
+            this.status = status;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            actual.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(T value) {
+            AsyncRequestTagging.runWithin(status, () -> actual.onNext(value));
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            AsyncRequestTagging.runWithin(status, () -> actual.onError(error));
+        }
+
+        @Override
+        public void onComplete() {
+            AsyncRequestTagging.runWithin(status, actual::onComplete);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package de.ck35.monitoring.request.tagging.integration.webflux;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import de.ck35.monitoring.request.tagging.core.AsyncRequestTagging;
+import de.ck35.monitoring.request.tagging.core.DefaultRequestTaggingStatus;
+import de.ck35.monitoring.request.tagging.core.HashAlgorithm;
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContextConfigurer;
+import de.ck35.monitoring.request.tagging.core.reporter.StatusReporterFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+/**
+ * Enable request tagging for all requests of a Spring WebFlux application.
+ * The status of a request is written into the subscriber {@link Context}, see
+ * {@link ReactiveRequestTagging}. It is available through
+ * {@link de.ck35.monitoring.request.tagging.RequestTagging#get()} while the
+ * rest of the filter chain is assembled and subscribed, so handlers which
+ * tag synchronously work as with the servlet filter. The status is consumed
+ * when the response has been completed, failed or cancelled.
+ *
+ * @author Christian Kaspari
+ * @since 2.1.0
+ */
+public class RequestTaggingWebFilter implements WebFilter, Closeable {
+
+    private static final Log LOG = LogFactory.getLog(RequestTaggingWebFilter.class);
+
+    private final RequestTaggingContext context;
+
+    public RequestTaggingWebFilter(RequestTaggingContext context) {
+        this.context = Objects.requireNonNull(context);
+    }
+
+    /**
+     * Create a filter with its own context which has been configured and
+     * initialized with the given properties. The properties are the same as
+     * for the servlet filter and the Tomcat valve.
+     */
+    public static RequestTaggingWebFilter create(Function<String, String> properties) {
+        StatusReporterFactory statusReporterFactory = new StatusReporterFactory();
+        statusReporterFactory.setLoggerInfo(LOG::info);
+        statusReporterFactory.setLoggerWarn(LOG::warn);
+        HashAlgorithm hashAlgorithm = new HashAlgorithm();
+        RequestTaggingContext context = new RequestTaggingContext(statusReporterFactory::build, hashAlgorithm::hash, Clock.systemUTC());
+        context.setLoggerInfo(LOG::info);
+        context.setLoggerWarn(LOG::warn);
+        statusReporterFactory.setTransferStatisticsListener(context.getInternalMetrics()::transferred);
+
+        RequestTaggingContextConfigurer configurer = new RequestTaggingContextConfigurer(properties, LOG::info);
+        configurer.configure(hashAlgorithm);
+        configurer.configure(context);
+        configurer.configure(statusReporterFactory);
+        context.initialize();
+        return new RequestTaggingWebFilter(context);
+    }
+
+    public RequestTaggingContext getContext() {
+        return context;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        Optional<DefaultRequestTaggingStatus> optionalStatus = context.createStatus(request.getPath()
+                                                                                           .pathWithinApplication()
+                                                                                           .value(),
+                                                                                    0, request.getMethodValue(), request.getHeaders()::getFirst);
+        if (!optionalStatus.isPresent()) {
+            return chain.filter(exchange);
+        }
+        DefaultRequestTaggingStatus status = optionalStatus.get();
+        AsyncRequestTagging.start(status);
+        Mono<Void> result;
+        try {
+            result = AsyncRequestTagging.callWithin(status, () -> chain.filter(exchange));
+        } catch (RuntimeException e) {
+            result = Mono.error(e);
+        }
+        return new SubscribeWithin(result, status).doOnError(error -> failed(status, error))
+                                                  .doFinally(signal -> finished(exchange, status, signal))
+                                                  .contextWrite(Context.of(ReactiveRequestTagging.STATUS_KEY, status));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static void failed(DefaultRequestTaggingStatus status, Throwable error) {
+        if (error instanceof ResponseStatusException) {
+            AsyncRequestTagging.responded(status, ((ResponseStatusException) error).getRawStatusCode());
+        } else {
+            AsyncRequestTagging.failed(status, error);
+        }
+    }
+
+    /**
+     * A cancelled exchange has usually lost its connection before the response
+     * has been completed, so it is tagged as server error like a closed
+     * channel in the Netty integration.
+     */
+    private static void finished(ServerWebExchange exchange, DefaultRequestTaggingStatus status, SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            AsyncRequestTagging.failed(status, new CancellationException());
+        }
+        Integer statusCode = exchange.getResponse()
+                                     .getRawStatusCode();
+        if (statusCode != null) {
+            AsyncRequestTagging.responded(status, statusCode);
+        }
+        AsyncRequestTagging.finish(status);
+    }
+
+    /**
+     * Subscribes to the rest of the chain with the status set as thread local,
+     * so handlers which are invoked while subscribing can use
+     * {@link de.ck35.monitoring.request.tagging.RequestTagging#get()}.
+     */
+    private static class SubscribeWithin extends MonoOperator<Void, Void> {
+
+        private final DefaultRequestTaggingStatus status;
+
+        private SubscribeWithin(Mono<Void> source, DefaultRequestTaggingStatus status) {
+            super(source);
+            this.status = status;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super Void> actual) {
+            AsyncRequestTagging.runWithin(status, () -> source.subscribe(actual));
+        }
+    }
+}
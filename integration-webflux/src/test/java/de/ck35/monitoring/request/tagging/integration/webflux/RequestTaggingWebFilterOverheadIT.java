@@ -0,0 +1,81 @@
+package de.ck35.monitoring.request.tagging.integration.webflux;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import com.google.common.collect.ImmutableList;
+
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compares the filter against an untagged chain on mock exchanges. It is not
+ * part of the default build, run it with
+ * <code>mvn test -pl integration-webflux -Dtest=RequestTaggingWebFilterOverheadIT</code>.
+ */
+public class RequestTaggingWebFilterOverheadIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestTaggingWebFilterOverheadIT.class);
+    private static final int REQUESTS = 50_000;
+
+    private RequestTaggingContext context;
+    private RequestTaggingWebFilter filter;
+
+    @Before
+    public void before() {
+        context = new RequestTaggingContext();
+        context.setResourceNameTemplates(ImmutableList.of("/users/{id}"));
+        filter = new RequestTaggingWebFilter(context);
+    }
+
+    @After
+    public void after() {
+        filter.close();
+    }
+
+    @Test
+    public void testOverhead() {
+        WebFilterChain chain = exchange -> Mono.just("value")
+                                               .map(String::length)
+                                               .then();
+        WebFilterChain tagged = exchange -> filter.filter(exchange, chain);
+        run(chain);
+        run(tagged);
+        context.getStatusConsumer()
+               .report(resource -> {
+               });
+
+        long untaggedNanos = run(chain);
+        long taggedNanos = run(tagged);
+        LOG.info("Untagged pipeline: {} ns per request, tagged pipeline: {} ns per request, overhead: {} ns per request.",
+                 untaggedNanos / REQUESTS, taggedNanos / REQUESTS, (taggedNanos - untaggedNanos) / REQUESTS);
+        long[] collected = new long[1];
+        context.getStatusConsumer()
+               .snapshot()
+               .forEach(resource -> resource.getMeasurements()
+                                            .forEach(measurement -> collected[0] += measurement.getTotalNumberOfInvocations()));
+        assertEquals(REQUESTS, collected[0]);
+    }
+
+    private static long run(WebFilterChain chain) {
+        long start = System.nanoTime();
+        for (int index = 0; index < REQUESTS; index++) {
+            chain.filter(exchange("/users/" + index))
+                 .block();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static ServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}
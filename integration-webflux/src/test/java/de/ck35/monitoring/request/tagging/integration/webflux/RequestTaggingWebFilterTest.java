@@ -0,0 +1,137 @@
+package de.ck35.monitoring.request.tagging.integration.webflux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import de.ck35.monitoring.request.tagging.RequestTagging;
+import de.ck35.monitoring.request.tagging.RequestTagging.Status;
+import de.ck35.monitoring.request.tagging.core.RequestTaggingContext;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+public class RequestTaggingWebFilterTest {
+
+    private RequestTaggingContext context;
+    private RequestTaggingWebFilter filter;
+
+    @Before
+    public void before() {
+        context = new RequestTaggingContext();
+        context.setResourceNameTemplates(ImmutableList.of("/users/{id}"));
+        context.setExcludedPathPrefixes(ImmutableList.of("/health"));
+        filter = new RequestTaggingWebFilter(context);
+    }
+
+    @After
+    public void after() {
+        filter.close();
+    }
+
+    @Test
+    public void testStatusIsAvailableWhileSubscribing() {
+        AtomicReference<Status> status = new AtomicReference<>();
+        filter(exchange("/users/42"), exchange -> Mono.fromRunnable(() -> status.set(RequestTagging.get()
+                                                                                                   .withMetaData("key", "value"))))
+                                                     .block();
+        assertFalse(status.get() == RequestTagging.EMPTY_STATUS);
+        assertFalse(RequestTagging.getOptional()
+                                  .isPresent());
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("SUCCESS", 1L)), collected());
+    }
+
+    @Test
+    public void testStatusIsRestoredAfterThreadHop() {
+        AtomicReference<Status> subscribed = new AtomicReference<>();
+        AtomicReference<Status> restored = new AtomicReference<>();
+        AtomicReference<Status> notRestored = new AtomicReference<>();
+        AtomicReference<Status> fromContext = new AtomicReference<>();
+        filter(exchange("/users/42"), exchange -> {
+            subscribed.set(RequestTagging.get());
+            return Mono.just("value")
+                       .publishOn(Schedulers.parallel())
+                       .doOnNext(value -> notRestored.set(RequestTagging.get()))
+                       .transform(ReactiveRequestTagging.restore())
+                       .doOnNext(value -> restored.set(RequestTagging.get()))
+                       .then(ReactiveRequestTagging.status())
+                       .doOnNext(fromContext::set)
+                       .then();
+        }).block();
+        assertSame(RequestTagging.EMPTY_STATUS, notRestored.get());
+        assertSame(subscribed.get(), restored.get());
+        assertSame(subscribed.get(), fromContext.get());
+    }
+
+    @Test
+    public void testResponseStatus() {
+        filter(exchange("/users/1"), exchange -> {
+            exchange.getResponse()
+                    .setStatusCode(HttpStatus.NOT_FOUND);
+            return Mono.empty();
+        }).block();
+        filter(exchange("/users/2"), exchange -> {
+            exchange.getResponse()
+                    .setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return Mono.empty();
+        }).block();
+        filter(exchange("/users/3"), exchange -> Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST))).onErrorResume(e -> Mono.empty())
+                                                                                                                .block();
+        filter(exchange("/users/4"), exchange -> Mono.error(new IllegalStateException())).onErrorResume(e -> Mono.empty())
+                                                                                          .block();
+        filter(exchange("/users/5"), exchange -> {
+            throw new IllegalStateException();
+        }).onErrorResume(e -> Mono.empty())
+          .block();
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("CLIENT_ERROR", 2L, "SERVER_ERROR", 3L)), collected());
+    }
+
+    @Test
+    public void testExcludedRequestIsNotTagged() {
+        AtomicReference<Status> status = new AtomicReference<>();
+        filter(exchange("/health"), exchange -> Mono.fromRunnable(() -> status.set(RequestTagging.get()))).block();
+        assertSame(RequestTagging.EMPTY_STATUS, status.get());
+        assertEquals(ImmutableMap.of(), collected());
+    }
+
+    @Test
+    public void testCancelledRequestIsServerError() {
+        filter(exchange("/users/1"), exchange -> Mono.never()).subscribe()
+                                                          .dispose();
+        assertEquals(ImmutableMap.of("/users/{id}", ImmutableMap.of("SERVER_ERROR", 1L)), collected());
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return filter.filter(exchange, chain);
+    }
+
+    private static ServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    private Map<String, Map<String, Long>> collected() {
+        Map<String, Map<String, Long>> result = new TreeMap<>();
+        context.getStatusConsumer()
+               .snapshot()
+               .forEach(resource -> resource.getMeasurements()
+                                            .forEach(measurement -> result.computeIfAbsent(resource.getName(), name -> new TreeMap<>())
+                                                                          .merge(measurement.getStatusCodeName(), measurement.getTotalNumberOfInvocations(), Long::sum)));
+        return result;
+    }
+}